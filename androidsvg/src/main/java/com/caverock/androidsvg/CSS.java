@@ -15,6 +15,9 @@ import com.caverock.androidsvg.utils.CSSBase;
  * svg3.renderToCanvas(canvas, renderOptions);
  * }
  * </pre>
+ * <p>
+ * A CSS object is immutable, so it can also be attached to any number of documents with
+ * {@link SVG#addStylesheet(CSS)}. Its rules are referenced, not copied.
  */
 public class CSS extends CSSBase {
     private CSS(String css)
@@ -0,0 +1,384 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An {@link SVGExternalFileResolver} that remembers the fonts, images and stylesheets returned
+ * by another resolver, so that they are only loaded once.
+ * <p>
+ * Most resolvers, including {@link SimpleAssetResolver}, load and decode the file every time
+ * they are asked for it.  That happens at least once for every document that uses the file.
+ * Wrapping the resolver in a {@code CachingExternalFileResolver} lets all documents share the
+ * results.
+ * <p>
+ * There are separate caches for Typefaces, Bitmaps and stylesheets.  Each is limited by the number
+ * of entries, and the Bitmap and stylesheet caches are also limited by their total size in bytes.
+ * The least recently used entries are dropped first.  Failed lookups are remembered too, so that a
+ * missing file isn't searched for again.
+ * <p>
+ * Instances are thread safe, so one can be used by documents being parsed or rendered at the
+ * same time.
+ *
+ * <h3>Example usage</h3>
+ *
+ * <pre class="code-block">
+ * {@code
+ * SVG.registerExternalFileResolver(new CachingExternalFileResolver(new SimpleAssetResolver(assetManager)));
+ * }
+ * </pre>
+ * @since 1.5
+ */
+
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class CachingExternalFileResolver extends SVGExternalFileResolver
+{
+   public static final int  DEFAULT_MAX_ENTRIES = 64;
+   public static final int  DEFAULT_MAX_BITMAP_BYTES = 32 * 1024 * 1024;
+   public static final int  DEFAULT_MAX_STYLESHEET_BYTES = 1024 * 1024;
+
+   // Stands in for a null result, so that misses can be cached
+   private static final Object  NOT_FOUND = new Object();
+
+   private final SVGExternalFileResolver  resolver;
+   private final boolean                  resolverUsesTargetSize;
+
+   private final Cache  typefaceCache;
+   private final Cache  bitmapCache;
+   private final Cache  styleSheetCache;
+
+
+   /**
+    * Create a new caching resolver, that uses the default cache sizes.
+    *
+    * @param resolver the resolver whose results should be cached.
+    */
+   public CachingExternalFileResolver(SVGExternalFileResolver resolver)
+   {
+      this(resolver, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BITMAP_BYTES, DEFAULT_MAX_STYLESHEET_BYTES);
+   }
+
+
+   /**
+    * Create a new caching resolver.
+    *
+    * @param resolver the resolver whose results should be cached.
+    * @param maxEntries the maximum number of entries in each of the caches.
+    * @param maxBitmapBytes the maximum total size of the cached Bitmaps.
+    * @param maxStyleSheetBytes the maximum total size of the cached stylesheets.
+    * @throws IllegalArgumentException if resolver is null, or any of the limits is negative
+    */
+   public CachingExternalFileResolver(SVGExternalFileResolver resolver, int maxEntries, int maxBitmapBytes, int maxStyleSheetBytes)
+   {
+      if (resolver == null)
+         throw new IllegalArgumentException("resolver cannot be null");
+      if (maxEntries < 0 || maxBitmapBytes < 0 || maxStyleSheetBytes < 0)
+         throw new IllegalArgumentException("Invalid cache size");
+      this.resolver = resolver;
+      this.resolverUsesTargetSize = overridesSizedResolveImage(resolver);
+      this.typefaceCache = new Cache(maxEntries, Long.MAX_VALUE);
+      this.bitmapCache = new Cache(maxEntries, maxBitmapBytes);
+      this.styleSheetCache = new Cache(maxEntries, maxStyleSheetBytes);
+   }
+
+
+   @Override
+   public Typeface  resolveFont(String fontFamily, float fontWeight, String fontStyle, float fontStretch)
+   {
+      String  key = fontFamily + '\u0000' + fontWeight + '\u0000' + fontStyle + '\u0000' + fontStretch;
+      Object  result = typefaceCache.get(key);
+      if (result == null) {
+         result = resolver.resolveFont(fontFamily, fontWeight, fontStyle, fontStretch);
+         typefaceCache.put(key, result, 0);
+      }
+      return (result == NOT_FOUND) ? null : (Typeface) result;
+   }
+
+
+   @Override
+   public Bitmap  resolveImage(String filename)
+   {
+      return resolveImage(filename, 0, 0, false);
+   }
+
+
+   @Override
+   public Bitmap  resolveImage(String filename, int targetWidth, int targetHeight)
+   {
+      // A resolver that ignores the target size returns the same image for every size. So only cache it once.
+      return resolveImage(filename, targetWidth, targetHeight, resolverUsesTargetSize);
+   }
+
+
+   private static boolean  overridesSizedResolveImage(SVGExternalFileResolver resolver)
+   {
+      try {
+         return resolver.getClass().getMethod("resolveImage", String.class, int.class, int.class).getDeclaringClass() != SVGExternalFileResolver.class;
+      } catch (NoSuchMethodException e) {
+         return true;
+      }
+   }
+
+
+   private Bitmap  resolveImage(String filename, int targetWidth, int targetHeight, boolean withSize)
+   {
+      String  key = withSize ? filename + '\u0000' + targetWidth + 'x' + targetHeight : filename;
+      Object  result = bitmapCache.get(key);
+      if (result instanceof Bitmap && ((Bitmap) result).isRecycled()) {
+         // Someone recycled a Bitmap we handed out
+         bitmapCache.remove(key);
+         result = null;
+      }
+      if (result == null) {
+         Bitmap  bitmap = withSize ? resolver.resolveImage(filename, targetWidth, targetHeight)
+                                   : resolver.resolveImage(filename);
+         result = bitmap;
+         bitmapCache.put(key, result, (bitmap != null) ? bitmap.getByteCount() : 0);
+      }
+      return (result == NOT_FOUND) ? null : (Bitmap) result;
+   }
+
+
+   @Override
+   public String  resolveCSSStyleSheet(String url)
+   {
+      Object  result = styleSheetCache.get(url);
+      if (result == null) {
+         String  css = resolver.resolveCSSStyleSheet(url);
+         result = css;
+         styleSheetCache.put(url, result, (css != null) ? css.length() * 2L : 0);
+      }
+      return (result == NOT_FOUND) ? null : (String) result;
+   }
+
+
+   @Override
+   public boolean  isFormatSupported(String mimeType)
+   {
+      return resolver.isFormatSupported(mimeType);
+   }
+
+
+   /**
+    * Returns the resolver whose results are being cached.
+    * @return the wrapped resolver
+    */
+   public SVGExternalFileResolver  getResolver()
+   {
+      return resolver;
+   }
+
+
+   /**
+    * Returns the cache used for the results of {@link #resolveFont(String, float, String, float)}.
+    * @return the Typeface cache
+    */
+   public Cache  getTypefaceCache()
+   {
+      return typefaceCache;
+   }
+
+
+   /**
+    * Returns the cache used for the results of {@link #resolveImage(String)}.
+    * @return the Bitmap cache
+    */
+   public Cache  getBitmapCache()
+   {
+      return bitmapCache;
+   }
+
+
+   /**
+    * Returns the cache used for the results of {@link #resolveCSSStyleSheet(String)}.
+    * @return the stylesheet cache
+    */
+   public Cache  getStyleSheetCache()
+   {
+      return styleSheetCache;
+   }
+
+
+   /**
+    * Empty all the caches.  The hit, miss and eviction counts are not reset.
+    */
+   public void  clear()
+   {
+      typefaceCache.clear();
+      bitmapCache.clear();
+      styleSheetCache.clear();
+   }
+
+
+   @Override
+   public String  toString()
+   {
+      return "typefaces: " + typefaceCache + "; bitmaps: " + bitmapCache + "; stylesheets: " + styleSheetCache;
+   }
+
+
+   //==============================================================================
+
+
+   /**
+    * One of the caches of a {@code CachingExternalFileResolver}.  Its counts can be used to
+    * check whether the cache sizes suit your app.
+    */
+   public static class Cache
+   {
+      private final Map<String, Entry>  entries = new LinkedHashMap<>(16, 0.75f, true);
+      private final int                 maxEntries;
+      private final long                maxBytes;
+      private long                      currentBytes = 0;
+      private long                      hitCount = 0;
+      private long                      missCount = 0;
+      private long                      evictionCount = 0;
+
+
+      private static class Entry
+      {
+         final Object  value;
+         final long    size;
+
+         Entry(Object value, long size)
+         {
+            this.value = value;
+            this.size = size;
+         }
+      }
+
+
+      Cache(int maxEntries, long maxBytes)
+      {
+         this.maxEntries = maxEntries;
+         this.maxBytes = maxBytes;
+      }
+
+
+      /*
+       * Returns the cached value, NOT_FOUND for a cached miss, or null if there is no entry.
+       */
+      synchronized Object  get(String key)
+      {
+         Entry  entry = entries.get(key);
+         if (entry == null) {
+            missCount++;
+            return null;
+         }
+         hitCount++;
+         return entry.value;
+      }
+
+
+      synchronized void  put(String key, Object value, long size)
+      {
+         if (size > maxBytes)
+            return;
+         remove(key);
+         entries.put(key, new Entry((value != null) ? value : NOT_FOUND, size));
+         currentBytes += size;
+
+         // Evict the least recently used entries until we are back under both limits
+         Iterator<Entry>  it = entries.values().iterator();
+         while ((entries.size() > maxEntries || currentBytes > maxBytes) && it.hasNext()) {
+            currentBytes -= it.next().size;
+            it.remove();
+            evictionCount++;
+         }
+      }
+
+
+      synchronized void  remove(String key)
+      {
+         Entry  old = entries.remove(key);
+         if (old != null)
+            currentBytes -= old.size;
+      }
+
+
+      synchronized void  clear()
+      {
+         entries.clear();
+         currentBytes = 0;
+      }
+
+
+      /**
+       * Returns the number of lookups that were answered from the cache, including cached failures.
+       * @return the hit count
+       */
+      public synchronized long  getHitCount()
+      {
+         return hitCount;
+      }
+
+
+      /**
+       * Returns the number of lookups that had to be passed on to the wrapped resolver.
+       * @return the miss count
+       */
+      public synchronized long  getMissCount()
+      {
+         return missCount;
+      }
+
+
+      /**
+       * Returns the number of entries that have been dropped to keep the cache within its limits.
+       * @return the eviction count
+       */
+      public synchronized long  getEvictionCount()
+      {
+         return evictionCount;
+      }
+
+
+      /**
+       * Returns the number of entries in the cache, including cached failures.
+       * @return the entry count
+       */
+      public synchronized int  getEntryCount()
+      {
+         return entries.size();
+      }
+
+
+      /**
+       * Returns the total size, in bytes, of the entries in the cache.  Typefaces are not counted.
+       * @return the cache size
+       */
+      public synchronized long  getSize()
+      {
+         return currentBytes;
+      }
+
+
+      @Override
+      public synchronized String  toString()
+      {
+         return "entries=" + entries.size() + " size=" + currentBytes + " hits=" + hitCount +
+                " misses=" + missCount + " evictions=" + evictionCount;
+      }
+   }
+
+}
@@ -0,0 +1,48 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import com.caverock.androidsvg.utils.DisplayListBase;
+import com.caverock.androidsvg.utils.SVGBase;
+
+/**
+ * A compiled form of a document: the flat list of drawing operations needed to render it.
+ * Replaying a display list skips the styling, layout and reference resolution that a normal render does.
+ * <p>
+ * Unlike a {@link android.graphics.Picture}, a display list can be inspected, and it can be changed.
+ * For example, an element can be recoloured without compiling the document again.
+ *
+ * <h3>Example usage</h3>
+ *
+ * <pre class="code-block">
+ * {@code
+ * DisplayList list = svg.compile(400, 300, null);
+ * list.setFillColor("highlight", 0xff0000);
+ * list.draw(canvas);
+ * }
+ * </pre>
+ * <p>
+ * A display list doesn't see later changes to the document.
+ * @since 1.5
+ */
+public class DisplayList extends DisplayListBase
+{
+   DisplayList(SVGBase document, int widthInPixels, int heightInPixels, RenderOptions renderOptions)
+   {
+      super(document, widthInPixels, heightInPixels, renderOptions);
+   }
+}
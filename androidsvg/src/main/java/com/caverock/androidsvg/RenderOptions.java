@@ -232,4 +232,138 @@ public class RenderOptions extends RenderOptionsBase
    }
 
 
+   /**
+    * Specifies whether consecutive sibling shapes that have the same solid fill, and no stroke,
+    * may be drawn with a single draw call.  Shapes are only batched when they don't overlap,
+    * so the result looks the same.  The default is not to batch.
+    *
+    * @param batchDraws true to allow batching
+    * @return this same <code>RenderOptions</code> instance
+    * @since 1.5
+    */
+   public RenderOptions  batchDraws(boolean batchDraws)
+   {
+      return (RenderOptions) super.batchDraws(batchDraws);
+   }
+
+
+   /**
+    * Returns true if draw batching has been enabled with {@code batchDraws()}.
+    * @return true if draw batching is enabled
+    * @since 1.5
+    */
+   public boolean isBatchingDraws()
+   {
+      return super.isBatchingDraws();
+   }
+
+
+   /**
+    * Specifies an object that will be filled in with counts of the work done by each render.
+    *
+    * @param statistics the object to fill in, or null for none
+    * @return this same <code>RenderOptions</code> instance
+    * @since 1.5
+    */
+   public RenderOptions  statistics(RenderStatistics statistics)
+   {
+      return (RenderOptions) super.statistics(statistics);
+   }
+
+
+   /**
+    * Returns true if this RenderOptions instance has had a statistics object set with {@code statistics()}.
+    * @return true if this RenderOptions instance has had a statistics object set
+    * @since 1.5
+    */
+   public boolean hasStatistics()
+   {
+      return super.hasStatistics();
+   }
+
+
+   /**
+    * Specifies a level-of-detail threshold, in device pixels.  Shapes and groups whose bounding box,
+    * once transformed to the canvas, is narrower and shorter than this are not drawn.  This can save
+    * a lot of time when a large, detailed document is drawn at a small scale.
+    * <p>
+    * Elements are only culled once their bounds are known. That is, after they have been rendered once.
+    * Strokes and markers are not included in the bounds.  The default is 0, which turns culling off.
+    *
+    * @param devicePixels the minimum size of an element that gets drawn
+    * @return this same <code>RenderOptions</code> instance
+    * @since 1.5
+    */
+   public RenderOptions  lodThreshold(float devicePixels)
+   {
+      return (RenderOptions) super.lodThreshold(devicePixels);
+   }
+
+
+   /**
+    * Returns the level-of-detail threshold set with {@code lodThreshold()}.
+    * @return the threshold in device pixels, or 0 if culling is off
+    * @since 1.5
+    */
+   public float getLodThreshold()
+   {
+      return super.getLodThreshold();
+   }
+
+
+   /**
+    * Specifies whether elements culled by the {@link #lodThreshold(float)} setting are replaced by
+    * a small rect in their average colour.  This keeps a zoomed-out view from losing its dense areas.
+    * The default is to just skip them.
+    *
+    * @param placeholders true to draw a placeholder for each culled element
+    * @return this same <code>RenderOptions</code> instance
+    * @since 1.5
+    */
+   public RenderOptions  lodPlaceholders(boolean placeholders)
+   {
+      return (RenderOptions) super.lodPlaceholders(placeholders);
+   }
+
+
+   /**
+    * Returns true if placeholders have been enabled with {@code lodPlaceholders()}.
+    * @return true if culled elements are drawn as placeholders
+    * @since 1.5
+    */
+   public boolean hasLodPlaceholders()
+   {
+      return super.hasLodPlaceholders();
+   }
+
+
+   /**
+    * Allows long paths to be drawn with fewer vertices when they are drawn at a small scale.
+    * Curves are replaced with line segments, and points that make no visible difference are removed.
+    * The simplified path will be no further than {@code maxError} device pixels from the original.
+    * Simplified versions of each path are cached, so repeated renders at a similar scale are fast.
+    * <p>
+    * Paths with only a few commands are left alone. The default is 0, which turns simplification off.
+    *
+    * @param maxError the maximum distance, in device pixels, that a simplified path may stray from the original
+    * @return this same <code>RenderOptions</code> instance
+    * @since 1.5
+    */
+   public RenderOptions  simplifyPaths(float maxError)
+   {
+      return (RenderOptions) super.simplifyPaths(maxError);
+   }
+
+
+   /**
+    * Returns the maximum path error set with {@code simplifyPaths()}.
+    * @return the maximum error in device pixels, or 0 if path simplification is off
+    * @since 1.5
+    */
+   public float getMaxPathError()
+   {
+      return super.getMaxPathError();
+   }
+
+
 }
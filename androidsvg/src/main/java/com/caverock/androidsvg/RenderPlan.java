@@ -0,0 +1,50 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import com.caverock.androidsvg.utils.RenderPlanBase;
+import com.caverock.androidsvg.utils.SVGBase;
+
+/**
+ * A render of one document with one set of {@link RenderOptions}, resolved in advance.
+ * Use it when the same document is drawn repeatedly, for example in every frame of an animation.
+ * <p>
+ * The view, viewBox, preserveAspectRatio, CSS and target element are all resolved when the plan
+ * is created, and so are the CSS rules that match each element.
+ *
+ * <h3>Example usage</h3>
+ *
+ * <pre class="code-block">
+ * {@code
+ * RenderPlan plan = svg.prepare(RenderOptions.create().css("rect { fill: red; }"));
+ * ...
+ * svg.renderToCanvas(canvas, plan);
+ * }
+ * </pre>
+ * <p>
+ * A plan is immutable, and it does not see later changes to the document or to the {@code RenderOptions}.
+ * For example, stylesheets added with {@link SVG#addStylesheet(CSS)} after the plan was created are not used.
+ * Create a new plan if you make changes like that.
+ * @since 1.5
+ */
+public class RenderPlan extends RenderPlanBase
+{
+   RenderPlan(SVGBase document, RenderOptions renderOptions)
+   {
+      super(document, renderOptions);
+   }
+}
@@ -0,0 +1,48 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import com.caverock.androidsvg.utils.RenderStatisticsBase;
+
+/**
+ * Counts of the work done by a render. Pass an instance to {@link RenderOptions#statistics(RenderStatistics)}
+ * and it will be filled in by each render that uses those options.
+ *
+ * <h3>Example usage</h3>
+ *
+ * <pre class="code-block">
+ * {@code
+ * RenderStatistics stats = new RenderStatistics();
+ * svg.renderToCanvas(canvas, RenderOptions.create().statistics(stats));
+ * Log.d(TAG, "Batch ratio: " + stats.getBatchRatio());
+ * }
+ * </pre>
+ * <p>
+ * The counts are reset at the start of each render, so don't share an instance between
+ * renders that happen at the same time.
+ * @since 1.5
+ */
+public class RenderStatistics extends RenderStatisticsBase
+{
+   /**
+    * Create a new <code>RenderStatistics</code> instance.
+    */
+   public RenderStatistics()
+   {
+      super();
+   }
+}
@@ -27,7 +27,10 @@ import com.caverock.androidsvg.utils.SVGBase;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * AndroidSVG is a library for reading, parsing and rendering SVG documents on Android devices.
@@ -269,6 +272,84 @@ public class SVG
 
 
 
+   /**
+    * Load the external images and fonts used by this document, in the background, so that
+    * rendering it won't have to wait for them.
+    * <p>
+    * The document is scanned for the images and fonts it references.  They are then requested
+    * from the {@link SVGExternalFileResolver} in parallel, using the supplied {@code Executor}.
+    * The results are kept with the document, and used by later renders.  Images are kept in the
+    * document's image cache, so large images may be dropped again if they don't all fit.
+    * <p>
+    * External CSS stylesheets don't need prefetching, because they are loaded during parsing.
+    *
+    * <h3>Example usage</h3>
+    *
+    * <pre class="code-block">
+    * {@code
+    * ExecutorService pool = Executors.newFixedThreadPool(4);
+    * SVG svg = SVG.getFromAsset(getAssets(), "map.svg");
+    * svg.prefetchExternalResources(pool).get();
+    * svg.renderToCanvas(canvas);
+    * }
+    * </pre>
+    *
+    * @param executor the executor that will run the resolver requests.  For example a thread pool.
+    * @return a Future that completes when all the requests have finished.
+    * @throws IllegalArgumentException if executor is null
+    * @since 1.5
+    */
+   @SuppressWarnings("unused")
+   public Future<Void>  prefetchExternalResources(Executor executor)
+   {
+      return base.prefetchExternalResources(executor);
+   }
+
+
+   /**
+    * Turn on an image cache that is shared by all documents, and set its maximum size.
+    * <p>
+    * Normally, each document keeps its own cache of the images it has decoded.  A shared
+    * cache is useful when several documents use the same images, and puts a single limit on the
+    * memory used by them.  Pass 0 to go back to using a cache per document.
+    *
+    * @param maxBytes the maximum total size, in bytes, of the Bitmaps in the shared cache.
+    * @throws IllegalArgumentException if maxBytes is negative
+    * @since 1.5
+    */
+   @SuppressWarnings("unused")
+   public static void  setSharedImageCacheSize(int maxBytes)
+   {
+      SVGBase.setSharedImageCacheSize(maxBytes);
+   }
+
+
+   /**
+    * Set the {@link SVGTracer} that will be told when each phase of parsing and rendering
+    * starts and finishes.  For example, to see how long masks or text take to render, in an
+    * Android system trace.
+    * <p>
+    * This applies to all documents, and to any parse or render that starts after it is called.
+    * Pass null to turn tracing off again.
+    *
+    * <h3>Example usage</h3>
+    *
+    * <pre class="code-block">
+    * {@code
+    * SVG.setTracer(new SVGTracer.SystemTrace(true));
+    * }
+    * </pre>
+    *
+    * @param tracer the tracer to use, or null.
+    * @since 1.5
+    */
+   @SuppressWarnings("unused")
+   public static void  setTracer(SVGTracer tracer)
+   {
+      SVGBase.setTracer(tracer);
+   }
+
+
    /**
     * Get the {@link SVGExternalFileResolver} in effect when this SVG was parsed..
     *
@@ -439,6 +520,54 @@ public class SVG
    }
 
 
+   /**
+    * Resolves everything about a render that depends only on this document and the given
+    * {@code RenderOptions}, so that it can be done once rather than on every render.
+    *
+    * @param renderOptions options that describe how to render this SVG, or null for the defaults.
+    * @return a plan that can be passed to {@link #renderToCanvas(Canvas, RenderPlan)} any number of times.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public RenderPlan  prepare(RenderOptions renderOptions)
+   {
+      return new RenderPlan(base, renderOptions);
+   }
+
+
+   /**
+    * Renders this SVG document to a Canvas object using a plan created by {@link #prepare(RenderOptions)}.
+    *
+    * @param canvas the canvas to which the document should be rendered.
+    * @param renderPlan the plan to render with. If its options had no viewPort, the whole canvas is used.
+    * @throws IllegalArgumentException if the plan was prepared for a different document.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public void  renderToCanvas(Canvas canvas, RenderPlan renderPlan)
+   {
+      base.renderToCanvas(canvas, renderPlan);
+   }
+
+
+   /**
+    * Compiles this document into a display list: a flat list of the drawing operations needed
+    * to render it. The list can be replayed onto any Canvas with {@link DisplayList#draw(Canvas)},
+    * and it can be inspected and modified.
+    *
+    * @param widthInPixels the width of the area to render into
+    * @param heightInPixels the height of the area to render into
+    * @param renderOptions options that describe how to render this SVG, or null for the defaults.
+    * @return the display list
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public DisplayList  compile(int widthInPixels, int heightInPixels, RenderOptions renderOptions)
+   {
+      return new DisplayList(base, widthInPixels, heightInPixels, renderOptions);
+   }
+
+
    /**
     * Renders this SVG document to a Canvas using the specified view defined in the document.
     * <p>
@@ -550,6 +679,88 @@ public class SVG
    }
 
 
+   /**
+    * Returns whether this document contains an element with the given id.
+    *
+    * @param id the id to look for
+    * @return true if an element with that id exists.
+    * @throws IllegalArgumentException if there is no current SVG document loaded.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public boolean  hasElementWithId(String id)
+   {
+      return base.hasElementWithId(id);
+   }
+
+
+   /**
+    * Returns the ids of all the elements in this document that have the given class name.
+    * <p>
+    * Elements without an id attribute are not included. The lookup uses an index built
+    * when the document was parsed, so it does not need to search the document.
+    *
+    * @param className the class name to look for
+    * @return the list of id strings, in document order.
+    * @throws IllegalArgumentException if there is no current SVG document loaded.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public List<String>  getElementIdsByClassName(String className)
+   {
+      return base.getElementIdsByClassName(className);
+   }
+
+
+   /**
+    * Returns the ids of all the elements in this document with the given tag name.
+    * <p>
+    * Elements without an id attribute are not included. The lookup uses an index built
+    * when the document was parsed, so it does not need to search the document.
+    *
+    * @param tagName the element name to look for. For example "rect".
+    * @return the list of id strings, in document order.
+    * @throws IllegalArgumentException if there is no current SVG document loaded.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public List<String>  getElementIdsByTagName(String tagName)
+   {
+      return base.getElementIdsByTagName(tagName);
+   }
+
+
+   /**
+    * Attaches a stylesheet to this document. Its rules will be applied whenever the document is
+    * rendered, in addition to the rules in the document itself.
+    * <p>
+    * The stylesheet is referenced, not copied. So a theme stylesheet can be parsed once, then
+    * attached to any number of documents, at very little cost per document or per render.
+    * Stylesheet rules take precedence over document rules of the same specificity.
+    *
+    * @param stylesheet the stylesheet to attach
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public void  addStylesheet(CSS stylesheet)
+   {
+      base.addStylesheet(stylesheet);
+   }
+
+
+   /**
+    * Detaches a stylesheet that was previously attached with {@link #addStylesheet(CSS)}.
+    *
+    * @param stylesheet the stylesheet to detach
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public void  removeStylesheet(CSS stylesheet)
+   {
+      base.removeStylesheet(stylesheet);
+   }
+
+
    /**
     * Returns the width of the document as specified in the SVG file.
     * <p>
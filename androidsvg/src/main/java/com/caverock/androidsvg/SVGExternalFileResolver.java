@@ -54,8 +54,10 @@ public class SVGExternalFileResolver
     * An implementation of this method should return a {@code Typeface} instance, or null
     * if you want the renderer to ignore this font request.
     * <p>
-    * Note that AndroidSVG does not attempt to cache Typeface references.  If you want
-    * them cached, for speed or memory reasons, you should do so yourself.
+    * Each document remembers the Typeface returned for each combination of font properties,
+    * so this method is usually only called once per font per document.  The Typefaces are not
+    * shared between documents.  If you want that, for speed or memory reasons, you should
+    * cache them yourself.
     * <p>
     * If you return are using Android O or later, and return a variable Truetype or Opentype font,
     * then AndroidSVG will automatically set the weight, stretch and oblique slant for you. Note that
@@ -89,9 +91,11 @@ public class SVGExternalFileResolver
     * An implementation of this method should return a {@code Bitmap} instance, or null if
     * you want the renderer to ignore this image.
     * <p>
-    * Note that AndroidSVG does not attempt to cache Bitmap references.  If you want
-    * them cached, for speed or memory reasons, you should do so yourself.
-    * 
+    * Each document keeps the Bitmaps returned by this method in a size-limited cache, so this
+    * method is usually only called once per image per document.  The Bitmaps are not shared between
+    * documents, unless you turn on the shared cache with {@code SVG.setSharedImageCacheSize()}.
+    * Do not recycle a Bitmap that you have returned while the document is still in use.
+    *
     * @param filename the filename as provided in the xlink:href attribute of a &lt;image&gt; element.
     * @return an Android Bitmap object, or null if the image could not be found.
     */
@@ -100,6 +104,53 @@ public class SVGExternalFileResolver
       return null;
    }
 
+   /**
+    * Called by renderer to resolve image file references in &lt;image&gt; elements, when it
+    * knows how big the image will be drawn.
+    * <p>
+    * The image will be fitted into a box that is {@code targetWidth} x {@code targetHeight}
+    * device pixels.  A Bitmap that is at least that big in both dimensions will look the same as
+    * a full size one.  So, if the image is much larger than that, you can save memory and time
+    * by decoding a smaller version of it.  For example, by using {@code BitmapFactory.Options.inSampleSize}.
+    * The {@link #calculateSampleSize(int, int, int, int)} method can help with that.
+    * <p>
+    * The target size is rounded up to a power of two, so that small changes in scale don't
+    * cause the image to be requested again.
+    * <p>
+    * The default implementation ignores the target size and calls {@link #resolveImage(String)}.
+    *
+    * @param filename the filename as provided in the xlink:href attribute of a &lt;image&gt; element.
+    * @param targetWidth the width, in device pixels, that the image will be fitted into.
+    * @param targetHeight the height, in device pixels, that the image will be fitted into.
+    * @return an Android Bitmap object, or null if the image could not be found.
+    * @since 1.5
+    */
+   public Bitmap  resolveImage(String filename, int targetWidth, int targetHeight)
+   {
+      return resolveImage(filename);
+   }
+
+   /**
+    * Returns the largest {@code BitmapFactory.Options.inSampleSize} value that will decode an image
+    * to a size that is still at least as big as the target size in both dimensions.
+    *
+    * @param naturalWidth the width of the full size image.
+    * @param naturalHeight the height of the full size image.
+    * @param targetWidth the width that the image will be drawn at.
+    * @param targetHeight the height that the image will be drawn at.
+    * @return a power of two.  1 means the image should be decoded at full size.
+    * @since 1.5
+    */
+   public static int  calculateSampleSize(int naturalWidth, int naturalHeight, int targetWidth, int targetHeight)
+   {
+      int  sampleSize = 1;
+      if (targetWidth <= 0 || targetHeight <= 0)
+         return sampleSize;
+      while (naturalWidth / (sampleSize * 2) >= targetWidth && naturalHeight / (sampleSize * 2) >= targetHeight)
+         sampleSize *= 2;
+      return sampleSize;
+   }
+
    /**
     * Called by the parser to resolve CSS stylesheet file references in &lt;?xml-stylesheet?&gt;
     * processing instructions.
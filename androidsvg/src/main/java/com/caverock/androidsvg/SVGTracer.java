@@ -0,0 +1,264 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.ArrayList;
+
+/**
+ * Receives notifications when AndroidSVG starts and finishes each phase of parsing and rendering,
+ * so that the time spent can be attributed to particular parts of a document.
+ * <p>
+ * Sections are reported for the whole parse and the whole render.  Nested inside those are sections
+ * for XML parsing, attribute parsing, CSS parsing, and {@code <style>} elements; and for the
+ * parts of a render that are usually expensive: masks, patterns, clip paths, markers, text and
+ * image decoding.  Sections are always properly nested, and are begun and ended on the same thread.
+ * <p>
+ * The default implementation does nothing.  Two implementations are provided:
+ * {@link SystemTrace}, which adds the sections to an Android system trace; and {@link Timer},
+ * which measures each section and passes the timings to your own code.  For example, so that
+ * they can be recorded as Java Flight Recorder events when running on a desktop JVM.
+ *
+ * <h3>Example usage</h3>
+ *
+ * <pre class="code-block">
+ * {@code
+ * // Show AndroidSVG's work in system traces, labelled with the ids of the elements involved
+ * SVG.setTracer(new SVGTracer.SystemTrace(true));
+ * }
+ * </pre>
+ *
+ * @since 1.5
+ */
+
+public class SVGTracer
+{
+   /**
+    * A tracer that does nothing.  This is the tracer that is used if none has been set.
+    */
+   public static final SVGTracer  NONE = new SVGTracer(false) {
+      @Override
+      public boolean  isEnabled()
+      {
+         return false;
+      }
+   };
+
+
+   private final boolean  includeElementIds;
+
+
+   /**
+    * Create a tracer whose section names don't include element ids.
+    */
+   public SVGTracer()
+   {
+      this(false);
+   }
+
+
+   /**
+    * Create a tracer.
+    *
+    * @param includeElementIds if true, the sections for elements that have an id will include
+    *                          the id in their name.  For example "SVG mask #fade".  This makes
+    *                          the names more useful, but means that a new String has to be
+    *                          created for each section.
+    */
+   public SVGTracer(boolean includeElementIds)
+   {
+      this.includeElementIds = includeElementIds;
+   }
+
+
+   /**
+    * Whether section names should include element ids.
+    *
+    * @return the value passed to the constructor.
+    */
+   public final boolean  includesElementIds()
+   {
+      return includeElementIds;
+   }
+
+
+   /**
+    * Called at the start of each parse and render, to check whether the tracer is interested.
+    * If this returns false, no sections will be reported for that parse or render.
+    * <p>
+    * The default implementation returns true.
+    *
+    * @return true if the sections should be reported.
+    */
+   public boolean  isEnabled()
+   {
+      return true;
+   }
+
+
+   /**
+    * Called when a section starts.
+    *
+    * @param name the name of the section.  Names start with "SVG ".
+    */
+   public void  beginSection(String name)
+   {
+   }
+
+
+   /**
+    * Called when the section most recently begun on this thread ends.
+    */
+   public void  endSection()
+   {
+   }
+
+
+
+   //==============================================================================
+
+
+   /**
+    * A tracer that adds the sections to Android system traces, using {@code android.os.Trace}.
+    * <p>
+    * On Android 10 and later, sections are only reported when a trace is being captured.
+    */
+   public static class SystemTrace extends SVGTracer
+   {
+      // android.os.Trace rejects longer names
+      private static final int  MAX_NAME_LENGTH = 127;
+
+
+      public SystemTrace()
+      {
+         super(false);
+      }
+
+
+      public SystemTrace(boolean includeElementIds)
+      {
+         super(includeElementIds);
+      }
+
+
+      @Override
+      public boolean  isEnabled()
+      {
+         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+            return Trace.isEnabled();
+         return true;
+      }
+
+
+      @Override
+      public void  beginSection(String name)
+      {
+         if (name.length() > MAX_NAME_LENGTH)
+            name = name.substring(0, MAX_NAME_LENGTH);
+         Trace.beginSection(name);
+      }
+
+
+      @Override
+      public void  endSection()
+      {
+         Trace.endSection();
+      }
+   }
+
+
+
+   //==============================================================================
+
+
+   /**
+    * A tracer that measures each section and reports it when it ends.
+    * <p>
+    * Extend this class and implement {@link #onSection(String, long, long, int)} to send the
+    * timings to your own profiling tools.  For example, on a desktop JVM you could commit a Java
+    * Flight Recorder event for each section.
+    */
+   public abstract static class Timer extends SVGTracer
+   {
+      private final ThreadLocal<ArrayList<Section>>  openSections = new ThreadLocal<ArrayList<Section>>() {
+         @Override
+         protected ArrayList<Section>  initialValue()
+         {
+            return new ArrayList<>();
+         }
+      };
+
+
+      private static class  Section
+      {
+         final String  name;
+         final long    startTime;
+
+         Section(String name, long startTime)
+         {
+            this.name = name;
+            this.startTime = startTime;
+         }
+      }
+
+
+      public Timer()
+      {
+         super(false);
+      }
+
+
+      public Timer(boolean includeElementIds)
+      {
+         super(includeElementIds);
+      }
+
+
+      @Override
+      public final void  beginSection(String name)
+      {
+         openSections.get().add(new Section(name, System.nanoTime()));
+      }
+
+
+      @Override
+      public final void  endSection()
+      {
+         long  endTime = System.nanoTime();
+         ArrayList<Section>  stack = openSections.get();
+         if (stack.isEmpty())
+            return;
+         Section  section = stack.remove(stack.size() - 1);
+         onSection(section.name, section.startTime, endTime - section.startTime, stack.size());
+      }
+
+
+      /**
+       * Called when a section ends.  Sections are reported in the order they end, so nested
+       * sections are reported before the section that contains them.
+       *
+       * @param name the name of the section.
+       * @param startTime the value of {@code System.nanoTime()} when the section started.
+       * @param duration how long the section took, in nanoseconds.
+       * @param depth how deeply nested the section is.  0 for the outermost sections.
+       */
+      protected abstract void  onSection(String name, long startTime, long duration, int depth);
+   }
+
+}
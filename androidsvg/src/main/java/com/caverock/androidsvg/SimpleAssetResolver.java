@@ -135,6 +135,44 @@ public class SimpleAssetResolver extends SVGExternalFileResolver
    }
 
 
+   /**
+    * Attempt to find the specified image file in the <code>assets</code> folder and return a decoded Bitmap.
+    * Large images are decoded at a reduced size, if the target size is much smaller.
+    * @since 1.5
+    */
+   @Override
+   public Bitmap  resolveImage(String filename, int targetWidth, int targetHeight)
+   {
+      Log.i(TAG, "resolveImage("+filename+", "+targetWidth+", "+targetHeight+")");
+
+      try
+      {
+         // Find out how big the image is, without decoding it
+         BitmapFactory.Options  options = new BitmapFactory.Options();
+         options.inJustDecodeBounds = true;
+         InputStream  istream = assetManager.open(filename);
+         try {
+            BitmapFactory.decodeStream(istream, null, options);
+         } finally {
+            istream.close();
+         }
+
+         options.inJustDecodeBounds = false;
+         options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+         istream = assetManager.open(filename);
+         try {
+            return BitmapFactory.decodeStream(istream, null, options);
+         } finally {
+            istream.close();
+         }
+      }
+      catch (IOException e1)
+      {
+         return null;
+      }
+   }
+
+
    /**
     * Returns true when passed the MIME types for SVG, JPEG, PNG or any of the
     * other bitmap image formats supported by Android's BitmapFactory class.
@@ -9,5 +9,7 @@ public class CSSBase {
 
     protected CSSBase(String css) {
         this.cssRuleset = new CSSParser(CSSParser.Source.RenderOptions, null).parse(css);
+        // This stylesheet may be shared by many documents and threads, so index it now rather than on first use
+        this.cssRuleset.buildIndex();
     }
 }
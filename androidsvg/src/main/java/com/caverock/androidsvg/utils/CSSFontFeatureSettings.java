@@ -231,6 +231,23 @@ public class CSSFontFeatureSettings
    }
 
 
+   @Override
+   public boolean equals(Object o)
+   {
+      if (!(o instanceof CSSFontFeatureSettings))
+         return false;
+      HashMap<String, Integer>  other = ((CSSFontFeatureSettings) o).settings;
+      return (settings == null) ? (other == null) : settings.equals(other);
+   }
+
+
+   @Override
+   public int hashCode()
+   {
+      return (settings == null) ? 0 : settings.hashCode();
+   }
+
+
    @Override
    public String toString()
    {
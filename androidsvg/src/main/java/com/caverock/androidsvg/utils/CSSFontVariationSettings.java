@@ -60,6 +60,20 @@ public class CSSFontVariationSettings
    }
 
 
+   @Override
+   public boolean equals(Object o)
+   {
+      return (o instanceof CSSFontVariationSettings) && this.settings.equals(((CSSFontVariationSettings) o).settings);
+   }
+
+
+   @Override
+   public int hashCode()
+   {
+      return settings.hashCode();
+   }
+
+
    @Override
    public String toString()
    {
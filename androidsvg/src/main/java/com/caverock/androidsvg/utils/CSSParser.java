@@ -25,12 +25,11 @@ import com.caverock.androidsvg.utils.SVGBase.SvgElementBase;
 import com.caverock.androidsvg.utils.SVGBase.SvgObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 
@@ -220,54 +219,134 @@ public class CSSParser
       }
    }
 
+   /*
+    * A set of CSS rules, kept in order of increasing specificity. Rules with equal
+    * specificity are kept in the order they were added.
+    *
+    * Rules are stored in a separate segment for each Source, so that the rules from
+    * one source (eg. RenderOptions) can be attached and detached in constant time.
+    * A segment can be shared with another Ruleset. Shared segments are copied before
+    * they are modified.
+    */
    public static class  Ruleset
    {
-      private List<Rule>  rules = null;
+      private static final int  NUM_SOURCES = Source.values().length;
+
+      private final ArrayList<Rule>[]  segments = newSegmentArray();
+      private final boolean[]          segmentIsShared = new boolean[NUM_SOURCES];
+      private List<Rule>               mergedRules = null;   // All segments merged by specificity. Built on demand.
+      private RuleIndex                index = null;         // Built on demand for larger rulesets
+
+      private static final int  MIN_RULES_FOR_INDEX = 8;
+
+      @SuppressWarnings("unchecked")
+      private static ArrayList<Rule>[]  newSegmentArray()
+      {
+         return (ArrayList<Rule>[]) new ArrayList[NUM_SOURCES];
+      }
 
       // Add a rule to the ruleset. The position at which it is inserted is determined by its specificity value.
       void  add(Rule rule)
       {
-         if (this.rules == null)
-            this.rules = new LinkedList<>();
+         ArrayList<Rule>  segment = getWritableSegment(rule.source.ordinal());
+         segment.add(upperBound(segment, rule.selector.specificity), rule);
+         rulesChanged();
+      }
 
-         ListIterator<Rule> iter = this.rules.listIterator();
-         while (iter.hasNext()) {
-            int   i        = iter.nextIndex();
-            Rule  nextRule = iter.next();
+      public void  addAll(Ruleset rules)
+      {
+         for (int src = 0; src < NUM_SOURCES; src++)
+         {
+            ArrayList<Rule>  other = rules.segments[src];
+            if (other == null || other.isEmpty())
+               continue;
+            if (this.segments[src] == null || this.segments[src].isEmpty()) {
+               // Nothing here yet, so just share the other ruleset's segment
+               this.segments[src] = other;
+               this.segmentIsShared[src] = true;
+               rules.segmentIsShared[src] = true;
+            } else {
+               this.segments[src] = merge(this.segments[src], other);
+               this.segmentIsShared[src] = false;
+            }
+         }
+         rulesChanged();
+      }
 
-            if (nextRule.selector.specificity > rule.selector.specificity) {
-               rules.add(i, rule);
-               return;
+      private void  rulesChanged()
+      {
+         mergedRules = null;
+         index = null;
+      }
+
+      /*
+       * Returns all the rules, in order of increasing specificity. The returned list must not be modified.
+       */
+      public List<Rule>  getRules()
+      {
+         if (mergedRules == null)
+         {
+            List<Rule>  result = null;
+            for (ArrayList<Rule> segment: segments)
+            {
+               if (segment == null || segment.isEmpty())
+                  continue;
+               result = (result == null) ? segment : merge(result, segment);
             }
+            mergedRules = (result != null) ? result : Collections.<Rule>emptyList();
          }
+         return mergedRules;
+      }
 
-         rules.add(rule);
+      public boolean  isEmpty()
+      {
+         return ruleCount() == 0;
       }
 
-      public void  addAll(Ruleset rules)
+      /*
+       * Find the rules that match an element, and append them to 'matched' in order of increasing specificity.
+       */
+      void  findMatchingRules(RuleMatchContext ruleMatchContext, SvgElementBase obj, List<Rule> matched)
       {
-         if (rules.rules == null)
+         List<Rule>  rules = getRules();
+         if (rules.size() < MIN_RULES_FOR_INDEX)
+         {
+            for (Rule rule: rules) {
+               if (ruleMatch(ruleMatchContext, rule.selector, obj))
+                  matched.add(rule);
+            }
             return;
-         if (this.rules == null)
-            this.rules = new LinkedList<>();
-         for (Rule rule: rules.rules) {
-            this.add(rule);
          }
+         getIndex().findMatchingRules(ruleMatchContext, obj, matched);
       }
 
-      public List<Rule>  getRules()
+      /*
+       * Build the rule index now, rather than on first use. Used for rulesets that are shared between threads.
+       */
+      void  buildIndex()
       {
-         return this.rules;
+         if (getRules().size() >= MIN_RULES_FOR_INDEX)
+            getIndex();
       }
 
-      public boolean  isEmpty()
+      private RuleIndex  getIndex()
       {
-         return this.rules == null || this.rules.isEmpty();
+         RuleIndex  result = index;
+         if (result == null) {
+            result = new RuleIndex(getRules());
+            index = result;
+         }
+         return result;
       }
 
       int  ruleCount()
       {
-         return (this.rules != null) ? this.rules.size() : 0;
+         int  count = 0;
+         for (ArrayList<Rule> segment: segments) {
+            if (segment != null)
+               count += segment.size();
+         }
+         return count;
       }
 
       /*
@@ -275,28 +354,210 @@ public class CSSParser
        */
       public void  removeFromSource(Source sourceToBeRemoved)
       {
-         if (this.rules == null)
+         int  src = sourceToBeRemoved.ordinal();
+         if (segments[src] == null)
             return;
-         Iterator<Rule> iter = this.rules.iterator();
-         while (iter.hasNext()) {
-            if (iter.next().source == sourceToBeRemoved)
-               iter.remove();
+         segments[src] = null;
+         segmentIsShared[src] = false;
+         rulesChanged();
+      }
+
+      private ArrayList<Rule>  getWritableSegment(int src)
+      {
+         if (segments[src] == null) {
+            segments[src] = new ArrayList<>();
+         } else if (segmentIsShared[src]) {
+            segments[src] = new ArrayList<>(segments[src]);
+            segmentIsShared[src] = false;
+         }
+         return segments[src];
+      }
+
+      // Find the position after the last rule with a specificity <= the given one
+      private static int  upperBound(List<Rule> rules, int specificity)
+      {
+         int  lo = 0;
+         int  hi = rules.size();
+         while (lo < hi) {
+            int  mid = (lo + hi) >>> 1;
+            if (rules.get(mid).selector.specificity <= specificity)
+               lo = mid + 1;
+            else
+               hi = mid;
          }
+         return lo;
+      }
+
+      // Merge two sorted lists of rules. When specificities are equal, rules from 'a' come first.
+      private static ArrayList<Rule>  merge(List<Rule> a, List<Rule> b)
+      {
+         ArrayList<Rule>  result = new ArrayList<>(a.size() + b.size());
+         int  i = 0, j = 0;
+         while (i < a.size() && j < b.size()) {
+            if (b.get(j).selector.specificity < a.get(i).selector.specificity)
+               result.add(b.get(j++));
+            else
+               result.add(a.get(i++));
+         }
+         while (i < a.size())
+            result.add(a.get(i++));
+         while (j < b.size())
+            result.add(b.get(j++));
+         return result;
       }
 
       @Override
       public String toString()
       {
-         if (rules == null)
-            return "";
          StringBuilder sb = new StringBuilder();
-         for (Rule rule: rules)
+         for (Rule rule: getRules())
             sb.append(rule.toString()).append('\n');
          return sb.toString();
       }
    }
 
 
+   /*
+    * An index of the rules in a Ruleset, by the id, class or tag of the last simple selector in their selector.
+    * An element only needs to be tested against the rules that could possibly match it.
+    */
+   private static class  RuleIndex
+   {
+      private static final int[]  NONE = new int[0];
+
+      private final List<Rule>          rules;
+      // Each map entry is a list of positions in 'rules', in increasing order
+      private final Map<String, int[]>  byId;
+      private final Map<String, int[]>  byClass;
+      private final Map<String, int[]>  byTag;
+      private final int[]               universal;
+
+      RuleIndex(List<Rule> rules)
+      {
+         this.rules = rules;
+
+         Map<String, List<Integer>>  ids = new HashMap<>();
+         Map<String, List<Integer>>  classes = new HashMap<>();
+         Map<String, List<Integer>>  tags = new HashMap<>();
+         List<Integer>               any = new ArrayList<>();
+
+         for (int i = 0; i < rules.size(); i++)
+         {
+            SimpleSelector  key = rules.get(i).selector.get(rules.get(i).selector.size() - 1);
+            String  id = null;
+            String  className = null;
+            if (key.attribs != null) {
+               for (Attrib attr: key.attribs) {
+                  if (attr.name.equals(ID) && id == null)
+                     id = attr.value;
+                  else if (attr.name.equals(CLASS) && className == null)
+                     className = attr.value;
+               }
+            }
+            if (id != null)
+               addPosition(ids, id, i);
+            else if (className != null)
+               addPosition(classes, className, i);
+            else if (key.tag != null)
+               addPosition(tags, key.tag, i);
+            else
+               any.add(i);
+         }
+
+         this.byId = toArrays(ids);
+         this.byClass = toArrays(classes);
+         this.byTag = toArrays(tags);
+         this.universal = toArray(any);
+      }
+
+      void  findMatchingRules(RuleMatchContext ruleMatchContext, SvgElementBase obj, List<Rule> matched)
+      {
+         int[]  idRules = (obj.id != null) ? get(byId, obj.id) : NONE;
+         int[]  tagRules = get(byTag, obj.getNodeName().toLowerCase(Locale.US));
+
+         int  count = universal.length + idRules.length + tagRules.length;
+         if (obj.classNames != null) {
+            for (String className: obj.classNames)
+               count += get(byClass, className).length;
+         }
+         if (count == 0)
+            return;
+
+         // Gather the candidate rules, then put them back into specificity order
+         int[]  candidates = new int[count];
+         int    n = 0;
+         System.arraycopy(universal, 0, candidates, n, universal.length);
+         n += universal.length;
+         System.arraycopy(idRules, 0, candidates, n, idRules.length);
+         n += idRules.length;
+         System.arraycopy(tagRules, 0, candidates, n, tagRules.length);
+         n += tagRules.length;
+         if (obj.classNames != null) {
+            for (String className: obj.classNames) {
+               int[]  classRules = get(byClass, className);
+               System.arraycopy(classRules, 0, candidates, n, classRules.length);
+               n += classRules.length;
+            }
+         }
+         Arrays.sort(candidates);
+
+         int  last = -1;
+         for (int pos: candidates)
+         {
+            if (pos == last)   // Element has the same class more than once
+               continue;
+            last = pos;
+            Rule  rule = rules.get(pos);
+            if (ruleMatch(ruleMatchContext, rule.selector, obj))
+               matched.add(rule);
+         }
+      }
+
+      private static int[]  get(Map<String, int[]> map, String key)
+      {
+         int[]  result = map.get(key);
+         return (result != null) ? result : NONE;
+      }
+
+      private static void  addPosition(Map<String, List<Integer>> map, String key, int position)
+      {
+         List<Integer>  list = map.get(key);
+         if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+         }
+         list.add(position);
+      }
+
+      private static Map<String, int[]>  toArrays(Map<String, List<Integer>> map)
+      {
+         Map<String, int[]>  result = new HashMap<>(map.size() * 2);
+         for (Map.Entry<String, List<Integer>> entry: map.entrySet())
+            result.put(entry.getKey(), toArray(entry.getValue()));
+         return result;
+      }
+
+      private static int[]  toArray(List<Integer> list)
+      {
+         int[]  result = new int[list.size()];
+         for (int i = 0; i < result.length; i++)
+            result[i] = list.get(i);
+         return result;
+      }
+   }
+
+
+   // Orders rules by increasing specificity
+   static final Comparator<Rule>  SPECIFICITY_ORDER = new Comparator<Rule>()
+   {
+      @Override
+      public int  compare(Rule a, Rule b)
+      {
+         return Integer.compare(a.selector.specificity, b.selector.specificity);
+      }
+   };
+
+
    public enum  Source
    {
       Document,
@@ -699,6 +960,10 @@ public class CSSParser
       if (selector.size() == 1)
          return selectorMatch(ruleMatchContext, selector.get(0), obj);
 
+      // Quickly reject selectors that require an ancestor that doesn't exist
+      if (!ancestorsMightMatch(selector, obj))
+         return false;
+
       // Build the list of ancestor objects
       List<SvgContainer> ancestors = new ArrayList<>();
       SvgContainer  parent = obj.parent;
@@ -715,6 +980,136 @@ public class CSSParser
    }
 
 
+   /*
+    * Check the selector parts that must match an ancestor of obj against the ancestor filter.
+    * Returns false if the selector definitely can't match.
+    */
+   private static boolean  ancestorsMightMatch(Selector selector, SvgElementBase obj)
+   {
+      if (obj.parent == null)
+         return false;
+      AncestorFilter  filter = getAncestorFilter((SvgElementBase) obj.parent);
+
+      // Parts joined to the subject by descendant and child combinators must match ancestors.
+      // Once we hit a sibling combinator, the remaining parts could match siblings of ancestors.
+      for (int i = selector.size() - 1; i > 0; i--)
+      {
+         if (selector.get(i).combinator == Combinator.FOLLOWS)
+            break;
+         if (!filter.mightMatch(selector.get(i - 1)))
+            return false;
+      }
+      return true;
+   }
+
+
+   private static AncestorFilter  getAncestorFilter(SvgElementBase obj)
+   {
+      if (obj.ancestorFilter == null)
+      {
+         AncestorFilter  parentFilter = (obj.parent != null) ? getAncestorFilter((SvgElementBase) obj.parent) : null;
+         obj.ancestorFilter = new AncestorFilter(parentFilter, obj);
+      }
+      return obj.ancestorFilter;
+   }
+
+
+   /*
+    * A Bloom filter containing the tag names, ids and class names of an element and all of its
+    * ancestors. It is used to reject descendant selectors without having to walk up the tree.
+    *
+    * Selectors are matched against the document tree, which doesn't change after parsing.
+    * So each container caches the filter for itself and its ancestors, and its children share it.
+    */
+   static class  AncestorFilter
+   {
+      private static final int  NUM_BITS = 512;
+
+      private static final int  SALT_TAG = 0x2f6b9d53;
+      private static final int  SALT_ID = 0x5bd1e995;
+      private static final int  SALT_CLASS = 0x1b873593;
+
+      private final long[]  bits = new long[NUM_BITS / 64];
+
+      AncestorFilter(AncestorFilter parentFilter, SvgElementBase obj)
+      {
+         if (parentFilter != null)
+            System.arraycopy(parentFilter.bits, 0, bits, 0, bits.length);
+
+         add(obj.getNodeName().toLowerCase(Locale.US), SALT_TAG);
+         if (obj.id != null)
+            add(obj.id, SALT_ID);
+         if (obj.classNames != null) {
+            for (String className: obj.classNames)
+               add(className, SALT_CLASS);
+         }
+      }
+
+
+      /*
+       * Returns false if no ancestor could match the tag, ids and classes of the given selector.
+       */
+      boolean  mightMatch(SimpleSelector sel)
+      {
+         if (sel.tag != null && !mightContain(sel.tag, SALT_TAG))
+            return false;
+         if (sel.attribs != null)
+         {
+            for (Attrib attr: sel.attribs)
+            {
+               if (attr.name.equals(ID)) {
+                  if (!mightContain(attr.value, SALT_ID))
+                     return false;
+               } else if (attr.name.equals(CLASS)) {
+                  if (!mightContain(attr.value, SALT_CLASS))
+                     return false;
+               }
+            }
+         }
+         return true;
+      }
+
+
+      private void  add(String key, int salt)
+      {
+         int  hash = mix(key.hashCode() ^ salt);
+         setBit(hash);
+         setBit(hash >>> 16);
+      }
+
+
+      private boolean  mightContain(String key, int salt)
+      {
+         int  hash = mix(key.hashCode() ^ salt);
+         return isBitSet(hash) && isBitSet(hash >>> 16);
+      }
+
+
+      private void  setBit(int hash)
+      {
+         int  bit = hash & (NUM_BITS - 1);
+         bits[bit >>> 6] |= (1L << (bit & 63));
+      }
+
+
+      private boolean  isBitSet(int hash)
+      {
+         int  bit = hash & (NUM_BITS - 1);
+         return (bits[bit >>> 6] & (1L << (bit & 63))) != 0;
+      }
+
+
+      // Spread the bits of a String hash, which are poorly distributed for short strings
+      private static int  mix(int h)
+      {
+         h ^= h >>> 16;
+         h *= 0x85ebca6b;
+         h ^= h >>> 13;
+         return h;
+      }
+   }
+
+
    private static boolean  ruleMatch(RuleMatchContext ruleMatchContext, Selector selector, int selPartPos, List<SvgContainer> ancestors, int ancestorsPos, SvgElementBase obj)
    {
       // We start at the last part of the simpleSelectors and loop back through the parts
@@ -889,16 +1284,17 @@ public class CSSParser
          int childPos = 0;
          int childCount = 1;
 
-         // If this is not the root element, then determine
-         // this objects sibling position and total sibling count
+         // If this is not the root element, then get this objects sibling position
+         // and total sibling count. These were recorded when the document was parsed.
+         // If there is a node name, the selector has already checked that it is the type of obj.
          if (obj.parent != null) {
-            childCount = 0;
-            for (SvgObject node: obj.parent.getChildren()) {
-               SvgElementBase  child = (SvgElementBase) node;  // This should be safe. We shouldn't be styling any SvgObject that isn't an element.
-               if (child == obj)
-                  childPos = childCount;
-               if (nodeNameToCheck == null || child.getNodeName().equals(nodeNameToCheck))
-                  childCount++;   // this is a child of the right type
+            SvgElementBase  parent = (SvgElementBase) obj.parent;
+            if (nodeNameToCheck == null) {
+               childPos = obj.siblingIndex;
+               childCount = parent.childElementCount;
+            } else {
+               childPos = obj.siblingOfTypeIndex;
+               childCount = parent.getChildElementCount(obj.getNodeName());
             }
          }
 
@@ -951,15 +1347,11 @@ public class CSSParser
          // Initialise with correct values for root element
          int childCount = 1;
 
-         // If this is not the root element, then determine
-         // this objects sibling position and total sibling count
+         // If this is not the root element, then get the sibling count recorded when the document was parsed
          if (obj.parent != null) {
-            childCount = 0;
-            for (SvgObject node: obj.parent.getChildren()) {
-               SvgElementBase  child = (SvgElementBase) node;  // This should be safe. We shouldn't be styling any SvgObject that isn't an element.
-               if (nodeNameToCheck == null || child.getNodeName().equals(nodeNameToCheck))
-                  childCount++;   // this is a child of the right type
-            }
+            SvgElementBase  parent = (SvgElementBase) obj.parent;
+            childCount = (nodeNameToCheck == null) ? parent.childElementCount
+                                                   : parent.getChildElementCount(obj.getNodeName());
          }
 
          return (childCount == 1);
@@ -0,0 +1,719 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+
+import com.caverock.androidsvg.utils.SVGBase.SvgElementBase;
+import com.caverock.androidsvg.utils.SVGBase.SvgObject;
+
+import java.util.Arrays;
+
+/*
+    A flat list of the Canvas operations that a render of a document makes.
+    The operations are kept in primitive arrays, so they can be replayed quickly,
+    and so they can be inspected and changed after the document has been compiled.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class DisplayListBase
+{
+   // Operation types
+   public static final int  OP_SAVE = 0;
+   public static final int  OP_SAVE_LAYER = 1;
+   public static final int  OP_RESTORE = 2;
+   public static final int  OP_CONCAT = 3;
+   public static final int  OP_SET_MATRIX = 4;
+   public static final int  OP_TRANSLATE = 5;
+   public static final int  OP_SCALE = 6;
+   public static final int  OP_CLIP_RECT = 7;
+   public static final int  OP_CLIP_PATH = 8;
+   public static final int  OP_DRAW_PATH = 9;
+   public static final int  OP_DRAW_RECT = 10;
+   public static final int  OP_DRAW_ROUND_RECT = 11;
+   public static final int  OP_DRAW_OVAL = 12;
+   public static final int  OP_DRAW_CIRCLE = 13;
+   public static final int  OP_DRAW_LINE = 14;
+   public static final int  OP_DRAW_TEXT = 15;
+   public static final int  OP_DRAW_TEXT_ON_PATH = 16;
+   public static final int  OP_DRAW_BITMAP = 17;
+   public static final int  OP_DRAW_PICTURE = 18;
+   public static final int  OP_DRAW_COLOR = 19;
+   public static final int  OP_DRAW_BITMAP_RECT = 20;
+
+   // Each operation takes OP_STRIDE entries in 'ops'
+   private static final int  OP_STRIDE = 4;
+   private static final int  OP_TYPE = 0;
+   private static final int  OP_FLOATS = 1;     // index of the operation's first argument in 'floats'
+   private static final int  OP_OBJECTS = 2;    // index of the operation's first argument in 'objects'
+   private static final int  OP_ELEMENT = 3;    // index of the element the operation was made for, or -1
+
+   private static final int  NO_ELEMENT = -1;
+
+   private static final boolean  SUPPORTS_SAVE_LAYER_FLAGLESS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+
+   private final int       width;
+   private final int       height;
+   private final int       opCount;
+   private final int[]     ops;
+   private final float[]   floats;      // Coordinates, matrices etc.
+   private final Object[]  objects;     // Paints, Paths, Strings, Bitmaps and Pictures. Never shared with the renderer.
+   private final String[]  elementIds;  // The id of each element that was rendered (may be null)
+   private final int[]     elementParents;
+
+
+   protected DisplayListBase(SVGBase document, int widthInPixels, int heightInPixels, RenderOptionsBase renderOptions)
+   {
+      Recorder  recorder = new Recorder(widthInPixels, heightInPixels);
+      document.renderToRecorder(recorder, renderOptions);
+
+      this.width = widthInPixels;
+      this.height = heightInPixels;
+      this.opCount = recorder.opCount;
+      this.ops = Arrays.copyOf(recorder.ops, recorder.opCount * OP_STRIDE);
+      this.floats = Arrays.copyOf(recorder.floats, recorder.floatCount);
+      this.objects = Arrays.copyOf(recorder.objects, recorder.objectCount);
+      this.elementIds = Arrays.copyOf(recorder.elementIds, recorder.elementCount);
+      this.elementParents = Arrays.copyOf(recorder.elementParents, recorder.elementCount);
+   }
+
+
+   /**
+    * Returns the width of the area the document was compiled for.
+    * @return the width in pixels
+    */
+   public int  getWidth()
+   {
+      return width;
+   }
+
+
+   /**
+    * Returns the height of the area the document was compiled for.
+    * @return the height in pixels
+    */
+   public int  getHeight()
+   {
+      return height;
+   }
+
+
+   /**
+    * Returns the number of operations in this display list.
+    * @return the number of operations
+    */
+   public int  getOperationCount()
+   {
+      return opCount;
+   }
+
+
+   /**
+    * Returns the type of an operation.
+    * @param index the index of the operation
+    * @return one of the {@code OP_*} constants
+    */
+   public int  getOperationType(int index)
+   {
+      checkIndex(index);
+      return ops[index * OP_STRIDE + OP_TYPE];
+   }
+
+
+   /**
+    * Returns the id of the element that an operation was made for. If that element has no id,
+    * the id of the nearest ancestor element that has one is returned.
+    * @param index the index of the operation
+    * @return the element id, or null if neither the element nor its ancestors have an id
+    */
+   public String  getElementId(int index)
+   {
+      checkIndex(index);
+      for (int el = ops[index * OP_STRIDE + OP_ELEMENT]; el != NO_ELEMENT; el = elementParents[el]) {
+         if (elementIds[el] != null)
+            return elementIds[el];
+      }
+      return null;
+   }
+
+
+   /**
+    * Returns a copy of the Paint used by an operation.
+    * @param index the index of the operation
+    * @return a copy of the Paint, or null if the operation doesn't use one
+    */
+   public Paint  getPaint(int index)
+   {
+      int  paintIndex = getPaintIndex(index);
+      return (paintIndex < 0 || objects[paintIndex] == null) ? null : new Paint((Paint) objects[paintIndex]);
+   }
+
+
+   /**
+    * Replaces the Paint used by an operation. The Paint is copied, so later
+    * changes to it don't affect this display list.
+    * @param index the index of the operation
+    * @param paint the new Paint
+    * @throws IllegalArgumentException if the operation doesn't use a Paint
+    */
+   public void  setPaint(int index, Paint paint)
+   {
+      int  paintIndex = getPaintIndex(index);
+      if (paintIndex < 0)
+         throw new IllegalArgumentException("Operation "+index+" does not use a Paint");
+      objects[paintIndex] = (paint == null) ? null : new Paint(paint);
+   }
+
+
+   /**
+    * Changes the colour of the fills drawn for an element and its descendants.
+    * The alpha of each fill is kept, because it includes the opacity of the element.
+    * Fills that use a gradient or pattern are not changed.
+    *
+    * @param elementId the id of the element
+    * @param rgb the new fill colour. The alpha component is ignored.
+    * @return the number of operations that were changed
+    */
+   public int  setFillColor(String elementId, int rgb)
+   {
+      int  count = 0;
+      for (int i = 0; i < opCount; i++)
+      {
+         int  paintIndex = getPaintIndex(i);
+         if (paintIndex < 0 || objects[paintIndex] == null)
+            continue;
+         int  type = getOperationType(i);
+         if (type == OP_SAVE_LAYER || type == OP_DRAW_BITMAP || type == OP_DRAW_BITMAP_RECT || !isElementOrDescendant(ops[i * OP_STRIDE + OP_ELEMENT], elementId))
+            continue;
+         // Mask compositing paints have a transfer mode. Leave them alone.
+         Paint  paint = (Paint) objects[paintIndex];
+         if (paint.getStyle() != Paint.Style.FILL || paint.getShader() != null || paint.getXfermode() != null)
+            continue;
+         Paint  newPaint = new Paint(paint);
+         newPaint.setColor((rgb & 0xffffff) | (paint.getAlpha() << 24));
+         objects[paintIndex] = newPaint;
+         count++;
+      }
+      return count;
+   }
+
+
+   /**
+    * Replays this display list onto a Canvas. The current matrix and clip of the Canvas
+    * are respected, so the display list can be positioned by transforming the Canvas first.
+    * @param canvas the canvas to draw onto
+    */
+   public void  draw(Canvas canvas)
+   {
+      canvas.save();
+
+      // Operations that set the matrix are relative to the matrix the list was drawn with.
+      // That is the matrix before any of the recorded transforms are applied.
+      Matrix  baseMatrix = canvas.getMatrix();
+      Matrix  matrix = new Matrix();
+      float[] values = new float[9];
+      RectF   rect = new RectF();
+
+      for (int i = 0; i < opCount; i++)
+      {
+         int  o = i * OP_STRIDE;
+         int  f = ops[o + OP_FLOATS];
+         int  obj = ops[o + OP_OBJECTS];
+
+         switch (ops[o + OP_TYPE])
+         {
+            case OP_SAVE:
+               canvas.save();
+               break;
+            case OP_SAVE_LAYER:
+               RectF  bounds = null;
+               if (!Float.isNaN(floats[f])) {
+                  rect.set(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+                  bounds = rect;
+               }
+               if (SUPPORTS_SAVE_LAYER_FLAGLESS)
+                  canvas.saveLayer(bounds, (Paint) objects[obj]);
+               else
+                  CanvasLegacy.saveLayer(canvas, bounds, (Paint) objects[obj], CanvasLegacy.ALL_SAVE_FLAG);
+               break;
+            case OP_RESTORE:
+               canvas.restore();
+               break;
+            case OP_CONCAT:
+               System.arraycopy(floats, f, values, 0, 9);
+               matrix.setValues(values);
+               canvas.concat(matrix);
+               break;
+            case OP_SET_MATRIX:
+               System.arraycopy(floats, f, values, 0, 9);
+               matrix.setValues(values);
+               matrix.postConcat(baseMatrix);
+               canvas.setMatrix(matrix);
+               break;
+            case OP_TRANSLATE:
+               canvas.translate(floats[f], floats[f+1]);
+               break;
+            case OP_SCALE:
+               canvas.scale(floats[f], floats[f+1]);
+               break;
+            case OP_CLIP_RECT:
+               canvas.clipRect(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+               break;
+            case OP_CLIP_PATH:
+               canvas.clipPath((Path) objects[obj]);
+               break;
+            case OP_DRAW_PATH:
+               canvas.drawPath((Path) objects[obj], (Paint) objects[obj+1]);
+               break;
+            case OP_DRAW_RECT:
+               canvas.drawRect(floats[f], floats[f+1], floats[f+2], floats[f+3], (Paint) objects[obj]);
+               break;
+            case OP_DRAW_ROUND_RECT:
+               rect.set(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+               canvas.drawRoundRect(rect, floats[f+4], floats[f+5], (Paint) objects[obj]);
+               break;
+            case OP_DRAW_OVAL:
+               rect.set(floats[f], floats[f+1], floats[f+2], floats[f+3]);
+               canvas.drawOval(rect, (Paint) objects[obj]);
+               break;
+            case OP_DRAW_CIRCLE:
+               canvas.drawCircle(floats[f], floats[f+1], floats[f+2], (Paint) objects[obj]);
+               break;
+            case OP_DRAW_LINE:
+               canvas.drawLine(floats[f], floats[f+1], floats[f+2], floats[f+3], (Paint) objects[obj]);
+               break;
+            case OP_DRAW_TEXT:
+               canvas.drawText((String) objects[obj], floats[f], floats[f+1], (Paint) objects[obj+1]);
+               break;
+            case OP_DRAW_TEXT_ON_PATH:
+               canvas.drawTextOnPath((String) objects[obj], (Path) objects[obj+1], floats[f], floats[f+1], (Paint) objects[obj+2]);
+               break;
+            case OP_DRAW_BITMAP:
+               canvas.drawBitmap((Bitmap) objects[obj], floats[f], floats[f+1], (Paint) objects[obj+1]);
+               break;
+            case OP_DRAW_BITMAP_RECT:
+               Rect  src = null;
+               if (!Float.isNaN(floats[f]))
+                  src = new Rect((int) floats[f], (int) floats[f+1], (int) floats[f+2], (int) floats[f+3]);
+               rect.set(floats[f+4], floats[f+5], floats[f+6], floats[f+7]);
+               canvas.drawBitmap((Bitmap) objects[obj], src, rect, (Paint) objects[obj+1]);
+               break;
+            case OP_DRAW_PICTURE:
+               canvas.drawPicture((Picture) objects[obj]);
+               break;
+            case OP_DRAW_COLOR:
+               canvas.drawColor((Integer) objects[obj]);
+               break;
+         }
+      }
+
+      canvas.restore();
+   }
+
+
+   private void  checkIndex(int index)
+   {
+      if (index < 0 || index >= opCount)
+         throw new IndexOutOfBoundsException("Operation index "+index+" out of range");
+   }
+
+
+   /*
+    * Returns the position of an operation's Paint in 'objects', or -1 if it doesn't have one.
+    */
+   private int  getPaintIndex(int index)
+   {
+      int  obj = ops[index * OP_STRIDE + OP_OBJECTS];
+      switch (getOperationType(index))
+      {
+         case OP_SAVE_LAYER:
+         case OP_DRAW_RECT:
+         case OP_DRAW_ROUND_RECT:
+         case OP_DRAW_OVAL:
+         case OP_DRAW_CIRCLE:
+         case OP_DRAW_LINE:
+            return obj;
+         case OP_DRAW_PATH:
+         case OP_DRAW_TEXT:
+         case OP_DRAW_BITMAP:
+         case OP_DRAW_BITMAP_RECT:
+            return obj + 1;
+         case OP_DRAW_TEXT_ON_PATH:
+            return obj + 2;
+         default:
+            return -1;
+      }
+   }
+
+
+   private boolean  isElementOrDescendant(int el, String elementId)
+   {
+      for (; el != NO_ELEMENT; el = elementParents[el]) {
+         if (elementId.equals(elementIds[el]))
+            return true;
+      }
+      return false;
+   }
+
+
+   //===============================================================================
+   // Recording
+
+
+   /*
+    * A Canvas that records the operations the renderer makes, as well as performing them.
+    * Performing them keeps the matrix and clip up to date, for the parts of the renderer that query them.
+    */
+   static class Recorder extends Canvas
+   {
+      private final int  width;
+      private final int  height;
+
+      int[]     ops = new int[64 * OP_STRIDE];
+      int       opCount = 0;
+      float[]   floats = new float[256];
+      int       floatCount = 0;
+      Object[]  objects = new Object[128];
+      int       objectCount = 0;
+      String[]  elementIds = new String[32];
+      int[]     elementParents = new int[32];
+      int       elementCount = 0;
+
+      private int  currentElement = NO_ELEMENT;
+
+
+      Recorder(int width, int height)
+      {
+         super();
+         this.width = width;
+         this.height = height;
+      }
+
+
+      /*
+       * Called by the renderer when it starts rendering an element.
+       */
+      void  pushElement(SvgObject obj)
+      {
+         if (elementCount == elementIds.length) {
+            elementIds = Arrays.copyOf(elementIds, elementCount * 2);
+            elementParents = Arrays.copyOf(elementParents, elementCount * 2);
+         }
+         elementIds[elementCount] = (obj instanceof SvgElementBase) ? ((SvgElementBase) obj).id : null;
+         elementParents[elementCount] = currentElement;
+         currentElement = elementCount++;
+      }
+
+
+      /*
+       * Called by the renderer when it has finished rendering an element.
+       */
+      void  popElement()
+      {
+         if (currentElement != NO_ELEMENT)
+            currentElement = elementParents[currentElement];
+      }
+
+
+      private void  addOp(int type)
+      {
+         if (opCount * OP_STRIDE == ops.length)
+            ops = Arrays.copyOf(ops, ops.length * 2);
+         int  o = opCount * OP_STRIDE;
+         ops[o + OP_TYPE] = type;
+         ops[o + OP_FLOATS] = floatCount;
+         ops[o + OP_OBJECTS] = objectCount;
+         ops[o + OP_ELEMENT] = currentElement;
+         opCount++;
+      }
+
+      private void  addFloat(float f)
+      {
+         if (floatCount == floats.length)
+            floats = Arrays.copyOf(floats, floats.length * 2);
+         floats[floatCount++] = f;
+      }
+
+      private void  addFloats(float a, float b, float c, float d)
+      {
+         addFloat(a);
+         addFloat(b);
+         addFloat(c);
+         addFloat(d);
+      }
+
+      private void  addMatrix(Matrix matrix)
+      {
+         float[]  values = new float[9];
+         matrix.getValues(values);
+         for (float value: values)
+            addFloat(value);
+      }
+
+      private void  addObject(Object obj)
+      {
+         if (objectCount == objects.length)
+            objects = Arrays.copyOf(objects, objects.length * 2);
+         objects[objectCount++] = obj;
+      }
+
+      // The renderer changes its Paints and Paths after drawing them, so we keep copies
+      private void  addPaint(Paint paint)
+      {
+         addObject((paint == null) ? null : new Paint(paint));
+      }
+
+      private void  addPath(Path path)
+      {
+         addObject(new Path(path));
+      }
+
+
+      @Override
+      public int  getWidth()
+      {
+         return width;
+      }
+
+      @Override
+      public int  getHeight()
+      {
+         return height;
+      }
+
+      @Override
+      public int  save()
+      {
+         addOp(OP_SAVE);
+         return super.save();
+      }
+
+      @Override
+      public int  saveLayer(RectF bounds, Paint paint)
+      {
+         recordSaveLayer(bounds, paint);
+         return super.saveLayer(bounds, paint);
+      }
+
+      @Override
+      @SuppressWarnings("deprecation")
+      public int  saveLayer(RectF bounds, Paint paint, int saveFlags)
+      {
+         recordSaveLayer(bounds, paint);
+         return super.saveLayer(bounds, paint, saveFlags);
+      }
+
+      private void  recordSaveLayer(RectF bounds, Paint paint)
+      {
+         addOp(OP_SAVE_LAYER);
+         if (bounds == null)
+            addFloats(Float.NaN, 0f, 0f, 0f);
+         else
+            addFloats(bounds.left, bounds.top, bounds.right, bounds.bottom);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  restore()
+      {
+         addOp(OP_RESTORE);
+         super.restore();
+      }
+
+      @Override
+      public void  concat(Matrix matrix)
+      {
+         addOp(OP_CONCAT);
+         addMatrix(matrix);
+         super.concat(matrix);
+      }
+
+      @Override
+      public void  setMatrix(Matrix matrix)
+      {
+         addOp(OP_SET_MATRIX);
+         addMatrix((matrix == null) ? new Matrix() : matrix);
+         super.setMatrix(matrix);
+      }
+
+      @Override
+      public void  translate(float dx, float dy)
+      {
+         addOp(OP_TRANSLATE);
+         addFloat(dx);
+         addFloat(dy);
+         super.translate(dx, dy);
+      }
+
+      @Override
+      public void  scale(float sx, float sy)
+      {
+         addOp(OP_SCALE);
+         addFloat(sx);
+         addFloat(sy);
+         super.scale(sx, sy);
+      }
+
+      @Override
+      public boolean  clipRect(float left, float top, float right, float bottom)
+      {
+         addOp(OP_CLIP_RECT);
+         addFloats(left, top, right, bottom);
+         return super.clipRect(left, top, right, bottom);
+      }
+
+      @Override
+      public boolean  clipRect(int left, int top, int right, int bottom)
+      {
+         addOp(OP_CLIP_RECT);
+         addFloats(left, top, right, bottom);
+         return super.clipRect(left, top, right, bottom);
+      }
+
+      @Override
+      public boolean  clipPath(Path path)
+      {
+         addOp(OP_CLIP_PATH);
+         addPath(path);
+         return super.clipPath(path);
+      }
+
+      @Override
+      public void  drawPath(Path path, Paint paint)
+      {
+         addOp(OP_DRAW_PATH);
+         addPath(path);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawRect(float left, float top, float right, float bottom, Paint paint)
+      {
+         addOp(OP_DRAW_RECT);
+         addFloats(left, top, right, bottom);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawRect(RectF rect, Paint paint)
+      {
+         drawRect(rect.left, rect.top, rect.right, rect.bottom, paint);
+      }
+
+      @Override
+      public void  drawRoundRect(RectF rect, float rx, float ry, Paint paint)
+      {
+         addOp(OP_DRAW_ROUND_RECT);
+         addFloats(rect.left, rect.top, rect.right, rect.bottom);
+         addFloat(rx);
+         addFloat(ry);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawOval(RectF oval, Paint paint)
+      {
+         addOp(OP_DRAW_OVAL);
+         addFloats(oval.left, oval.top, oval.right, oval.bottom);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawCircle(float cx, float cy, float radius, Paint paint)
+      {
+         addOp(OP_DRAW_CIRCLE);
+         addFloat(cx);
+         addFloat(cy);
+         addFloat(radius);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawLine(float startX, float startY, float stopX, float stopY, Paint paint)
+      {
+         addOp(OP_DRAW_LINE);
+         addFloats(startX, startY, stopX, stopY);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawText(String text, float x, float y, Paint paint)
+      {
+         addOp(OP_DRAW_TEXT);
+         addFloat(x);
+         addFloat(y);
+         addObject(text);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawTextOnPath(String text, Path path, float hOffset, float vOffset, Paint paint)
+      {
+         addOp(OP_DRAW_TEXT_ON_PATH);
+         addFloat(hOffset);
+         addFloat(vOffset);
+         addObject(text);
+         addPath(path);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawBitmap(Bitmap bitmap, float left, float top, Paint paint)
+      {
+         addOp(OP_DRAW_BITMAP);
+         addFloat(left);
+         addFloat(top);
+         addObject(bitmap);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint)
+      {
+         addOp(OP_DRAW_BITMAP_RECT);
+         if (src == null)
+            addFloats(Float.NaN, 0f, 0f, 0f);
+         else
+            addFloats(src.left, src.top, src.right, src.bottom);
+         addFloats(dst.left, dst.top, dst.right, dst.bottom);
+         addObject(bitmap);
+         addPaint(paint);
+      }
+
+      @Override
+      public void  drawPicture(Picture picture)
+      {
+         addOp(OP_DRAW_PICTURE);
+         addObject(picture);
+      }
+
+      @Override
+      public void  drawColor(int color)
+      {
+         addOp(OP_DRAW_COLOR);
+         addObject(color);
+      }
+   }
+
+}
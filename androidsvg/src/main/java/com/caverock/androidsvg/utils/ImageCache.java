@@ -0,0 +1,265 @@
+/*
+   Copyright 2014 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.caverock.androidsvg.SVGExternalFileResolver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the Bitmaps decoded for &lt;image&gt; elements, so that they don't have to be
+ * decoded, or fetched from the SVGExternalFileResolver, every time the document is rendered.
+ *
+ * The cache is bounded by the total byte size of the Bitmaps it holds.  The least recently
+ * used Bitmaps are dropped first.  A Bitmap larger than the whole cache is never kept.
+ *
+ * Each document has its own cache.  A cache shared by all documents can be turned on with
+ * {@code SVG.setSharedImageCacheSize()}.
+ */
+
+class ImageCache
+{
+   static final int  DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+   private static final int  MAX_NATURAL_SIZES = 64;
+
+   // Key size for a resolver image that is kept for any size that it is big enough for
+   static final int  ANY_SIZE = -1;
+
+   private final Map<Key, Entry>  entries = new LinkedHashMap<>(16, 0.75f, true);
+   private final int              maxBytes;
+   private int                    currentBytes = 0;
+
+   // The full size of each data URL image. So that we can choose how to decode it, without decoding it first.
+   private final Map<String, int[]>  naturalSizes = new LinkedHashMap<String, int[]>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean  removeEldestEntry(Map.Entry<String, int[]> eldest)
+      {
+         return size() > MAX_NATURAL_SIZES;
+      }
+   };
+
+
+   /*
+    * Images are identified by their href. For data URLs, the href is the image content.
+    * External images also depend on the file resolver that loaded them.
+    * The same image may be decoded at more than one size, or just part of it may be decoded.
+    */
+   static class Key
+   {
+      private final String                   href;
+      private final SVGExternalFileResolver  resolver;   // null for data URLs
+      private final int                      width;      // The size that was asked for. 0 for full size, or ANY_SIZE.
+      private final int                      height;
+      private final Rect                     region;     // The part of the image that was decoded. null means all of it.
+
+      Key(String href, SVGExternalFileResolver resolver, int width, int height, Rect region)
+      {
+         this.href = href;
+         this.resolver = resolver;
+         this.width = width;
+         this.height = height;
+         this.region = region;
+      }
+
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof Key))
+            return false;
+         Key  other = (Key) o;
+         return resolver == other.resolver &&
+                width == other.width &&
+                height == other.height &&
+                ((region == null) ? other.region == null : region.equals(other.region)) &&
+                href.equals(other.href);
+      }
+
+      @Override
+      public int  hashCode()
+      {
+         // String caches its hash code, so this is cheap even for a large data URL
+         int  h = 31 * href.hashCode() + ((resolver == null) ? 0 : System.identityHashCode(resolver));
+         h = 31 * h + width;
+         h = 31 * h + height;
+         return 31 * h + ((region == null) ? 0 : region.hashCode());
+      }
+   }
+
+
+   /*
+    * The size is remembered, because a Bitmap that has been recycled reports a byte count of zero.
+    */
+   private static class Entry
+   {
+      final Bitmap  bitmap;
+      final int     size;
+
+      Entry(Bitmap bitmap, int size)
+      {
+         this.bitmap = bitmap;
+         this.size = size;
+      }
+   }
+
+
+   ImageCache(int maxBytes)
+   {
+      this.maxBytes = maxBytes;
+   }
+
+
+   synchronized Bitmap  get(Key key)
+   {
+      Entry  entry = entries.get(key);
+      if (entry == null)
+         return null;
+      if (entry.bitmap.isRecycled()) {
+         // The app recycled a Bitmap that its resolver gave us
+         remove(key);
+         return null;
+      }
+      return entry.bitmap;
+   }
+
+
+   synchronized void  put(Key key, Bitmap bitmap)
+   {
+      int  size = bitmap.getByteCount();
+      if (size > maxBytes)
+         return;
+      remove(key);
+      entries.put(key, new Entry(bitmap, size));
+      currentBytes += size;
+
+      // Evict the least recently used images until we are back under the limit
+      Iterator<Entry>  it = entries.values().iterator();
+      while (currentBytes > maxBytes && it.hasNext()) {
+         currentBytes -= it.next().size;
+         it.remove();
+      }
+   }
+
+
+   synchronized int[]  getNaturalSize(String href)
+   {
+      return naturalSizes.get(href);
+   }
+
+
+   synchronized void  putNaturalSize(String href, int width, int height)
+   {
+      naturalSizes.put(href, new int[] {width, height});
+   }
+
+
+   synchronized int  getSize()
+   {
+      return currentBytes;
+   }
+
+
+   synchronized void  clear()
+   {
+      entries.clear();
+      naturalSizes.clear();
+      currentBytes = 0;
+   }
+
+
+   private void  remove(Key key)
+   {
+      Entry  old = entries.remove(key);
+      if (old != null)
+         currentBytes -= old.size;
+   }
+
+
+   //==============================================================================
+
+
+   /*
+    * Decode the base64 data that starts at 'start' and runs to the end of 'str'.
+    * The characters are read straight from the string, to avoid copying a large
+    * data URL before decoding it.  Whitespace is skipped, as Base64.DEFAULT does.
+    *
+    * Throws IllegalArgumentException if the data is not valid base64.
+    */
+   static byte[]  decodeBase64(String str, int start)
+   {
+      int  end = str.length();
+
+      // First pass: check the data and count the characters, so the output can be allocated at its exact size
+      int      numChars = 0;
+      boolean  padding = false;
+      for (int i = start; i < end; i++)
+      {
+         char  ch = str.charAt(i);
+         if (ch == '=')
+            padding = true;
+         else if (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t')
+            continue;
+         else if (padding || base64Value(ch) < 0)
+            throw new IllegalArgumentException("bad base-64");   // bad character, or data after the padding
+         else
+            numChars++;
+      }
+      if (numChars % 4 == 1)
+         throw new IllegalArgumentException("bad base-64");      // a single leftover character
+
+      byte[]  out = new byte[numChars * 6 / 8];
+      int     outLen = 0;
+      int     accum = 0;
+      int     numBits = 0;
+      for (int i = start; outLen < out.length; i++)
+      {
+         int  val = base64Value(str.charAt(i));
+         if (val < 0)
+            continue;
+         accum = ((accum << 6) | val) & 0xffff;
+         numBits += 6;
+         if (numBits >= 8) {
+            numBits -= 8;
+            out[outLen++] = (byte) (accum >> numBits);
+         }
+      }
+      return out;
+   }
+
+
+   private static int  base64Value(char ch)
+   {
+      if (ch >= 'A' && ch <= 'Z')
+         return ch - 'A';
+      if (ch >= 'a' && ch <= 'z')
+         return ch - 'a' + 26;
+      if (ch >= '0' && ch <= '9')
+         return ch - '0' + 52;
+      if (ch == '+' || ch == '-')
+         return 62;
+      if (ch == '/' || ch == '_')
+         return 63;
+      return -1;
+   }
+
+}
@@ -0,0 +1,267 @@
+/*
+   Copyright 2014 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import com.caverock.androidsvg.utils.SVGBase.PathDefinition;
+import com.caverock.androidsvg.utils.SVGBase.PathInterface;
+
+/**
+ * Reduce a path to a polyline with fewer vertices, for drawing at small scales.
+ *
+ * Curves and arcs are flattened into line segments, then each subpath is thinned with the
+ * Douglas-Peucker algorithm. Half of the allowed error goes to each step, so no point on
+ * the result is further than the tolerance from the original path.
+ */
+
+class PathSimplifier implements PathInterface
+{
+   private static final int  MAX_CURVE_SEGMENTS = 256;
+
+   private final PathDefinition  result = new PathDefinition();
+   private final float           flatness;    // Max error allowed when flattening curves
+   private final float           tolerance;   // Max error allowed when removing points
+
+   private float[]  points = new float[64];    // The points of the current subpath
+   private int      pointsLength = 0;
+   private float    lastX, lastY;
+   private float    startX, startY;            // Start of the current subpath
+
+
+   private PathSimplifier(float maxError)
+   {
+      this.flatness = maxError / 2f;
+      this.tolerance = maxError / 2f;
+   }
+
+
+   /*
+    * Returns a simplified copy of the path. No point on it will be more than 'maxError' from the original.
+    */
+   static PathDefinition  simplify(PathDefinition pathDef, float maxError)
+   {
+      PathSimplifier  simplifier = new PathSimplifier(maxError);
+      pathDef.enumeratePath(simplifier);
+      simplifier.flush(false);
+      return simplifier.result;
+   }
+
+
+   //==============================================================================
+   // PathInterface
+
+
+   @Override
+   public void  moveTo(float x, float y)
+   {
+      flush(false);
+      addPoint(x, y);
+      startX = x;
+      startY = y;
+   }
+
+
+   @Override
+   public void  lineTo(float x, float y)
+   {
+      startSubpathIfNeeded();
+      addPoint(x, y);
+   }
+
+
+   @Override
+   public void  cubicTo(float x1, float y1, float x2, float y2, float x3, float y3)
+   {
+      startSubpathIfNeeded();
+      float  x0 = lastX, y0 = lastY;
+      // The flattening error of a cubic is at most 3/4 of its largest second difference, divided by n^2
+      float  dd = Math.max(Math.abs(x0 - 2*x1 + x2) + Math.abs(y0 - 2*y1 + y2),
+                           Math.abs(x1 - 2*x2 + x3) + Math.abs(y1 - 2*y2 + y3));
+      int    n = numSegments(0.75f * dd);
+      for (int i = 1; i < n; i++)
+      {
+         float  t = (float) i / n;
+         float  mt = 1f - t;
+         float  a = mt * mt * mt, b = 3 * mt * mt * t, c = 3 * mt * t * t, d = t * t * t;
+         addPoint(a*x0 + b*x1 + c*x2 + d*x3, a*y0 + b*y1 + c*y2 + d*y3);
+      }
+      addPoint(x3, y3);
+   }
+
+
+   @Override
+   public void  quadTo(float x1, float y1, float x2, float y2)
+   {
+      startSubpathIfNeeded();
+      float  x0 = lastX, y0 = lastY;
+      // The flattening error of a quadratic is at most 1/4 of its second difference, divided by n^2
+      float  dd = Math.abs(x0 - 2*x1 + x2) + Math.abs(y0 - 2*y1 + y2);
+      int    n = numSegments(0.25f * dd);
+      for (int i = 1; i < n; i++)
+      {
+         float  t = (float) i / n;
+         float  mt = 1f - t;
+         float  a = mt * mt, b = 2 * mt * t, c = t * t;
+         addPoint(a*x0 + b*x1 + c*x2, a*y0 + b*y1 + c*y2);
+      }
+      addPoint(x2, y2);
+   }
+
+
+   @Override
+   public void  arcTo(float rx, float ry, float xAxisRotation, boolean largeArcFlag, boolean sweepFlag, float x, float y)
+   {
+      startSubpathIfNeeded();
+      // Arcs are converted to cubics, which then get flattened
+      SVGAndroidRenderer.arcTo(lastX, lastY, rx, ry, xAxisRotation, largeArcFlag, sweepFlag, x, y, this);
+   }
+
+
+   @Override
+   public void  close()
+   {
+      flush(true);
+      // The current point returns to the start of the subpath
+      lastX = startX;
+      lastY = startY;
+   }
+
+
+   //==============================================================================
+
+
+   private int  numSegments(float errorScale)
+   {
+      if (errorScale <= flatness)
+         return 1;
+      int  n = (int) Math.ceil(Math.sqrt(errorScale / flatness));
+      return Math.min(n, MAX_CURVE_SEGMENTS);
+   }
+
+
+   /*
+    * A path command after a close, without a moveto, starts a new subpath at the start of the last one.
+    */
+   private void  startSubpathIfNeeded()
+   {
+      if (pointsLength == 0)
+         addPoint(lastX, lastY);
+   }
+
+
+   private void  addPoint(float x, float y)
+   {
+      if (pointsLength + 2 > points.length) {
+         float[]  newPoints = new float[points.length * 2];
+         System.arraycopy(points, 0, newPoints, 0, pointsLength);
+         points = newPoints;
+      }
+      points[pointsLength++] = x;
+      points[pointsLength++] = y;
+      lastX = x;
+      lastY = y;
+   }
+
+
+   /*
+    * Simplify the current subpath and add it to the result.
+    */
+   private void  flush(boolean closed)
+   {
+      int  numPoints = pointsLength / 2;
+      if (numPoints == 0) {
+         if (closed)
+            result.close();
+         return;
+      }
+
+      boolean[]  keep = douglasPeucker(points, numPoints, tolerance);
+      result.moveTo(points[0], points[1]);
+      for (int i = 1; i < numPoints; i++) {
+         if (keep[i])
+            result.lineTo(points[i*2], points[i*2+1]);
+      }
+      if (closed)
+         result.close();
+      pointsLength = 0;
+   }
+
+
+   /*
+    * Marks the points that have to be kept so that the polyline stays within 'tolerance' of the original.
+    * Uses an explicit stack, as paths can have many thousands of points.
+    */
+   private static boolean[]  douglasPeucker(float[] pts, int numPoints, float tolerance)
+   {
+      boolean[]  keep = new boolean[numPoints];
+      keep[0] = true;
+      keep[numPoints - 1] = true;
+      if (numPoints < 3)
+         return keep;
+
+      float  tolSq = tolerance * tolerance;
+      int[]  stack = new int[64];
+      int    top = 0;
+      stack[top++] = 0;
+      stack[top++] = numPoints - 1;
+
+      while (top > 0)
+      {
+         int  last = stack[--top];
+         int  first = stack[--top];
+
+         float  ax = pts[first*2], ay = pts[first*2+1];
+         float  dx = pts[last*2] - ax, dy = pts[last*2+1] - ay;
+         float  lenSq = dx*dx + dy*dy;
+
+         float  maxDistSq = -1f;
+         int    index = -1;
+         for (int i = first + 1; i < last; i++)
+         {
+            float  px = pts[i*2] - ax, py = pts[i*2+1] - ay;
+            float  distSq;
+            if (lenSq == 0f) {
+               distSq = px*px + py*py;
+            } else {
+               // Distance to the segment, not the infinite line, so that backtracking points are kept
+               float  t = Math.max(0f, Math.min(1f, (px*dx + py*dy) / lenSq));
+               float  ex = px - t*dx, ey = py - t*dy;
+               distSq = ex*ex + ey*ey;
+            }
+            if (distSq > maxDistSq) {
+               maxDistSq = distSq;
+               index = i;
+            }
+         }
+
+         if (maxDistSq > tolSq)
+         {
+            keep[index] = true;
+            if (top + 4 > stack.length) {
+               int[]  newStack = new int[stack.length * 2];
+               System.arraycopy(stack, 0, newStack, 0, top);
+               stack = newStack;
+            }
+            stack[top++] = first;
+            stack[top++] = index;
+            stack[top++] = index;
+            stack[top++] = last;
+         }
+      }
+      return keep;
+   }
+
+}
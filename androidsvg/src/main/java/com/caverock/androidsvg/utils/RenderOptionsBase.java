@@ -22,6 +22,7 @@ import com.caverock.androidsvg.CSS;
 import com.caverock.androidsvg.PreserveAspectRatio;
 import com.caverock.androidsvg.RenderOptions;
 import com.caverock.androidsvg.SVG;
+import com.caverock.androidsvg.SVGExternalFileResolver;
 import com.caverock.androidsvg.utils.SVGBase.Box;
 
 /**
@@ -45,12 +46,19 @@ public class RenderOptionsBase
 {
    String               css = null;
    CSSParser.Ruleset    cssRuleset = null;
+   CSSParser.Ruleset    parsedCss = null;           // 'css' parsed by the renderer, so that it is only parsed once
+   SVGExternalFileResolver  parsedCssResolver = null;  // The file resolver that was used when parsing 'css'
    //String             id = null;
    PreserveAspectRatio  preserveAspectRatio = null;
    String               targetId = null;
    SVGBase.Box              viewBox = null;
    String               viewId = null;
    SVGBase.Box              viewPort = null;
+   boolean              batchDraws = false;
+   RenderStatisticsBase statistics = null;
+   float                lodThreshold = 0f;
+   boolean              lodPlaceholders = false;
+   float                maxPathError = 0f;
 
 
    /**
@@ -82,12 +90,19 @@ public class RenderOptionsBase
          return;
       this.css = other.css;
       this.cssRuleset = other.cssRuleset;
+      this.parsedCss = other.parsedCss;
+      this.parsedCssResolver = other.parsedCssResolver;
       //this.id = other.id;
       this.preserveAspectRatio = other.preserveAspectRatio;
       this.viewBox = other.viewBox;
       this.viewId = other.viewId;
       this.viewPort = other.viewPort;
       this.targetId = other.targetId;
+      this.batchDraws = other.batchDraws;
+      this.statistics = other.statistics;
+      this.lodThreshold = other.lodThreshold;
+      this.lodPlaceholders = other.lodPlaceholders;
+      this.maxPathError = other.maxPathError;
    }
 
    /**
@@ -100,6 +115,7 @@ public class RenderOptionsBase
    {
       this.cssRuleset = css.cssRuleset;
       this.css = null;
+      this.parsedCss = null;
       return this;
    }
 
@@ -107,6 +123,7 @@ public class RenderOptionsBase
    {
       this.css = css;
       this.cssRuleset = null;
+      this.parsedCss = null;
       return this;
    }
 
@@ -253,4 +270,137 @@ public class RenderOptionsBase
    }
 
 
+   /**
+    * Specifies whether consecutive sibling shapes that have the same solid fill, and no stroke,
+    * may be drawn with a single draw call.  Shapes are only batched when they don't overlap,
+    * so the result looks the same.  The default is not to batch.
+    *
+    * @param batchDraws true to allow batching
+    * @return this same <code>RenderOptions</code> instance
+    */
+   public RenderOptionsBase batchDraws(boolean batchDraws)
+   {
+      this.batchDraws = batchDraws;
+      return this;
+   }
+
+
+   /**
+    * Returns true if draw batching has been enabled with {@code batchDraws()}.
+    * @return true if draw batching is enabled
+    */
+   public boolean isBatchingDraws()
+   {
+      return this.batchDraws;
+   }
+
+
+   /**
+    * Specifies an object that will be filled in with counts of the work done by each render.
+    *
+    * @param statistics the object to fill in, or null for none
+    * @return this same <code>RenderOptions</code> instance
+    */
+   public RenderOptionsBase statistics(RenderStatisticsBase statistics)
+   {
+      this.statistics = statistics;
+      return this;
+   }
+
+
+   /**
+    * Returns true if this RenderOptions instance has had a statistics object set with {@code statistics()}.
+    * @return true if this RenderOptions instance has had a statistics object set
+    */
+   public boolean hasStatistics()
+   {
+      return this.statistics != null;
+   }
+
+
+   /**
+    * Specifies a level-of-detail threshold, in device pixels.  Shapes and groups whose bounding box,
+    * once transformed to the canvas, is narrower and shorter than this are not drawn.  This can save
+    * a lot of time when a large, detailed document is drawn at a small scale.
+    * <p>
+    * Elements are only culled once their bounds are known. That is, after they have been rendered once.
+    * Strokes and markers are not included in the bounds.  The default is 0, which turns culling off.
+    *
+    * @param devicePixels the minimum size of an element that gets drawn
+    * @return this same <code>RenderOptions</code> instance
+    */
+   public RenderOptionsBase lodThreshold(float devicePixels)
+   {
+      if (devicePixels < 0f || Float.isNaN(devicePixels))
+         throw new IllegalArgumentException("Invalid LOD threshold");
+      this.lodThreshold = devicePixels;
+      return this;
+   }
+
+
+   /**
+    * Returns the level-of-detail threshold set with {@code lodThreshold()}.
+    * @return the threshold in device pixels, or 0 if culling is off
+    */
+   public float getLodThreshold()
+   {
+      return this.lodThreshold;
+   }
+
+
+   /**
+    * Specifies whether elements culled by the {@link #lodThreshold(float)} setting are replaced by
+    * a small rect in their average colour.  This keeps a zoomed-out view from losing its dense areas.
+    * The default is to just skip them.
+    *
+    * @param placeholders true to draw a placeholder for each culled element
+    * @return this same <code>RenderOptions</code> instance
+    */
+   public RenderOptionsBase lodPlaceholders(boolean placeholders)
+   {
+      this.lodPlaceholders = placeholders;
+      return this;
+   }
+
+
+   /**
+    * Returns true if placeholders have been enabled with {@code lodPlaceholders()}.
+    * @return true if culled elements are drawn as placeholders
+    */
+   public boolean hasLodPlaceholders()
+   {
+      return this.lodPlaceholders;
+   }
+
+
+   /**
+    * Allows long paths to be drawn with fewer vertices when they are drawn at a small scale.
+    * Curves are replaced with line segments, and points that make no visible difference are removed.
+    * The simplified path will be no further than {@code maxError} device pixels from the original.
+    * Simplified versions of each path are cached, so repeated renders at a similar scale are fast.
+    * <p>
+    * Paths with only a few commands are left alone. The default is 0, which turns simplification off.
+    *
+    * @param maxError the maximum distance, in device pixels, that a simplified path may stray from the original
+    * @return this same <code>RenderOptions</code> instance
+    */
+   public RenderOptionsBase simplifyPaths(float maxError)
+   {
+      if (maxError < 0f || Float.isNaN(maxError))
+         throw new IllegalArgumentException("Invalid maximum path error");
+      this.maxPathError = maxError;
+      return this;
+   }
+
+
+   /**
+    * Returns the maximum path error set with {@code simplifyPaths()}.
+    * @return the maximum error in device pixels, or 0 if path simplification is off
+    */
+   public float getMaxPathError()
+   {
+      return this.maxPathError;
+   }
+
+
 }
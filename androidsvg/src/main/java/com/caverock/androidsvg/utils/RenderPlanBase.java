@@ -0,0 +1,230 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import android.util.Log;
+
+import com.caverock.androidsvg.PreserveAspectRatio;
+import com.caverock.androidsvg.SVGExternalFileResolver;
+import com.caverock.androidsvg.SVGTracer;
+import com.caverock.androidsvg.utils.SVGBase.Box;
+import com.caverock.androidsvg.utils.SVGBase.SvgContainer;
+import com.caverock.androidsvg.utils.SVGBase.SvgElementBase;
+import com.caverock.androidsvg.utils.SVGBase.SvgObject;
+import com.caverock.androidsvg.utils.SVGBase.View;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The parts of a render that depend only on the document and the RenderOptions.
+    Resolving them once lets repeated renders skip straight to drawing.
+ */
+public class RenderPlanBase
+{
+   private static final String  TAG = "RenderPlan";
+
+   final SVGBase              document;
+   final Box                  viewPort;              // null means use the whole canvas
+   final Box                  viewBox;
+   final PreserveAspectRatio  preserveAspectRatio;
+   final boolean              renderable;            // false if there is nothing that can be rendered
+   final boolean              batchDraws;
+   final RenderStatisticsBase statistics;            // null if statistics weren't requested
+   final float                lodThreshold;          // 0 if level-of-detail culling is off
+   final boolean              lodPlaceholders;
+   final float                maxPathError;          // 0 if path simplification is off
+
+   // The CSS rulesets that apply to this render: the document's own rules, any attached
+   // stylesheets, and any RenderOptions CSS. In increasing order of precedence.
+   final List<CSSParser.Ruleset>       cssRulesets;
+   final CSSParser.RuleMatchContext    ruleMatchContext;
+
+   // The CSS rules that match each element, in the order they should be applied.
+   // Null if matching is to be done during the render.
+   private final Map<SvgElementBase, List<CSSParser.Rule>>  matchedRules;
+
+   // The average colours of groups that have been drawn as LOD placeholders. Filled in by the renderer.
+   final Map<SvgElementBase, Integer>  lodColours = new IdentityHashMap<>();
+
+
+   protected RenderPlanBase(SVGBase document, RenderOptionsBase renderOptions)
+   {
+      this(document, renderOptions, true);
+   }
+
+
+   RenderPlanBase(SVGBase document, RenderOptionsBase renderOptions, boolean precomputeMatches)
+   {
+      if (renderOptions == null)
+         renderOptions = new RenderOptionsBase();
+
+      this.document = document;
+      this.viewPort = (renderOptions.viewPort != null) ? new Box(renderOptions.viewPort) : null;
+      this.batchDraws = renderOptions.batchDraws;
+      this.statistics = renderOptions.statistics;
+      this.lodThreshold = renderOptions.lodThreshold;
+      this.lodPlaceholders = renderOptions.lodPlaceholders;
+      this.maxPathError = renderOptions.maxPathError;
+
+      SVGBase.Svg  rootObj = document.getRootElement();
+      Box                  viewBox = null;
+      PreserveAspectRatio  preserveAspectRatio = null;
+      boolean              renderable = true;
+
+      if (rootObj == null)
+      {
+         Log.w(TAG, "Nothing to render. Document is empty.");
+         renderable = false;
+      }
+      else if (renderOptions.hasView())
+      {
+         SvgObject  obj = document.getElementById(renderOptions.viewId);
+         if (!(obj instanceof View)) {
+            Log.w(TAG, String.format("View element with id \"%s\" not found.", renderOptions.viewId));
+            renderable = false;
+         } else if (((View) obj).viewBox == null) {
+            Log.w(TAG, String.format("View element with id \"%s\" is missing a viewBox attribute.", renderOptions.viewId));
+            renderable = false;
+         } else {
+            viewBox = ((View) obj).viewBox;
+            preserveAspectRatio = ((View) obj).preserveAspectRatio;
+         }
+      }
+      else
+      {
+         viewBox = renderOptions.hasViewBox() ? renderOptions.viewBox
+                                              : rootObj.viewBox;
+         preserveAspectRatio = renderOptions.hasPreserveAspectRatio() ? renderOptions.preserveAspectRatio
+                                                                      : rootObj.preserveAspectRatio;
+      }
+      this.viewBox = viewBox;
+      this.preserveAspectRatio = preserveAspectRatio;
+      this.renderable = renderable;
+
+      // Rulesets are referenced rather than copied into the document, so that they can be shared between documents and renders
+      List<CSSParser.Ruleset>  rulesets = new ArrayList<>();
+      if (!document.getCSSRuleset().isEmpty())
+         rulesets.add(document.getCSSRuleset());
+      for (CSSParser.Ruleset stylesheet: document.getStylesheets()) {
+         if (!stylesheet.isEmpty())
+            rulesets.add(stylesheet);
+      }
+      if (renderOptions.hasCss()) {
+         CSSParser.Ruleset  renderRuleset = getRenderOptionsRuleset(renderOptions, document.getExternalFileResolver());
+         if (!renderRuleset.isEmpty())
+            rulesets.add(renderRuleset);
+      }
+      this.cssRulesets = rulesets;
+
+      if (renderOptions.hasTarget()) {
+         this.ruleMatchContext = new CSSParser.RuleMatchContext();
+         this.ruleMatchContext.targetElement = document.getElementById(renderOptions.targetId);
+      } else {
+         this.ruleMatchContext = null;
+      }
+
+      if (precomputeMatches && renderable && !rulesets.isEmpty()) {
+         this.matchedRules = new IdentityHashMap<>();
+         SVGTracer  tracer = SVGBase.getEnabledTracer();
+         if (tracer != null)
+            tracer.beginSection("SVG CSS matching");
+         try {
+            matchTree(rootObj, new ArrayList<CSSParser.Rule>());
+         } finally {
+            if (tracer != null)
+               tracer.endSection();
+         }
+      } else {
+         this.matchedRules = null;
+      }
+   }
+
+
+   /*
+    * Get the CSS from the RenderOptions. If it was supplied as a string, it is only parsed
+    * the first time the RenderOptions are used. The result is kept in the RenderOptions.
+    */
+   private static CSSParser.Ruleset  getRenderOptionsRuleset(RenderOptionsBase renderOptions, SVGExternalFileResolver externalFileResolver)
+   {
+      if (renderOptions.cssRuleset != null)
+         return renderOptions.cssRuleset;
+
+      // The CSS may @import other files, so the result depends on the file resolver
+      if (renderOptions.parsedCss == null || renderOptions.parsedCssResolver != externalFileResolver)
+      {
+         CSSParser parser = new CSSParser(CSSParser.Source.RenderOptions, externalFileResolver);
+         renderOptions.parsedCss = parser.parse(renderOptions.css);
+         renderOptions.parsedCssResolver = externalFileResolver;
+      }
+      return renderOptions.parsedCss;
+   }
+
+
+   /*
+    * Match every element in the document against the rulesets. Selectors are matched
+    * against the document tree, so the result is the same wherever the element gets rendered.
+    */
+   private void  matchTree(SvgObject obj, List<CSSParser.Rule> scratch)
+   {
+      if (obj instanceof SvgElementBase)
+      {
+         scratch.clear();
+         findMatchingRules((SvgElementBase) obj, scratch);
+         if (!scratch.isEmpty())
+            matchedRules.put((SvgElementBase) obj, Collections.unmodifiableList(new ArrayList<>(scratch)));
+      }
+      if (obj instanceof SvgContainer)
+      {
+         for (SvgObject child: ((SvgContainer) obj).getChildren())
+            matchTree(child, scratch);
+      }
+   }
+
+
+   private void  findMatchingRules(SvgElementBase obj, List<CSSParser.Rule> matched)
+   {
+      for (CSSParser.Ruleset ruleset: cssRulesets) {
+         ruleset.findMatchingRules(ruleMatchContext, obj, matched);
+      }
+      // Each ruleset is already in specificity order. A stable sort keeps the
+      // rulesets in precedence order for rules with the same specificity.
+      if (cssRulesets.size() > 1)
+         Collections.sort(matched, CSSParser.SPECIFICITY_ORDER);
+   }
+
+
+   /*
+    * Returns the CSS rules that match the element, in the order they should be applied.
+    * If the matches weren't worked out in advance, they are put into 'scratch'.
+    */
+   List<CSSParser.Rule>  getMatchingRules(SvgElementBase obj, List<CSSParser.Rule> scratch)
+   {
+      if (matchedRules != null) {
+         List<CSSParser.Rule>  rules = matchedRules.get(obj);
+         return (rules != null) ? rules : Collections.<CSSParser.Rule>emptyList();
+      }
+      scratch.clear();
+      if (!cssRulesets.isEmpty())
+         findMatchingRules(obj, scratch);
+      return scratch;
+   }
+
+}
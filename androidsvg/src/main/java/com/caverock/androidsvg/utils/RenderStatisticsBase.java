@@ -0,0 +1,327 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+/*
+    Counters filled in by the renderer. The renderer only touches them when
+    a statistics object has been supplied in the RenderOptions.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class RenderStatisticsBase
+{
+   int   batchedShapes = 0;      // Shapes that were eligible for draw batching
+   int   batchDraws = 0;         // Draw calls made for those shapes
+   int   culledElements = 0;     // Elements skipped because they were below the LOD threshold
+   long  imageBytesSaved = 0;    // Bitmap memory saved by decoding images at a reduced size, or in part
+
+   int   elementsVisited = 0;    // Elements passed to the render dispatcher
+   int   elementsDrawn = 0;      // Shapes, text and images that got as far as drawing
+   int   statePushes = 0;        // Renderer state saves, including those for layers
+   int   saveLayers = 0;         // Offscreen layers
+   long  layerPixelArea = 0;     // Total device pixels in those layers
+   int   pathsBuilt = 0;         // Android Paths built from element geometry
+   int   clipOperations = 0;     // clipRect() and clipPath() calls
+   int   gradientSetups = 0;
+   int   patternSetups = 0;
+   int   maskSetups = 0;
+   int   textSpansMeasured = 0;
+   int   resolverCalls = 0;      // Calls made to the SVGExternalFileResolver
+
+   // Phase timings, in nanoseconds
+   long  setupTime = 0;          // Creating the render plan, if needed, and initialising the renderer
+   long  cascadeTime = 0;        // Working out the style of each element
+   long  geometryTime = 0;       // Building Paths
+   long  totalTime = 0;
+
+
+   protected RenderStatisticsBase()
+   {
+   }
+
+
+   /*
+    * Called at the start of each render.
+    */
+   void  reset()
+   {
+      batchedShapes = 0;
+      batchDraws = 0;
+      culledElements = 0;
+      imageBytesSaved = 0;
+      elementsVisited = 0;
+      elementsDrawn = 0;
+      statePushes = 0;
+      saveLayers = 0;
+      layerPixelArea = 0;
+      pathsBuilt = 0;
+      clipOperations = 0;
+      gradientSetups = 0;
+      patternSetups = 0;
+      maskSetups = 0;
+      textSpansMeasured = 0;
+      resolverCalls = 0;
+      setupTime = 0;
+      cascadeTime = 0;
+      geometryTime = 0;
+      totalTime = 0;
+   }
+
+
+   /**
+    * Returns the number of shapes that were eligible for draw batching in the last render.
+    * @return the number of shapes
+    */
+   public int  getBatchedShapes()
+   {
+      return batchedShapes;
+   }
+
+
+   /**
+    * Returns the number of draw calls that were made for the shapes counted by {@link #getBatchedShapes()}.
+    * @return the number of draw calls
+    */
+   public int  getBatchDraws()
+   {
+      return batchDraws;
+   }
+
+
+   /**
+    * Returns the average number of shapes drawn by each batched draw call in the last render.
+    * @return the batch ratio, or 1 if no shapes were eligible for batching
+    */
+   public float  getBatchRatio()
+   {
+      return (batchDraws == 0) ? 1f : (float) batchedShapes / batchDraws;
+   }
+
+
+   /**
+    * Returns the number of shapes and groups that were culled by the level-of-detail threshold in the last render.
+    * The descendants of a culled group are not counted.
+    * @return the number of culled elements
+    */
+   public int  getCulledElements()
+   {
+      return culledElements;
+   }
+
+
+   /**
+    * Returns the number of bytes of Bitmap memory that were saved in the last render, by decoding
+    * embedded images at a reduced size, or by only decoding the visible part of them.  The saving is
+    * relative to decoding each image whole, at full size, as an ARGB_8888 Bitmap.  Images supplied by
+    * the {@link com.caverock.androidsvg.SVGExternalFileResolver} are not counted.
+    * @return the number of bytes saved
+    */
+   public long  getImageBytesSaved()
+   {
+      return imageBytesSaved;
+   }
+
+
+   /**
+    * Returns the number of elements that the renderer visited in the last render.  Elements
+    * rendered more than once, for example by &lt;use&gt;, are counted each time.
+    * @return the number of elements visited
+    */
+   public int  getElementsVisited()
+   {
+      return elementsVisited;
+   }
+
+
+   /**
+    * Returns the number of shapes, text elements and images that were drawn in the last render.
+    * Elements that were hidden, or culled by the level-of-detail threshold, are not counted.
+    * @return the number of elements drawn
+    */
+   public int  getElementsDrawn()
+   {
+      return elementsDrawn;
+   }
+
+
+   /**
+    * Returns the number of times the renderer saved its state (and the Canvas state) in the last render.
+    * @return the number of state pushes
+    */
+   public int  getStatePushes()
+   {
+      return statePushes;
+   }
+
+
+   /**
+    * Returns the number of offscreen layers (Canvas {@code saveLayer()} calls) used by the last render.
+    * Layers are needed for group opacity, masks, blend modes and isolation.  They are expensive.
+    * @return the number of layers
+    */
+   public int  getSaveLayerCount()
+   {
+      return saveLayers;
+   }
+
+
+   /**
+    * Returns the total size, in device pixels, of the layers counted by {@link #getSaveLayerCount()}.
+    * @return the layer area
+    */
+   public long  getLayerPixelArea()
+   {
+      return layerPixelArea;
+   }
+
+
+   /**
+    * Returns the number of Android Paths that were built from element geometry in the last render.
+    * @return the number of Paths built
+    */
+   public int  getPathsBuilt()
+   {
+      return pathsBuilt;
+   }
+
+
+   /**
+    * Returns the number of clip operations made in the last render.
+    * @return the number of clipRect() and clipPath() calls
+    */
+   public int  getClipOperations()
+   {
+      return clipOperations;
+   }
+
+
+   /**
+    * Returns the number of linear and radial gradient shaders set up in the last render.
+    * @return the number of gradient setups
+    */
+   public int  getGradientSetups()
+   {
+      return gradientSetups;
+   }
+
+
+   /**
+    * Returns the number of pattern fills drawn in the last render.
+    * @return the number of pattern setups
+    */
+   public int  getPatternSetups()
+   {
+      return patternSetups;
+   }
+
+
+   /**
+    * Returns the number of masks applied in the last render.
+    * @return the number of mask setups
+    */
+   public int  getMaskSetups()
+   {
+      return maskSetups;
+   }
+
+
+   /**
+    * Returns the number of text spans that had to be measured in the last render.
+    * Measurements served from the text layout cache are included.
+    * @return the number of text spans measured
+    */
+   public int  getTextSpansMeasured()
+   {
+      return textSpansMeasured;
+   }
+
+
+   /**
+    * Returns the number of calls made to the {@link com.caverock.androidsvg.SVGExternalFileResolver}
+    * in the last render.
+    * @return the number of resolver calls
+    */
+   public int  getResolverCalls()
+   {
+      return resolverCalls;
+   }
+
+
+   /**
+    * Returns the time taken to set up the last render, in nanoseconds.  This includes resolving
+    * the render plan, unless a prepared {@link com.caverock.androidsvg.RenderPlan} was used.
+    * @return the setup time
+    */
+   public long  getSetupTimeNanos()
+   {
+      return setupTime;
+   }
+
+
+   /**
+    * Returns the time spent working out the styles of elements in the last render, in nanoseconds.
+    * @return the cascade time
+    */
+   public long  getCascadeTimeNanos()
+   {
+      return cascadeTime;
+   }
+
+
+   /**
+    * Returns the time spent building Paths in the last render, in nanoseconds.
+    * @return the geometry time
+    */
+   public long  getGeometryTimeNanos()
+   {
+      return geometryTime;
+   }
+
+
+   /**
+    * Returns the rest of the time taken by the last render, in nanoseconds.  That is the
+    * total time minus the setup, cascade and geometry times.  It is mostly drawing.
+    * @return the draw time
+    */
+   public long  getDrawTimeNanos()
+   {
+      return Math.max(0, totalTime - setupTime - cascadeTime - geometryTime);
+   }
+
+
+   /**
+    * Returns the total time taken by the last render, in nanoseconds.
+    * @return the total time
+    */
+   public long  getTotalTimeNanos()
+   {
+      return totalTime;
+   }
+
+
+   @Override
+   public String  toString()
+   {
+      return "elementsVisited=" + elementsVisited + " elementsDrawn=" + elementsDrawn + " culledElements=" + culledElements +
+             " statePushes=" + statePushes + " saveLayers=" + saveLayers + " layerPixelArea=" + layerPixelArea +
+             " pathsBuilt=" + pathsBuilt + " clipOperations=" + clipOperations + " gradientSetups=" + gradientSetups +
+             " patternSetups=" + patternSetups + " maskSetups=" + maskSetups + " textSpansMeasured=" + textSpansMeasured +
+             " resolverCalls=" + resolverCalls + " batchedShapes=" + batchedShapes + " batchDraws=" + batchDraws +
+             " imageBytesSaved=" + imageBytesSaved + " setupTime=" + setupTime + " cascadeTime=" + cascadeTime +
+             " geometryTime=" + geometryTime + " drawTime=" + getDrawTimeNanos() + " totalTime=" + totalTime;
+   }
+
+}
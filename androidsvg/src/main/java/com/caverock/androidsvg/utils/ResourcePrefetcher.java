@@ -0,0 +1,294 @@
+/*
+   Copyright 2014 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+import android.util.Log;
+
+import com.caverock.androidsvg.SVGExternalFileResolver;
+import com.caverock.androidsvg.utils.SVGBase.Image;
+import com.caverock.androidsvg.utils.SVGBase.SvgContainer;
+import com.caverock.androidsvg.utils.SVGBase.SvgElementBase;
+import com.caverock.androidsvg.utils.SVGBase.SvgObject;
+import com.caverock.androidsvg.utils.SVGBase.TextContainer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the external images and fonts that a document uses, in parallel, before it is rendered.
+ * The results are kept in the document, where the renderer will find them.
+ *
+ * The fonts are worked out with a simplified version of the renderer's style cascade. It
+ * only looks at the font properties, and ignores where elements get reused by &lt;use&gt;.
+ * Anything it misses will just be loaded by the renderer, as usual.
+ */
+
+class ResourcePrefetcher
+{
+   private static final String  TAG = "ResourcePrefetcher";
+
+   private static final Runnable  NO_OP = new Runnable() {
+      @Override
+      public void run() {}
+   };
+
+   private final SVGBase                  document;
+   private final SVGExternalFileResolver  resolver;
+
+   // Completes when the last task finishes
+   private final FutureTask<Void>  done = new FutureTask<>(NO_OP, null);
+   private final AtomicInteger     pending = new AtomicInteger();
+
+
+   ResourcePrefetcher(SVGBase document)
+   {
+      this.document = document;
+      this.resolver = document.getExternalFileResolver();
+   }
+
+
+   Future<Void>  start(Executor executor)
+   {
+      List<Runnable>  tasks = new ArrayList<>();
+      if (resolver != null && document.getRootElement() != null)
+      {
+         Set<String>       images = new LinkedHashSet<>();
+         Set<FontRequest>  fonts = new LinkedHashSet<>();
+         RenderPlanBase    plan = new RenderPlanBase(document, null, false);
+         collect(document.getRootElement(), new FontRequest(), plan, new ArrayList<CSSParser.Rule>(), images, fonts);
+
+         for (String href: images)
+            tasks.add(new ImageTask(href));
+         for (FontRequest font: fonts)
+            tasks.add(new FontTask(font));
+      }
+
+      // The extra count stops the future completing before all the tasks have been handed over
+      pending.set(tasks.size() + 1);
+      for (Runnable task: tasks)
+         executor.execute(task);
+      taskDone();
+      return done;
+   }
+
+
+   private void  taskDone()
+   {
+      if (pending.decrementAndGet() == 0)
+         done.run();
+   }
+
+
+   /*
+    * Walk the tree, looking for images and the fonts used by text elements.
+    */
+   private void  collect(SvgObject obj, FontRequest inherited, RenderPlanBase plan, List<CSSParser.Rule> scratch,
+                         Set<String> images, Set<FontRequest> fonts)
+   {
+      FontRequest  font = inherited;
+      if (obj instanceof SvgElementBase)
+      {
+         SvgElementBase  elem = (SvgElementBase) obj;
+         font = new FontRequest(inherited);
+         // Same order as SVGAndroidRenderer.updateStyleForElement()
+         font.apply(elem.baseStyle);
+         for (CSSParser.Rule rule: plan.getMatchingRules(elem, scratch))
+            font.apply(rule.style);
+         font.apply(elem.style);
+      }
+
+      if (obj instanceof Image) {
+         String  href = ((Image) obj).href;
+         if (href != null && !href.startsWith("data:"))
+            images.add(href);
+      }
+      else if (obj instanceof TextContainer && font.fontFamily != null) {
+         fonts.add(font);
+      }
+
+      if (obj instanceof SvgContainer) {
+         for (SvgObject child: ((SvgContainer) obj).getChildren())
+            collect(child, font, plan, scratch, images, fonts);
+      }
+   }
+
+
+   //==============================================================================
+
+
+   /*
+    * The font properties that get passed to the resolver.
+    */
+   static class FontRequest
+   {
+      List<String>     fontFamily = null;
+      float            fontWeight = Style.FONT_WEIGHT_NORMAL;
+      Style.FontStyle  fontStyle = Style.FontStyle.normal;
+      float            fontWidth = Style.FONT_WIDTH_NORMAL;
+
+      FontRequest()
+      {
+      }
+
+      FontRequest(FontRequest other)
+      {
+         this.fontFamily = other.fontFamily;
+         this.fontWeight = other.fontWeight;
+         this.fontStyle = other.fontStyle;
+         this.fontWidth = other.fontWidth;
+      }
+
+      void  apply(Style style)
+      {
+         if (style == null)
+            return;
+         if ((style.specifiedFlags & Style.SPECIFIED_FONT_FAMILY) != 0)
+            fontFamily = style.fontFamily;
+         if ((style.specifiedFlags & Style.SPECIFIED_FONT_WEIGHT) != 0)
+            fontWeight = SVGAndroidRenderer.resolveFontWeight(fontWeight, style.fontWeight);
+         if ((style.specifiedFlags & Style.SPECIFIED_FONT_STYLE) != 0)
+            fontStyle = style.fontStyle;
+         if ((style.specifiedFlags & Style.SPECIFIED_FONT_WIDTH) != 0)
+            fontWidth = style.fontWidth;
+      }
+
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof FontRequest))
+            return false;
+         FontRequest  other = (FontRequest) o;
+         return fontFamily.equals(other.fontFamily) &&
+                fontWeight == other.fontWeight &&
+                fontStyle == other.fontStyle &&
+                fontWidth == other.fontWidth;
+      }
+
+      @Override
+      public int  hashCode()
+      {
+         int  h = fontFamily.hashCode();
+         h = 31 * h + Float.floatToIntBits(fontWeight);
+         h = 31 * h + fontStyle.hashCode();
+         return 31 * h + Float.floatToIntBits(fontWidth);
+      }
+   }
+
+
+   /*
+    * The key used for the document's prefetched fonts map.
+    */
+   static String  fontKey(String fontName, float fontWeight, String fontStyle, float fontWidth)
+   {
+      return fontName + '\u0000' + fontWeight + '\u0000' + fontStyle + '\u0000' + fontWidth;
+   }
+
+
+   //==============================================================================
+
+
+   private abstract class  Task implements Runnable
+   {
+      @Override
+      public void  run()
+      {
+         try {
+            if (!done.isCancelled())
+               load();
+         } catch (RuntimeException e) {
+            // Leave it for the renderer to try again
+            Log.w(TAG, "Prefetch failed", e);
+         } finally {
+            taskDone();
+         }
+      }
+
+      abstract void  load();
+   }
+
+
+   /*
+    * Load an image at full size. The renderer will use it if there isn't one that suits the render size.
+    */
+   private class  ImageTask extends Task
+   {
+      private final String  href;
+
+      ImageTask(String href)
+      {
+         this.href = href;
+      }
+
+      @Override
+      void  load()
+      {
+         ImageCache      cache = document.getImageCache();
+         ImageCache.Key  key = new ImageCache.Key(href, resolver, 0, 0, null);
+         if (cache.get(key) != null)
+            return;
+         Bitmap  bitmap = resolver.resolveImage(href);
+         if (bitmap != null)
+            cache.put(key, bitmap);
+      }
+   }
+
+
+   /*
+    * Try the font families in order, as the renderer does, until one is found.
+    */
+   private class  FontTask extends Task
+   {
+      private final FontRequest  font;
+
+      FontTask(FontRequest font)
+      {
+         this.font = font;
+      }
+
+      @Override
+      void  load()
+      {
+         String  fontStyle = String.valueOf(font.fontStyle);
+         for (String fontName: font.fontFamily)
+         {
+            if (SVGAndroidRenderer.isGenericFont(fontName))
+               return;    // The renderer won't go past this one
+            String  key = fontKey(fontName, font.fontWeight, fontStyle, font.fontWidth);
+            synchronized (document.prefetchedFonts) {
+               if (document.prefetchedFonts.containsKey(key)) {
+                  if (document.prefetchedFonts.get(key) != null)
+                     return;
+                  continue;
+               }
+            }
+            Typeface  typeface = resolver.resolveFont(fontName, font.fontWeight, fontStyle, font.fontWidth);
+            document.prefetchedFonts.put(key, typeface);
+            if (typeface != null)
+               return;
+         }
+      }
+   }
+
+}
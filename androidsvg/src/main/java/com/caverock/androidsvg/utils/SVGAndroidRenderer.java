@@ -20,6 +20,7 @@ package com.caverock.androidsvg.utils;
 import android.annotation.TargetApi;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.BlendMode;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -31,6 +32,7 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PathMeasure;
+import android.graphics.Picture;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RadialGradient;
@@ -39,12 +41,12 @@ import android.graphics.Shader;
 import android.graphics.Shader.TileMode;
 import android.graphics.Typeface;
 import android.os.Build;
-import android.util.Base64;
 import android.util.Log;
 
 import com.caverock.androidsvg.BuildConfig;
 import com.caverock.androidsvg.PreserveAspectRatio;
 import com.caverock.androidsvg.SVGExternalFileResolver;
+import com.caverock.androidsvg.SVGTracer;
 import com.caverock.androidsvg.utils.SVGBase.Box;
 import com.caverock.androidsvg.utils.SVGBase.Circle;
 import com.caverock.androidsvg.utils.SVGBase.ClipPath;
@@ -98,7 +100,10 @@ import com.caverock.androidsvg.utils.Style.TextAnchor;
 import com.caverock.androidsvg.utils.Style.TextDecoration;
 import com.caverock.androidsvg.utils.Style.VectorEffect;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -125,6 +130,7 @@ public class SVGAndroidRenderer
    private static final boolean  SUPPORTS_PAINT_WORD_SPACING = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
    private static final boolean  SUPPORTS_SAVE_LAYER_FLAGLESS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
    private static final boolean  SUPPORTS_RADIAL_GRADIENT_WITH_FOCUS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S;
+   private static final boolean  SUPPORTS_HARDWARE_DRAW_PICTURE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
 
    private static final java.util.regex.Pattern PATTERN_TABS_OR_LINE_BREAKS = java.util.regex.Pattern.compile("[\\n\\t]");
    private static final java.util.regex.Pattern PATTERN_TABS = java.util.regex.Pattern.compile("\\t");
@@ -133,7 +139,7 @@ public class SVGAndroidRenderer
    private static final java.util.regex.Pattern PATTERN_END_SPACES = java.util.regex.Pattern.compile("\\s+$");
    private static final java.util.regex.Pattern PATTERN_DOUBLE_SPACES = java.util.regex.Pattern.compile("\\s{2,}");
 
-   private final Canvas   canvas;
+   private Canvas         canvas; // Not final, because it is temporarily replaced when rendering mask content
    private final float    dpi;    // dots per inch. Needed for accurate conversion of length values that have real world units, such as "cm".
 
    // Renderer state
@@ -157,10 +163,41 @@ public class SVGAndroidRenderer
 
    private static HashSet<String>  supportedFeatures = null;
 
-   private CSSParser.RuleMatchContext  ruleMatchContext = null;
+   // The viewBox, CSS rulesets etc. resolved for this render
+   private RenderPlanBase  renderPlan;
+
+   // Set when we are compiling a display list rather than drawing
+   private DisplayListBase.Recorder  recorder = null;
+
+   // Set when the canvas is recording a Picture, which may later be drawn at any scale
+   private boolean  recordingPicture = false;
+
+   private RenderStatisticsBase  statistics = null;   // Only set if the caller asked for statistics
+
+   private SVGTracer  tracer = null;   // Only set if tracing is enabled
+   private int        traceDepth = 0;  // Number of trace sections that have been begun but not ended
+
+   private TextContainer  currentTextContainer = null;   // The container of the text currently being processed
+
+   // Shapes waiting to be drawn together. Belongs to the innermost renderChildren() call. Null if batching is off.
+   private DrawBatch  drawBatch = null;
+
+   private final List<CSSParser.Rule>  matchedRules = new ArrayList<>();   // Reused by updateStyleForElement()
 
    private SVGExternalFileResolver externalFileResolver;
 
+   // Alpha bitmaps generated from <mask> elements. Shared by all elements that use the same mask.
+   private HashMap<MaskCacheKey, MaskLayer>  maskCache = null;
+   private Paint  maskLuminancePaint = null;
+   private Paint  maskDstInPaint = null;
+   private Paint  maskClearPaint = null;
+
+   // Recorded marker content. Shared by all the vertices that use the same marker.
+   private HashMap<MarkerCacheKey, MarkerPicture>  markerCache = null;
+
+   // Recorded <symbol> content. Shared by all the <use> elements that render it in the same context.
+   private HashMap<SymbolCacheKey, SymbolInstance>  symbolCache = null;
+
 
    public static class RendererState
    {
@@ -170,6 +207,7 @@ public class SVGAndroidRenderer
       Box      viewPort;
       Box      viewBox;
       boolean  spacePreserve;
+      float    foldedOpacity;  // Opacity of ancestor groups that has been deferred to their only child (see canFoldGroupOpacity())
 
       final Paint    fillPaint;
       final Paint    strokePaint;
@@ -201,6 +239,8 @@ public class SVGAndroidRenderer
          fontVariationSet = new CSSFontVariationSettings();
 
          style = Style.getDefaultStyle();
+
+         foldedOpacity = 1f;
       }
 
       RendererState(RendererState copy)
@@ -214,6 +254,7 @@ public class SVGAndroidRenderer
          if (copy.viewBox != null)
             viewBox = new Box(copy.viewBox);
          spacePreserve = copy.spacePreserve;
+         foldedOpacity = copy.foldedOpacity;
          fontFeatureSet = new CSSFontFeatureSettings(copy.fontFeatureSet);
          fontVariationSet = new CSSFontVariationSettings(copy.fontVariationSet);
          try
@@ -268,6 +309,25 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Tell the renderer that its canvas is recording a display list.
+    */
+   void  setRecorder(DisplayListBase.Recorder recorder)
+   {
+      this.recorder = recorder;
+   }
+
+
+   /*
+    * Tell the renderer that its canvas is recording a Picture. Masks are then drawn with layers,
+    * rather than as device space bitmaps, so that they stay sharp when the Picture is scaled.
+    */
+   void  setRecordingPicture()
+   {
+      this.recordingPicture = true;
+   }
+
+
    float  getDPI()
    {
       return dpi;
@@ -309,78 +369,101 @@ public class SVGAndroidRenderer
       if (renderOptions == null)
          throw new NullPointerException("renderOptions shouldn't be null");  // Sanity check. Should never happen
 
-      this.document = document;
+      // A one-off plan. CSS matching is left until each element is rendered.
+      long  startTime = System.nanoTime();
+      renderDocument(new RenderPlanBase(document, renderOptions, false), renderOptions.viewPort, startTime);
+   }
 
-      Svg  rootObj = document.getRootElement();
 
-      if (rootObj == null) {
-         warn("Nothing to render. Document is empty.");
-         return;
-      }
+   /*
+    * Render the whole document using a plan that has already been resolved.
+    */
+   void  renderDocument(RenderPlanBase renderPlan, Box viewPort)
+   {
+      renderDocument(renderPlan, viewPort, System.nanoTime());
+   }
 
-      Box          viewBox;
-      PreserveAspectRatio  preserveAspectRatio;
 
-      if (renderOptions.hasView())
+   /*
+    * startTime is when the render started, including creating the plan if that was done for this render.
+    */
+   private void  renderDocument(RenderPlanBase renderPlan, Box viewPort, long startTime)
+   {
+      this.tracer = SVGBase.getEnabledTracer();
+      traceBegin("SVG render", null);
+      try
       {
-         SvgObject  obj = this.document.getElementById(renderOptions.viewId);
-         if (!(obj instanceof View)) {
-            Log.w(TAG, String.format("View element with id \"%s\" not found.", renderOptions.viewId));
-            return;
-         }
-         View  view = (View) obj;
+         this.document = renderPlan.document;
+         this.renderPlan = renderPlan;
+         this.statistics = renderPlan.statistics;
+         if (statistics != null)
+            statistics.reset();
 
-         if (view.viewBox == null) {
-            Log.w(TAG, String.format("View element with id \"%s\" is missing a viewBox attribute.", renderOptions.viewId));
+         if (!renderPlan.renderable)
             return;
-         }
-         viewBox = view.viewBox;
-         preserveAspectRatio = view.preserveAspectRatio;
-      }
-      else
-      {
-         viewBox = renderOptions.hasViewBox() ? renderOptions.viewBox
-                                              : rootObj.viewBox;
-         preserveAspectRatio = renderOptions.hasPreserveAspectRatio() ? renderOptions.preserveAspectRatio
-                                                                      : rootObj.preserveAspectRatio;
-      }
 
-      if (renderOptions.hasCss()) {
-         if (renderOptions.css != null) {
-            CSSParser parser = new CSSParser(CSSParser.Source.RenderOptions, externalFileResolver);
-            document.addCSSRules(parser.parse(renderOptions.css));
-         } else if (renderOptions.cssRuleset != null) {
-            document.addCSSRules(renderOptions.cssRuleset);
-         }
+         Svg  rootObj = document.getRootElement();
+
+         // Initialise the state
+         resetState();
+
+         checkXMLSpaceAttribute(rootObj);
+
+         // Save state
+         statePush(true);
+
+         viewPort = new Box(viewPort);
+         // If root element specifies a width, then we need to adjust our default viewPort that was based on the canvas size
+         if (rootObj.width != null)
+            viewPort.width = rootObj.width.floatValue(this, viewPort.width);
+         if (rootObj.height != null)
+            viewPort.height = rootObj.height.floatValue(this, viewPort.height);
+
+         if (statistics != null)
+            statistics.setupTime = System.nanoTime() - startTime;
+
+         // Render the document
+         render(rootObj, viewPort, renderPlan.viewBox, renderPlan.preserveAspectRatio);
+
+         // Restore state
+         statePop();
+
+         if (statistics != null)
+            statistics.totalTime = System.nanoTime() - startTime;
       }
-      if (renderOptions.hasTarget()) {
-         this.ruleMatchContext = new CSSParser.RuleMatchContext();
-         this.ruleMatchContext.targetElement = document.getElementById(renderOptions.targetId);
+      finally
+      {
+         // End the render section, and any others left open by an exception
+         while (traceDepth > 0)
+            traceEnd();
       }
+   }
 
-      // Initialise the state
-      resetState();
-
-      checkXMLSpaceAttribute(rootObj);
 
-      // Save state
-      statePush(true);
+   //==============================================================================
+   // Tracing
 
-      Box  viewPort = new Box(renderOptions.viewPort);
-      // If root element specifies a width, then we need to adjust our default viewPort that was based on the canvas size
-      if (rootObj.width != null)
-         viewPort.width = rootObj.width.floatValue(this, viewPort.width);
-      if (rootObj.height != null)
-         viewPort.height = rootObj.height.floatValue(this, viewPort.height);
 
-      // Render the document
-      render(rootObj, viewPort, viewBox, preserveAspectRatio);
+   /*
+    * Begin a trace section. If the tracer wants them, the id of obj is added to the name.
+    */
+   private void  traceBegin(String name, SvgObject obj)
+   {
+      if (tracer == null)
+         return;
+      if (tracer.includesElementIds() && obj instanceof SvgElementBase && ((SvgElementBase) obj).id != null)
+         name = name + " #" + ((SvgElementBase) obj).id;
+      tracer.beginSection(name);
+      traceDepth++;
+   }
 
-      // Restore state
-      statePop();
 
-      if (renderOptions.hasCss())
-         document.clearRenderCSSRules();
+   private void  traceEnd()
+   {
+      if (tracer == null)
+         return;
+      tracer.endSection();
+      traceDepth--;
    }
 
 
@@ -393,12 +476,20 @@ public class SVGAndroidRenderer
       if (obj instanceof NotDirectlyRendered)
          return;
 
+      if (statistics != null)
+         statistics.elementsVisited++;
+
       // Save state
       statePush();
 
+      if (recorder != null)
+         recorder.pushElement(obj);
+
       checkXMLSpaceAttribute(obj);
 
-      if (obj instanceof Svg) {
+      if (renderPlan.lodThreshold > 0f && isBelowLodThreshold(obj)) {
+         renderCulled((SvgElement) obj);
+      } else if (obj instanceof Svg) {
          render((Svg) obj);
       } else if (obj instanceof Use) {
          render((Use) obj);
@@ -423,9 +514,14 @@ public class SVGAndroidRenderer
       } else if (obj instanceof PolyLine) {
          render((PolyLine) obj);
       } else if (obj instanceof Text) {
+         traceBegin("SVG text", obj);
          render((Text) obj);
+         traceEnd();
       }
 
+      if (recorder != null)
+         recorder.popElement();
+
       // Restore state
       statePop();
    }
@@ -440,16 +536,362 @@ public class SVGAndroidRenderer
          parentPush(obj);
       }
 
+      // Each container has its own batch, so that batches never span a save/restore
+      DrawBatch  outerBatch = drawBatch;
+      drawBatch = (renderPlan.batchDraws && recorder == null) ? new DrawBatch() : null;
+
       for (SvgObject child: obj.getChildren()) {
+         // Anything other than a simple shape has to be drawn after the batched shapes before it
+         if (drawBatch != null && !isBatchCandidate(child))
+            flushDrawBatch();
          render(child);
       }
 
+      flushDrawBatch();
+      drawBatch = outerBatch;
+
       if (isContainer) {
          parentPop();
       }
    }
 
 
+   /*
+    * Render an element that isn't a child in a renderChildren() loop. For example the element
+    * referenced by a <use>. It mustn't join the caller's batch, because the batch is only drawn
+    * after the caller's state (transform, clip, layers etc) has been popped.
+    */
+   private void  renderUnbatched(SvgObject obj)
+   {
+      flushDrawBatch();
+      DrawBatch  outerBatch = drawBatch;
+      drawBatch = null;
+      render(obj);
+      drawBatch = outerBatch;
+   }
+
+
+   //==============================================================================
+   // Draw batching
+
+
+   /*
+    * A run of sibling shapes that can be drawn with a single drawPath().
+    */
+   private static class DrawBatch
+   {
+      PrimitiveShape shape = null;    // The first shape, if it is a simple shape. Its Path is only built if a second shape is added.
+      Path           path = null;     // The first shape's own Path, until a second shape is added
+      boolean        pathIsShared = false;
+      Paint          paint = null;
+      Path.FillType  fillType = null;
+      List<Box>      bounds = new ArrayList<>();
+      Box            unionBounds = null;
+      float          margin = 0f;     // About one device pixel, in user units
+   }
+
+
+   private static final int  MAX_BATCH_SIZE = 64;   // Limits the cost of the overlap checks
+
+
+   private static boolean  isBatchCandidate(SvgObject obj)
+   {
+      return (obj instanceof SVGBase.Path) || (obj instanceof Rect) || (obj instanceof Circle) ||
+             (obj instanceof Ellipse) || (obj instanceof Polygon);
+   }
+
+
+   /*
+    * Try to add a shape to the current batch, instead of drawing it now. Called after the shape's style
+    * has been resolved and its bounding box calculated. Returns false if the shape has to be drawn normally.
+    * Either 'path' or 'shape' is supplied.
+    *
+    * A shape can only be batched if drawing it is just a single solid fill, with no transform,
+    * clip, layer or markers. Shapes in a batch must not overlap. Otherwise filling them all at
+    * once could be different to filling them one after another (eg. because of the fill rule).
+    */
+   private boolean  addToDrawBatch(GraphicsElement obj, Path path, PrimitiveShape shape)
+   {
+      if (drawBatch == null)
+         return false;
+
+      if (!canBatch(obj)) {
+         flushDrawBatch();
+         return false;
+      }
+
+      // Opacity is folded into the fill paint, just like a normal single-fill shape
+      if (state.style.opacity * state.foldedOpacity < 1f)
+         foldOpacityIntoPaints(true, false);
+
+      Path.FillType  fillType = getFillTypeFromState();
+      Box            box = obj.boundingBox;
+
+      if (!drawBatch.bounds.isEmpty() && !fitsInDrawBatch(box, fillType))
+         flushDrawBatch();
+
+      if (statistics != null)
+         statistics.batchedShapes++;
+
+      if (drawBatch.bounds.isEmpty())
+      {
+         // A batch of one is drawn just as it would have been without batching
+         if (shape == null)
+            path.setFillType(fillType);
+         drawBatch.shape = shape;
+         drawBatch.path = path;
+         drawBatch.pathIsShared = true;
+         drawBatch.paint = new Paint(state.fillPaint);
+         drawBatch.fillType = fillType;
+         drawBatch.unionBounds = new Box(box);
+         // Batched shapes aren't transformed, so the scale is the same for the whole batch
+         float  scale = getDeviceScale();
+         drawBatch.margin = (scale > 0f) ? 1f / scale : Float.MAX_VALUE;
+      }
+      else
+      {
+         if (drawBatch.shape != null) {
+            drawBatch.path = getShapePath(drawBatch.shape);
+            drawBatch.shape = null;
+         }
+         if (shape != null)
+            path = getShapePath(shape);
+         if (drawBatch.pathIsShared) {
+            // Don't modify the first shape's path. It may be cached.
+            drawBatch.path = new Path(drawBatch.path);
+            drawBatch.pathIsShared = false;
+         }
+         drawBatch.path.addPath(path);
+         drawBatch.unionBounds.union(box);
+      }
+      drawBatch.bounds.add(box);
+
+      if (drawBatch.bounds.size() == MAX_BATCH_SIZE)
+         flushDrawBatch();
+      return true;
+   }
+
+
+   private boolean  canBatch(GraphicsElement obj)
+   {
+      if (!state.hasFill || state.hasStroke || obj.transform != null || obj.boundingBox == null)
+         return false;
+      if (state.style.clipPath != null || hasMarkers(state.style) || requiresCompositingIgnoringOpacity())
+         return false;
+      return !(state.style.fill instanceof PaintReference);
+   }
+
+
+   private boolean  fitsInDrawBatch(Box box, Path.FillType fillType)
+   {
+      if (drawBatch.bounds.size() >= MAX_BATCH_SIZE)
+         return false;
+      if (fillType != drawBatch.fillType)
+         return false;
+      Paint  paint = state.fillPaint;
+      if (paint.getColor() != drawBatch.paint.getColor() || paint.getAlpha() != drawBatch.paint.getAlpha())
+         return false;
+      // The batch is drawn with the first shape's Paint, so anti-aliasing etc. must match too
+      if (paint.getFlags() != drawBatch.paint.getFlags())
+         return false;
+
+      // The shape must not touch any shape already in the batch. Shapes less than a pixel apart count
+      // as touching, because their anti-aliased edges would share pixels, which blend differently in one fill.
+      float  margin = drawBatch.margin;
+      if (!boxesOverlap(box, drawBatch.unionBounds, margin))
+         return true;
+      for (Box other: drawBatch.bounds) {
+         if (boxesOverlap(box, other, margin))
+            return false;
+      }
+      return true;
+   }
+
+
+   private static boolean  boxesOverlap(Box a, Box b, float margin)
+   {
+      return a.minX <= b.maxX() + margin && b.minX <= a.maxX() + margin &&
+             a.minY <= b.maxY() + margin && b.minY <= a.maxY() + margin;
+   }
+
+
+   private void  flushDrawBatch()
+   {
+      if (drawBatch == null || drawBatch.bounds.isEmpty())
+         return;
+
+      if (drawBatch.shape != null) {
+         drawBatch.shape.draw(canvas, drawBatch.paint);
+      } else {
+         drawBatch.path.setFillType(drawBatch.fillType);
+         canvas.drawPath(drawBatch.path, drawBatch.paint);
+      }
+      if (statistics != null)
+         statistics.batchDraws++;
+
+      drawBatch.shape = null;
+      drawBatch.path = null;
+      drawBatch.paint = null;
+      drawBatch.bounds.clear();
+      drawBatch.unionBounds = null;
+   }
+
+
+   //==============================================================================
+   // Level-of-detail culling
+
+
+   /*
+    * Returns true if the element would be smaller than the LOD threshold on the canvas.
+    * Only shapes and groups are culled. Their bounding boxes are cached on the element by
+    * earlier renders, so this doesn't need the element's style or geometry.
+    */
+   private boolean  isBelowLodThreshold(SvgObject obj)
+   {
+      Matrix  transform;
+      if (obj instanceof GraphicsElement)
+         transform = ((GraphicsElement) obj).transform;
+      else if (obj instanceof Group && !(obj instanceof Use) && !(obj instanceof Switch))
+         transform = ((Group) obj).transform;
+      else
+         return false;
+
+      Box  bbox = ((SvgElement) obj).boundingBox;
+      if (bbox == null || obj.parent == null)
+         return false;
+
+      Matrix  m = canvas.getMatrix();
+      if (transform != null)
+         m.preConcat(transform);
+      RectF  deviceBounds = bbox.toRectF();
+      m.mapRect(deviceBounds);
+      return deviceBounds.width() < renderPlan.lodThreshold && deviceBounds.height() < renderPlan.lodThreshold;
+   }
+
+
+   /*
+    * Render an element that has been culled by the LOD threshold. Either nothing is drawn, or a
+    * rect covering its bounds in its average colour. Antialiasing turns that into a single pixel
+    * of the right strength.
+    */
+   private void  renderCulled(SvgElement obj)
+   {
+      debug(obj.getNodeName() + " culled");
+
+      if (statistics != null)
+         statistics.culledElements++;
+
+      Matrix  transform = (obj instanceof GraphicsElement) ? ((GraphicsElement) obj).transform : ((Group) obj).transform;
+      if (transform != null)
+         canvas.concat(transform);
+      // Keep the parent's bounds complete
+      updateParentBoundingBox(obj);
+
+      if (!renderPlan.lodPlaceholders)
+         return;
+
+      updateStyleForElement(state, obj);
+      if (!display() || !visible())
+         return;
+
+      Integer  colour;
+      if (obj instanceof Group)
+      {
+         synchronized (renderPlan.lodColours) {
+            colour = renderPlan.lodColours.get(obj);
+         }
+         if (colour == null) {
+            colour = averageColour((Group) obj);
+            synchronized (renderPlan.lodColours) {
+               renderPlan.lodColours.put(obj, colour);
+            }
+         }
+      }
+      else
+      {
+         colour = getLodColour(state, obj);
+      }
+      if (colour == null || Color.alpha(colour) == 0)
+         return;
+
+      // Don't draw the placeholder before shapes that are waiting to be drawn
+      flushDrawBatch();
+
+      Paint  paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+      paint.setStyle(Paint.Style.FILL);
+      paint.setColor(colourWithOpacity(colour, state.style.opacity * state.foldedOpacity));
+      Box  bbox = obj.boundingBox;
+      canvas.drawRect(bbox.minX, bbox.minY, bbox.maxX(), bbox.maxY(), paint);
+   }
+
+
+   /*
+    * The colour a shape would be drawn in: its fill, or if it has none, its stroke.
+    * Returns null for gradients, patterns and no paint at all.
+    */
+   private static Integer  getLodColour(RendererState state, SvgObject obj)
+   {
+      // Lines are never filled, even though they have the default black fill
+      boolean  filled = state.hasFill && !(obj instanceof Line);
+      if (filled && (state.style.fill instanceof Colour || state.style.fill instanceof CurrentColor))
+         return state.fillPaint.getColor();
+      if (state.hasStroke && (state.style.stroke instanceof Colour || state.style.stroke instanceof CurrentColor))
+         return state.strokePaint.getColor();
+      return null;
+   }
+
+
+   /*
+    * Work out the average colour of the shapes in a group, weighted by the area of their bounds.
+    * Only the styles are resolved. Shapes that haven't been rendered yet have no bounds, and are left out.
+    * Transforms inside the group are ignored, which is close enough for a placeholder.
+    */
+   private Integer  averageColour(Group group)
+   {
+      float[]  sums = new float[5];   // a*r, a*g, a*b, a*area, area
+      addColours(group, sums);
+      if (sums[3] <= 0f)
+         return null;
+      int  a = Math.round(255f * sums[3] / sums[4]);
+      return Color.argb(a, Math.round(sums[0] / sums[3]), Math.round(sums[1] / sums[3]), Math.round(sums[2] / sums[3]));
+   }
+
+
+   private void  addColours(SvgContainer container, float[] sums)
+   {
+      for (SvgObject child: container.getChildren())
+      {
+         if (!(child instanceof SvgElement) || child instanceof NotDirectlyRendered)
+            continue;
+         if (!(child instanceof Group) && !(child instanceof GraphicsElement))
+            continue;
+
+         RendererState  savedState = state;
+         state = new RendererState(state);
+         updateStyleForElement(state, (SvgElement) child);
+         if (display() && visible())
+         {
+            if (child instanceof Group) {
+               addColours((Group) child, sums);
+            } else {
+               Integer  colour = getLodColour(state, child);
+               Box      bbox = ((SvgElement) child).boundingBox;
+               if (colour != null && bbox != null) {
+                  float  area = Math.max(bbox.width * bbox.height, 0f);
+                  float  alpha = Color.alpha(colour) / 255f * state.style.opacity;
+                  sums[0] += Color.red(colour) * alpha * area;
+                  sums[1] += Color.green(colour) * alpha * area;
+                  sums[2] += Color.blue(colour) * alpha * area;
+                  sums[3] += alpha * area;
+                  sums[4] += area;
+               }
+            }
+         }
+         state = savedState;
+      }
+   }
+
+
    //==============================================================================
 
 
@@ -470,6 +912,9 @@ public class SVGAndroidRenderer
       // Save style state
       stateStack.push(state);
       state = new RendererState(state);
+
+      if (statistics != null)
+         statistics.statePushes++;
    }
 
 
@@ -489,6 +934,11 @@ public class SVGAndroidRenderer
     */
    private void canvasSaveLayer(Canvas canvas, RectF bounds, Paint paint)
    {
+      if (statistics != null) {
+         statistics.saveLayers++;
+         statistics.layerPixelArea += calculateLayerArea(canvas, bounds);
+      }
+
       if (SUPPORTS_SAVE_LAYER_FLAGLESS) {
          // New-style saveLayer() - SDK 21+
          canvas.saveLayer(bounds, paint);
@@ -499,6 +949,23 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * The number of device pixels in a layer. A layer covers the bounds (or the whole clip
+    * if there are no bounds), clipped to the current clip.
+    */
+   private static long  calculateLayerArea(Canvas canvas, RectF bounds)
+   {
+      android.graphics.Rect  clip = new android.graphics.Rect();
+      if (!canvas.getClipBounds(clip))
+         return 0;
+      RectF  layer = new RectF(clip);
+      if (bounds != null && !layer.intersect(bounds))
+         return 0;
+      canvas.getMatrix().mapRect(layer);
+      return (long) Math.ceil(layer.width()) * (long) Math.ceil(layer.height());
+   }
+
+
    //==============================================================================
 
 
@@ -521,6 +988,17 @@ public class SVGAndroidRenderer
 
    private void updateStyleForElement(RendererState state, SvgElementBase obj)
    {
+      updateStyleForElement(state, obj, null);
+   }
+
+
+   /*
+    * If matchedStyles is not null, the styles of the CSS rules that matched are added to it.
+    */
+   private void updateStyleForElement(RendererState state, SvgElementBase obj, List<Style> matchedStyles)
+   {
+      long  startTime = (statistics != null) ? System.nanoTime() : 0;
+
       boolean  isRootSVG = (obj.parent == null);
       state.style.resetNonInheritingProperties(isRootSVG);
 
@@ -529,19 +1007,19 @@ public class SVGAndroidRenderer
          updateStyle(state, obj.baseStyle);
 
       // Apply the styles from any CSS files or <style> elements
-      if (document.hasCSSRules())
+      for (CSSParser.Rule rule: renderPlan.getMatchingRules(obj, matchedRules))
       {
-         for (CSSParser.Rule rule: document.getCSSRules())
-         {
-            if (CSSParser.ruleMatch(this.ruleMatchContext, rule.selector, obj)) {
-               updateStyle(state, rule.style);
-            }
-         }
+         updateStyle(state, rule.style);
+         if (matchedStyles != null)
+            matchedStyles.add(rule.style);
       }
 
       // Apply the styles defined by the 'style' attribute. They have the highest precedence.
       if (obj.style != null)
          updateStyle(state, obj.style);
+
+      if (statistics != null)
+         statistics.cascadeTime += System.nanoTime() - startTime;
    }
 
 
@@ -567,10 +1045,12 @@ public class SVGAndroidRenderer
       // First check for pattern fill. It requires special handling.
       if (state.style.fill instanceof PaintReference)
       {
-         SvgObject  ref = document.resolveIRI(((PaintReference) state.style.fill).href);
+         SvgObject  ref = document.resolveIRI((PaintReference) state.style.fill);
          if (ref instanceof Pattern) {
             Pattern  pattern = (Pattern)ref;
+            traceBegin("SVG pattern", pattern);
             fillWithPattern(obj, path, pattern);
+            traceEnd();
             return;
          }
       }
@@ -580,6 +1060,34 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Fill a simple shape. Unless it needs the Path for a pattern fill, it is drawn with one of
+    * the Canvas primitive drawing methods, which are faster than drawPath().
+    */
+   private void  doFilledShape(SvgElement obj, PrimitiveShape shape)
+   {
+      if (state.style.fill instanceof PaintReference && document.resolveIRI((PaintReference) state.style.fill) instanceof Pattern) {
+         doFilledPath(obj, getShapePath(shape));
+         return;
+      }
+      shape.draw(canvas, state.fillPaint);
+   }
+
+
+   /*
+    * Stroke a simple shape. A non-scaling stroke has to transform the Path. And dashes are kept
+    * on the Path, because the primitives don't necessarily start their outline at the same point.
+    */
+   private void  doStroke(PrimitiveShape shape)
+   {
+      if (state.style.vectorEffect == VectorEffect.NonScalingStroke || state.style.strokeDashArray != null) {
+         doStroke(getShapePath(shape));
+         return;
+      }
+      shape.draw(canvas, state.strokePaint);
+   }
+
+
    private void  doStroke(Path path)
    {
       // TODO handle degenerate subpaths properly
@@ -755,7 +1263,11 @@ public class SVGAndroidRenderer
 
       checkForClipPath(obj);
 
-      boolean  compositing = pushLayer();
+      boolean  compositing = false;
+      if (canFoldGroupOpacity(obj))
+         state.foldedOpacity *= state.style.opacity;
+      else
+         compositing = pushLayer();
 
       renderChildren(obj, true);
 
@@ -830,7 +1342,7 @@ public class SVGAndroidRenderer
 
       // Custom version of statePush() that also saves the layer
       Paint  savePaint = new Paint();
-      savePaint.setAlpha(clamp255(state.style.opacity * opacityAdjustment));
+      savePaint.setAlpha(clamp255(state.style.opacity * state.foldedOpacity * opacityAdjustment));
       if (SUPPORTS_BLEND_MODE && state.style.mixBlendMode != CSSBlendMode.normal) {
          setBlendMode(savePaint);
       }
@@ -839,6 +1351,11 @@ public class SVGAndroidRenderer
       // Save style state
       stateStack.push(state);
       state = new RendererState(state);
+      // Any opacity deferred from ancestor groups has now been applied by this layer
+      state.foldedOpacity = 1f;
+
+      if (statistics != null)
+         statistics.statePushes++;
 
       if (state.style.mask != null) {
          SvgObject  ref = document.resolveIRI(state.style.mask);
@@ -872,46 +1389,13 @@ public class SVGAndroidRenderer
    {
       // If this is masked content, apply the mask now
       if (state.style.mask != null) {
-         // The masked content has been drawn, now we have to composite it with our mask layer.
-         // The mask has to be built from two parts:
-         // Step 1: Apply a luminanceToAlpha conversion to the mask content.
-         // Step 2: Multiply the mask's alpha to the alpha channel generated in step 1.
-
-         // Final mask gets composited using Porter Duff mode DST_IN
-         Paint  maskPaintCombined = new Paint();
-         maskPaintCombined.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
-         canvasSaveLayer(canvas, null, maskPaintCombined);
-
-           // Step 1
-           Paint  maskPaint1 = new Paint();
-           // ColorFilter that does the SVG luminanceToAlpha conversion
-           ColorMatrix  luminanceToAlpha = new ColorMatrix(new float[] {0,       0,       0,       0, 0,
-                                                                        0,       0,       0,       0, 0,
-                                                                        0,       0,       0,       0, 0,
-                                                                        SVGAndroidRenderer.LUMINANCE_TO_ALPHA_RED, SVGAndroidRenderer.LUMINANCE_TO_ALPHA_GREEN, SVGAndroidRenderer.LUMINANCE_TO_ALPHA_BLUE, 0, 0});
-           maskPaint1.setColorFilter(new ColorMatrixColorFilter(luminanceToAlpha));
-           canvasSaveLayer(canvas, null, maskPaint1);   // TODO use real mask bounds
-
-             // Render the mask content into the step 1 layer
-             SvgObject  ref = document.resolveIRI(state.style.mask);
-             renderMask((Mask) ref, obj, originalObjBBox);
-
-           // The restore applies the luminanceToAlpha conversion
-           canvas.restore();
-
-           // Step 2
-           Paint  maskPaint2 = new Paint();
-           maskPaint2.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
-           canvasSaveLayer(canvas, null, maskPaint2);
-
-             // Render the mask content (again) into the step 2 part
-             renderMask((Mask) ref, obj, originalObjBBox);
-
-           // The retore composites the luminanceToAlpha layer with the masks alpha
-           canvas.restore();
-
-         // Apply the final mask to the original object waiting in the open layer created in pushLayer()
-         canvas.restore();
+         // The masked content has been drawn, now we have to composite it with the alpha
+         // mask generated from our mask element (see getMaskLayer()).
+         SvgObject  ref = document.resolveIRI(state.style.mask);
+         if (recordingPicture)
+            applyLayerMask((Mask) ref, obj, originalObjBBox);
+         else
+            applyMask((Mask) ref, obj, originalObjBBox);
       }
 
       statePop();
@@ -920,13 +1404,107 @@ public class SVGAndroidRenderer
 
    private boolean requiresCompositing()
    {
-      return (state.style.opacity < 1.0f) ||
-             (state.style.mask != null) ||
+      return (state.style.opacity * state.foldedOpacity < 1.0f) ||
+             requiresCompositingIgnoringOpacity();
+   }
+
+
+   private boolean requiresCompositingIgnoringOpacity()
+   {
+      return (state.style.mask != null) ||
              (state.style.isolation == Isolation.isolate) ||
              (SUPPORTS_BLEND_MODE && state.style.mixBlendMode != CSSBlendMode.normal);
    }
 
 
+   /*
+    * A variant of pushLayer() for shapes. If the shape will be drawn with a single paint
+    * operation (ie. just a fill or just a stroke, and no markers), then the opacity can be
+    * multiplied into the alpha of that paint instead. The result is identical, and we avoid
+    * the cost of allocating and compositing an offscreen layer.
+    */
+   private boolean  pushLayerOrFoldOpacity(boolean drawsFill, boolean drawsStroke, boolean hasMarkers)
+   {
+      if (canFoldOpacity(drawsFill, drawsStroke, hasMarkers)) {
+         foldOpacityIntoPaints(drawsFill, drawsStroke);
+         return false;
+      }
+      return pushLayer();
+   }
+
+
+   private boolean  canFoldOpacity(boolean drawsFill, boolean drawsStroke, boolean hasMarkers)
+   {
+      float  opacity = state.style.opacity * state.foldedOpacity;
+      if (opacity >= 1.0f || requiresCompositingIgnoringOpacity())
+         return false;
+      // Markers are drawn over the top of the shape, so they may overlap it
+      if (hasMarkers)
+         return false;
+      // Same goes for the stroke overlapping the fill
+      if (drawsFill && drawsStroke)
+         return false;
+      // Patterns are rendered as subtrees of their own, so need a real layer
+      return !(drawsFill && isPatternPaint(state.style.fill)) &&
+             !(drawsStroke && isPatternPaint(state.style.stroke));
+   }
+
+
+   private boolean  isPatternPaint(SvgPaint paint)
+   {
+      return (paint instanceof PaintReference) &&
+             (document.resolveIRI((PaintReference) paint) instanceof Pattern);
+   }
+
+
+   private void  foldOpacityIntoPaints(boolean drawsFill, boolean drawsStroke)
+   {
+      float  opacity = state.style.opacity * state.foldedOpacity;
+      // Note that setting the alpha on a Paint also modulates its Shader (ie. gradients)
+      if (drawsFill)
+         state.fillPaint.setAlpha(clamp255(opacity * state.fillPaint.getAlpha() / 255f));
+      if (drawsStroke)
+         state.strokePaint.setAlpha(clamp255(opacity * state.strokePaint.getAlpha() / 255f));
+      state.foldedOpacity = 1f;
+   }
+
+
+   /*
+    * A group's opacity can be deferred to its child if it has only one child. The child
+    * will then either fold it into its paint (see pushLayerOrFoldOpacity()), or apply it
+    * in its own layer.
+    */
+   private boolean  canFoldGroupOpacity(SvgContainer obj)
+   {
+      if (state.style.opacity * state.foldedOpacity >= 1.0f || requiresCompositingIgnoringOpacity())
+         return false;
+      List<SvgObject>  children = obj.getChildren();
+      if (children.size() != 1)
+         return false;
+      SvgObject  child = children.get(0);
+      return (child instanceof GraphicsElement) || (child instanceof Group);
+   }
+
+
+   /*
+    * The isShareable argument was deprecated, and is ignored, from API 31 (S).
+    */
+   @SuppressWarnings("deprecation")
+   private static BitmapRegionDecoder  newRegionDecoder(byte[] imageData) throws IOException
+   {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S)
+         return BitmapRegionDecoder.newInstance(imageData, 0, imageData.length);
+      else
+         return BitmapRegionDecoder.newInstance(imageData, 0, imageData.length, false);
+   }
+
+
+   private static boolean  hasMarkers(Style style)
+   {
+      return style.markerStart != null || style.markerMid != null || style.markerEnd != null;
+   }
+
+
    @androidx.annotation.RequiresApi(Build.VERSION_CODES.Q)
    private void  setBlendMode(Paint paint)
    {
@@ -1023,6 +1601,8 @@ public class SVGAndroidRenderer
             if (reqfmts.isEmpty() || externalFileResolver == null)
                continue;
             for (String mimeType: reqfmts) {
+               if (statistics != null)
+                  statistics.resolverCalls++;
                if (!externalFileResolver.isFormatSupported(mimeType))
                   continue ChildLoop;
             }
@@ -1033,13 +1613,15 @@ public class SVGAndroidRenderer
             if (reqfonts.isEmpty() || externalFileResolver == null)
                continue;
             for (String fontName: reqfonts) {
+               if (statistics != null)
+                  statistics.resolverCalls++;
                if (externalFileResolver.resolveFont(fontName, state.style.fontWeight, String.valueOf(state.style.fontStyle), state.style.fontWidth) == null)
                   continue ChildLoop;
             }
          }
          
          // All checks passed!  Render this one element and exit
-         render(child);
+         renderUnbatched(child);
          break;
       }
    }
@@ -1130,7 +1712,8 @@ public class SVGAndroidRenderer
           (obj.height != null && obj.height.isZero()))
          return;
 
-      updateStyleForElement(state, obj);
+      List<Style>  matchedStyles = new ArrayList<>();
+      updateStyleForElement(state, obj, matchedStyles);
 
       if (!display())
          return;
@@ -1172,13 +1755,16 @@ public class SVGAndroidRenderer
          Length _h = (obj.height != null) ? obj.height : new Length(100, Unit.percent);
          Box viewPort = makeViewPort(null, null, _w, _h);
 
-         statePush();
-         render((Symbol) ref, viewPort);
-         statePop();
+         if (!renderSymbolInstance(obj, (Symbol) ref, viewPort, matchedStyles))
+         {
+            statePush();
+            render((Symbol) ref, viewPort);
+            statePop();
+         }
       }
       else
       {
-         render(ref);
+         renderUnbatched(ref);
       }
 
       parentPop();
@@ -1190,6 +1776,223 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Render a <symbol> by replaying a recording of a previous rendering of it.
+    *
+    * Sprite sheets often reference the same symbol many times. A symbol is recorded into a Picture
+    * the first time it is used in a particular context. Later <use> elements that would render it
+    * identically just replay the recording. The context is made up of:
+    *   - the elements we are nested inside (which determine the inherited style)
+    *   - the CSS rules that matched the <use> element
+    *   - the size of the viewport
+    *   - the scale, rotation and skew of the canvas (translations don't matter)
+    *
+    * Returns false if the symbol couldn't be instanced, and should be rendered normally instead.
+    */
+   private boolean  renderSymbolInstance(Use obj, Symbol symbol, Box viewPort, List<Style> matchedStyles)
+   {
+      // A style attribute on the <use> makes its context unique. No point recording it.
+      if (obj.baseStyle != null || obj.style != null)
+         return false;
+      if (viewPort.width == 0f || viewPort.height == 0f)
+         return false;
+      // Older versions of Android can't draw Pictures on hardware accelerated canvases
+      if (!SUPPORTS_HARDWARE_DRAW_PICTURE && canvas.isHardwareAccelerated())
+         return false;
+      // Display lists should contain the symbol content, not an opaque Picture
+      if (recorder != null)
+         return false;
+
+      // Separate the translation from the rest of the canvas matrix
+      Matrix   currentMatrix = canvas.getMatrix();
+      float[]  values = new float[9];
+      currentMatrix.getValues(values);
+      float  transX = values[Matrix.MTRANS_X];
+      float  transY = values[Matrix.MTRANS_Y];
+      values[Matrix.MTRANS_X] = 0f;
+      values[Matrix.MTRANS_Y] = 0f;
+
+      // The <use> element is at the top of the parent stack. Leave it out of the key, so that sibling <use> elements can share.
+      SymbolCacheKey  key = new SymbolCacheKey(symbol, parentStack.subList(0, parentStack.size() - 1).toArray(), matchedStyles,
+                                               state.spacePreserve, viewPort, values);
+      SymbolInstance  instance;
+      if (symbolCache == null) {
+         symbolCache = new HashMap<>();
+         instance = null;
+      } else {
+         instance = symbolCache.get(key);
+      }
+
+      if (instance == null)
+      {
+         instance = recordSymbolInstance(obj, symbol, viewPort, values);
+         symbolCache.put(key, instance);
+      }
+      else if (instance.picture != null && instance.boundingBox != null)
+      {
+         // We didn't render the symbol, so we need to update the <use> bounding box ourselves
+         if (obj.boundingBox == null)
+            obj.boundingBox = new Box(instance.boundingBox);
+         else
+            obj.boundingBox.union(instance.boundingBox);
+      }
+
+      if (instance.picture == null)
+         return false;
+
+      // Move to the device position of the picture, keeping the rest of the current transform
+      Matrix  playbackMatrix = new Matrix();
+      if (!currentMatrix.invert(playbackMatrix))
+         return false;
+      playbackMatrix.preTranslate(transX + instance.left, transY + instance.top);
+      canvas.save();
+      canvas.concat(playbackMatrix);
+      canvas.drawPicture(instance.picture);
+      canvas.restore();
+      return true;
+   }
+
+
+   /*
+    * Record the content of a symbol into a Picture. The picture is drawn in a space that has
+    * the scale, rotation and skew of the current canvas. But is positioned at the device pixel origin.
+    */
+   private SymbolInstance  recordSymbolInstance(Use obj, Symbol symbol, Box viewPort, float[] linearValues)
+   {
+      // If the content overflows the symbol, we don't know how big the picture needs to be
+      RendererState  symbolState = new RendererState(state);
+      updateStyleForElement(symbolState, symbol);
+      if (symbolState.style.overflow)
+         return new SymbolInstance(null, 0, 0, null);
+
+      Matrix  linear = new Matrix();
+      linear.setValues(linearValues);
+
+      // Calculate the device-space bounds of the symbol viewport
+      RectF  bounds = new RectF(viewPort.minX, viewPort.minY, viewPort.maxX(), viewPort.maxY());
+      linear.mapRect(bounds);
+      float  left = (float) Math.floor(bounds.left);
+      float  top = (float) Math.floor(bounds.top);
+      int    width = (int) Math.ceil(bounds.right - left);
+      int    height = (int) Math.ceil(bounds.bottom - top);
+      if (width <= 0 || height <= 0)
+         return new SymbolInstance(null, 0, 0, null);
+
+      Picture  picture = new Picture();
+      Canvas   pictureCanvas = picture.beginRecording(width, height);
+      pictureCanvas.translate(-left, -top);
+      pictureCanvas.concat(linear);
+
+      // Capture just the part of the <use> bounding box that comes from this symbol
+      Box  savedBoundingBox = obj.boundingBox;
+      obj.boundingBox = null;
+
+      Canvas  savedCanvas = canvas;
+      canvas = pictureCanvas;
+      parentPush(obj);
+      statePush();
+      render(symbol, viewPort);
+      statePop();
+      parentPop();
+      canvas = savedCanvas;
+
+      picture.endRecording();
+
+      Box  symbolBoundingBox = obj.boundingBox;
+      if (savedBoundingBox == null)
+         obj.boundingBox = (symbolBoundingBox != null) ? new Box(symbolBoundingBox) : null;
+      else {
+         obj.boundingBox = savedBoundingBox;
+         if (symbolBoundingBox != null)
+            obj.boundingBox.union(symbolBoundingBox);
+      }
+
+      return new SymbolInstance(picture, left, top, symbolBoundingBox);
+   }
+
+
+   /*
+    * A recording of a symbol. If picture is null, the symbol can't be instanced.
+    */
+   private static class  SymbolInstance
+   {
+      final Picture  picture;
+      final float    left;
+      final float    top;
+      final Box      boundingBox;  // The contribution of the symbol to the <use> bounding box
+
+      SymbolInstance(Picture picture, float left, float top, Box boundingBox)
+      {
+         this.picture = picture;
+         this.left = left;
+         this.top = top;
+         this.boundingBox = boundingBox;
+      }
+   }
+
+
+   private static class  SymbolCacheKey
+   {
+      private final Symbol       symbol;
+      private final Object[]     ancestors;
+      private final List<Style>  matchedStyles;
+      private final boolean      spacePreserve;
+      private final float[]      values;       // viewport size and the canvas matrix, minus translation
+      private final int          hash;
+
+      SymbolCacheKey(Symbol symbol, Object[] ancestors, List<Style> matchedStyles, boolean spacePreserve, Box viewPort, float[] matrixValues)
+      {
+         this.symbol = symbol;
+         this.ancestors = ancestors;
+         this.matchedStyles = matchedStyles;
+         this.spacePreserve = spacePreserve;
+         this.values = Arrays.copyOf(matrixValues, 11);
+         this.values[9] = viewPort.width;
+         this.values[10] = viewPort.height;
+
+         int  h = System.identityHashCode(symbol);
+         for (Object ancestor: ancestors)
+            h = 31 * h + System.identityHashCode(ancestor);
+         for (Style style: matchedStyles)
+            h = 31 * h + System.identityHashCode(style);
+         h = 31 * h + (spacePreserve ? 1 : 0);
+         this.hash = 31 * h + Arrays.hashCode(values);
+      }
+
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof SymbolCacheKey))
+            return false;
+         SymbolCacheKey  other = (SymbolCacheKey) o;
+         if (this.symbol != other.symbol || this.spacePreserve != other.spacePreserve)
+            return false;
+         if (!Arrays.equals(this.values, other.values))
+            return false;
+         return sameElements(this.ancestors, other.ancestors) &&
+                sameElements(this.matchedStyles.toArray(), other.matchedStyles.toArray());
+      }
+
+      @Override
+      public int  hashCode()
+      {
+         return hash;
+      }
+
+      // Compare arrays by the identity of their elements
+      private static boolean  sameElements(Object[] a, Object[] b)
+      {
+         if (a.length != b.length)
+            return false;
+         for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i])
+               return false;
+         }
+         return true;
+      }
+   }
+
+
    //==============================================================================
 
 
@@ -1206,23 +2009,40 @@ public class SVGAndroidRenderer
          return;
       if (!visible())
          return;
+
       if (!state.hasStroke && !state.hasFill)
          return;
+      if (statistics != null)
+         statistics.elementsDrawn++;
 
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = (new PathConverter(obj.d)).getPath();
-
-      if (obj.boundingBox == null) {
-         obj.boundingBox = calculatePathBounds(path);
+      Path  path;
+      if (renderPlan.maxPathError > 0f)
+      {
+         // The bounding box is always that of the full path, so that it doesn't depend on the scale
+         if (obj.boundingBox == null) {
+            obj.boundingBox = calculatePathBounds(buildPath(obj.d));
+         }
+         path = buildPath(obj.d.simplified(renderPlan.maxPathError / getDeviceScale()));
+      }
+      else
+      {
+         path = buildPath(obj.d);
+         if (obj.boundingBox == null) {
+            obj.boundingBox = calculatePathBounds(path);
+         }
       }
       updateParentBoundingBox(obj);
 
+      if (addToDrawBatch(obj, path, null))
+         return;
+
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
       
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(state.hasFill, state.hasStroke, hasMarkers(state.style));
 
       if (state.hasFill) {
          path.setFillType(getFillTypeFromState());
@@ -1238,6 +2058,19 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * The largest amount that a unit length in user space can be stretched to on the canvas.
+    */
+   private float  getDeviceScale()
+   {
+      float[]  m = new float[9];
+      canvas.getMatrix().getValues(m);
+      float  scaleX = (float) Math.hypot(m[Matrix.MSCALE_X], m[Matrix.MSKEW_Y]);
+      float  scaleY = (float) Math.hypot(m[Matrix.MSKEW_X], m[Matrix.MSCALE_Y]);
+      return Math.max(scaleX, scaleY);
+   }
+
+
    private Box  calculatePathBounds(Path path)
    {
       RectF  pathBounds = new RectF();
@@ -1263,21 +2096,27 @@ public class SVGAndroidRenderer
       if (!visible())
          return;
 
+      if (statistics != null && (state.hasStroke || state.hasFill))
+         statistics.elementsDrawn++;
+
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      PrimitiveShape  shape = makeShapeAndBoundingBox(obj);
       updateParentBoundingBox(obj);
 
+      if (addToDrawBatch(obj, null, shape))
+         return;
+
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
 
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(state.hasFill, state.hasStroke, false);
 
       if (state.hasFill)
-         doFilledPath(obj, path);
+         doFilledShape(obj, shape);
       if (state.hasStroke)
-         doStroke(path);
+         doStroke(shape);
 
 
       if (compositing)
@@ -1302,21 +2141,27 @@ public class SVGAndroidRenderer
       if (!visible())
          return;
 
+      if (statistics != null && (state.hasStroke || state.hasFill))
+         statistics.elementsDrawn++;
+
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      PrimitiveShape  shape = makeShapeAndBoundingBox(obj);
       updateParentBoundingBox(obj);
 
+      if (addToDrawBatch(obj, null, shape))
+         return;
+
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
 
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(state.hasFill, state.hasStroke, false);
 
       if (state.hasFill)
-         doFilledPath(obj, path);
+         doFilledShape(obj, shape);
       if (state.hasStroke)
-         doStroke(path);
+         doStroke(shape);
 
       if (compositing)
          popLayer(obj);
@@ -1340,21 +2185,27 @@ public class SVGAndroidRenderer
       if (!visible())
          return;
 
+      if (statistics != null && (state.hasStroke || state.hasFill))
+         statistics.elementsDrawn++;
+
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      PrimitiveShape  shape = makeShapeAndBoundingBox(obj);
       updateParentBoundingBox(obj);
 
+      if (addToDrawBatch(obj, null, shape))
+         return;
+
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
 
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(state.hasFill, state.hasStroke, false);
 
       if (state.hasFill)
-         doFilledPath(obj, path);
+         doFilledShape(obj, shape);
       if (state.hasStroke)
-         doStroke(path);
+         doStroke(shape);
 
       if (compositing)
          popLayer(obj);
@@ -1374,21 +2225,24 @@ public class SVGAndroidRenderer
          return;
       if (!visible())
          return;
+
       if (!state.hasStroke)
          return;
+      if (statistics != null)
+         statistics.elementsDrawn++;
 
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      PrimitiveShape  shape = makeShapeAndBoundingBox(obj);
       updateParentBoundingBox(obj);
 
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
 
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(false, true, hasMarkers(state.style));
 
-      doStroke(path);
+      doStroke(shape);
 
       renderMarkers(obj);
 
@@ -1425,8 +2279,11 @@ public class SVGAndroidRenderer
          return;
       if (!visible())
          return;
+
       if (!state.hasStroke && !state.hasFill)
          return;
+      if (statistics != null)
+         statistics.elementsDrawn++;
 
       if (obj.transform != null)
          canvas.concat(obj.transform);
@@ -1444,7 +2301,7 @@ public class SVGAndroidRenderer
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
       
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(state.hasFill, state.hasStroke, hasMarkers(state.style));
 
       if (state.hasFill)
          doFilledPath(obj, path);
@@ -1510,8 +2367,11 @@ public class SVGAndroidRenderer
          return;
       if (!visible())
          return;
+
       if (!state.hasStroke && !state.hasFill)
          return;
+      if (statistics != null)
+         statistics.elementsDrawn++;
 
       if (obj.transform != null)
          canvas.concat(obj.transform);
@@ -1523,10 +2383,13 @@ public class SVGAndroidRenderer
       Path  path = makePathAndBoundingBox(obj);
       updateParentBoundingBox(obj);
 
+      if (addToDrawBatch(obj, path, null))
+         return;
+
       checkForGradientsAndPatterns(obj);
       checkForClipPath(obj);
       
-      boolean  compositing = pushLayer();
+      boolean  compositing = pushLayerOrFoldOpacity(state.hasFill, state.hasStroke, hasMarkers(state.style));
 
       if (state.hasFill)
          doFilledPath(obj, path);
@@ -1552,6 +2415,9 @@ public class SVGAndroidRenderer
       if (!display())
          return;
 
+      if (statistics != null)
+         statistics.elementsDrawn++;
+
       selectTypefaceAndFontStyling();
 
       if (obj.transform != null)
@@ -1593,7 +2459,45 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Choose the Typeface for the current font properties, and set it, along with any font
+    * variation and feature settings, on the fill and stroke paints. The results are cached
+    * by the document, so the fonts are only resolved once for each combination of properties.
+    */
    private void selectTypefaceAndFontStyling()
+   {
+      TypefaceCache          cache = (document != null) ? document.typefaceCache : null;
+      TypefaceCache.Key      key = null;
+      TypefaceCache.Entry    selection = null;
+
+      if (cache != null) {
+         key = new TypefaceCache.Key(state.style, state.fontVariationSet, state.fontFeatureSet);
+         selection = cache.get(key);
+      }
+      if (selection == null) {
+         selection = resolveTypefaceAndFontStyling();
+         if (cache != null)
+            cache.put(key, selection);
+      }
+
+      state.fillPaint.setTypeface(selection.typeface);
+      state.strokePaint.setTypeface(selection.typeface);
+
+      if (SUPPORTS_PAINT_FONT_VARIATION_SETTINGS) {
+         // The cached settings are a superset of the ones we started with
+         state.fontVariationSet.applySettings(selection.variationSet);
+         state.fillPaint.setFontVariationSettings(selection.variationSettingsString);
+         state.strokePaint.setFontVariationSettings(selection.variationSettingsString);
+      }
+
+      if (SUPPORTS_PAINT_FONT_FEATURE_SETTINGS) {
+         state.fillPaint.setFontFeatureSettings(selection.featureSettingsString);
+         state.strokePaint.setFontFeatureSettings(selection.featureSettingsString);
+      }
+   }
+
+
+   private TypefaceCache.Entry  resolveTypefaceAndFontStyling()
    {
       Typeface  font = null;
 
@@ -1603,25 +2507,22 @@ public class SVGAndroidRenderer
             font = checkGenericFont(fontName, state.style.fontWeight, state.style.fontStyle);
             // Otherwise, try loading the specified font
             if (font == null && externalFileResolver != null) {
-               font = externalFileResolver.resolveFont(fontName, state.style.fontWeight, String.valueOf(state.style.fontStyle), state.style.fontWidth);
+               font = resolveFont(fontName);
             }
             if (font != null) {
-               Log.d("Typeface", fontName + ": wt=" + state.style.fontWeight + " st=" + state.style.fontStyle +
-                          ": style=" + font.getStyle() + " bold=" + font.isBold() + " italic="+font.isItalic());
-               if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-                  Log.d("Typeface", "weight=" + font.getWeight() + " sysfont='" + font.getSystemFontFamilyName() + "'");
-               }
-            }
-            if (font != null)
+               debug("Typeface %s: wt=%s st=%s: style=%d bold=%b italic=%b", fontName, state.style.fontWeight, state.style.fontStyle,
+                     font.getStyle(), font.isBold(), font.isItalic());
                break;
+            }
          }
       }
       if (font == null) {
          // Fall back to default font
          font = checkGenericFont(DEFAULT_FONT_FAMILY, state.style.fontWeight, state.style.fontStyle);
       }
-      state.fillPaint.setTypeface(font);
-      state.strokePaint.setTypeface(font);
+
+      String  fontVariationSettings = null;
+      String  fontFeatureSettings = null;
 
       // Just in case this is a variable font, let's also set the fontVariationSettings
       // In order to get the desired font weight and style
@@ -1647,18 +2548,33 @@ public class SVGAndroidRenderer
          // Apply the CSS font-variation-setting values if there are any
          state.fontVariationSet.applySettings(state.style.fontVariationSettings);
 
-         String  fontVariationSettings = state.fontVariationSet.toString();
-         debug("fontVariationSettings = "+fontVariationSettings);
-         state.fillPaint.setFontVariationSettings(fontVariationSettings);
-         state.strokePaint.setFontVariationSettings(fontVariationSettings);
+         fontVariationSettings = state.fontVariationSet.toString();
+         debug("fontVariationSettings = %s", fontVariationSettings);
       }
 
       if (SUPPORTS_PAINT_FONT_FEATURE_SETTINGS) {
-         String  fontFeatureSettings = state.fontFeatureSet.toString();
-         debug("fontFeatureSettings = "+fontFeatureSettings);
-         state.fillPaint.setFontFeatureSettings(fontFeatureSettings);
-         state.strokePaint.setFontFeatureSettings(fontFeatureSettings);
+         fontFeatureSettings = state.fontFeatureSet.toString();
+         debug("fontFeatureSettings = %s", fontFeatureSettings);
       }
+
+      return new TypefaceCache.Entry(font, state.fontVariationSet, fontVariationSettings, fontFeatureSettings);
+   }
+
+
+   /*
+    * Ask the file resolver for a font, unless it has already been loaded by prefetchExternalResources().
+    */
+   private Typeface  resolveFont(String fontName)
+   {
+      String  fontStyle = String.valueOf(state.style.fontStyle);
+      synchronized (document.prefetchedFonts) {
+         String  key = ResourcePrefetcher.fontKey(fontName, state.style.fontWeight, fontStyle, state.style.fontWidth);
+         if (document.prefetchedFonts.containsKey(key))
+            return document.prefetchedFonts.get(key);
+      }
+      if (statistics != null)
+         statistics.resolverCalls++;
+      return externalFileResolver.resolveFont(fontName, state.style.fontWeight, fontStyle, state.style.fontWidth);
    }
 
 
@@ -1732,17 +2648,23 @@ public class SVGAndroidRenderer
       Iterator<SvgObject>  iter = obj.children.iterator();
       boolean              isFirstChild = true;
 
+      // Text measurements are cached by the container that the text belongs to
+      TextContainer  outerTextContainer = currentTextContainer;
+
       while (iter.hasNext())
       {
          SvgObject  child = iter.next();
 
          if (child instanceof TextSequence) {
-            textprocessor.processText(textXMLSpaceTransform(((TextSequence) child).text, isFirstChild, !iter.hasNext() /*isLastChild*/));
+            currentTextContainer = obj;
+            textprocessor.processText(getProcessedText((TextSequence) child, isFirstChild, !iter.hasNext() /*isLastChild*/));
          } else {
             processTextChild(child, textprocessor);
          }
          isFirstChild = false;
       }
+
+      currentTextContainer = outerTextContainer;
    }
 
 
@@ -1876,15 +2798,9 @@ public class SVGAndroidRenderer
          return;
       }
 
-      SVGBase.Path  pathObj = (SVGBase.Path) ref;
-      Path          path = (new PathConverter(pathObj.d)).getPath();
-
-      if (pathObj.transform != null)
-         path.transform(pathObj.transform);
-
-      PathMeasure  measure = new PathMeasure(path, false);
+      TextPathGeometry  geometry = getTextPathGeometry((SVGBase.Path) ref);
 
-      float  startOffset = (obj.startOffset != null) ? obj.startOffset.floatValue(this, measure.getLength()) : 0f;
+      float  startOffset = (obj.startOffset != null) ? obj.startOffset.floatValue(this, geometry.length) : 0f;
 
       // Handle text alignment
       Style.TextAnchor  anchor = getAnchorPosition();
@@ -1897,14 +2813,53 @@ public class SVGAndroidRenderer
          }
       }
 
-      checkForGradientsAndPatterns((SvgElement) obj.getTextRoot());
-      
-      boolean  compositing = pushLayer();
+      checkForGradientsAndPatterns((SvgElement) obj.getTextRoot());
+      
+      boolean  compositing = pushLayer();
+
+      enumerateTextSpans(obj, new PathTextDrawer(geometry.path, startOffset, 0f));
+
+      if (compositing)
+         popLayer(obj);
+   }
+
+
+   /*
+    * The geometry of a path that is used by a <textPath>. It only depends on the path element,
+    * so it is worked out once and kept on the element.
+    */
+   static class  TextPathGeometry
+   {
+      final Path   path;      // With the path element's transform applied. Must not be modified.
+      final float  length;    // The length of the first subpath. The text is laid out along that.
+      final RectF  bounds;
+
+      TextPathGeometry(Path path, float length, RectF bounds)
+      {
+         this.path = path;
+         this.length = length;
+         this.bounds = bounds;
+      }
+   }
+
 
-      enumerateTextSpans(obj, new PathTextDrawer(path, startOffset, 0f));
+   private TextPathGeometry  getTextPathGeometry(SVGBase.Path pathObj)
+   {
+      TextPathGeometry  geometry = pathObj.textPathGeometry;
+      if (geometry == null)
+      {
+         Path  path = buildPath(pathObj.d);
+         if (pathObj.transform != null)
+            path.transform(pathObj.transform);
 
-      if (compositing)
-         popLayer(obj);
+         PathMeasure  measure = new PathMeasure(path, false);
+         RectF        bounds = new RectF();
+         path.computeBounds(bounds, true);
+
+         geometry = new TextPathGeometry(path, measure.getLength(), bounds);
+         pathObj.textPathGeometry = geometry;
+      }
+      return geometry;
    }
 
 
@@ -1967,18 +2922,32 @@ public class SVGAndroidRenderer
 
    /*
     * Calculate an accurate text width.
-    * In the case of very small font sizes, Paint.measureText() returns a result that is too large,
-    * because it rounds up (Maih.ceil()) the total width before returning.
-      */
+    */
    private float  measureText(String text, Paint paint)
    {
-      float[] widths = new float[text.length()];
-      paint.getTextWidths(text, widths);
-      float total = 0;
-      for (int i=0; i < widths.length; i++) {
-         total += widths[i];
+      return getTextRun(text, paint).width;
+   }
+
+
+   /*
+    * Get the measurements of a run of text. If it is part of a text container, they come from
+    * the container's layout cache, so each run only gets measured once.
+    */
+   private TextLayoutCache.Run  getTextRun(String text, Paint paint)
+   {
+      if (statistics != null)
+         statistics.textSpansMeasured++;
+
+      TextContainer  container = currentTextContainer;
+      if (container == null)
+         return TextLayoutCache.measure(text, paint);
+
+      TextLayoutCache  layout = container.textLayout;
+      if (layout == null) {
+         layout = new TextLayoutCache();
+         container.textLayout = layout;
       }
-      return total;
+      return layout.getRun(text, paint);
    }
 
 
@@ -2013,13 +2982,7 @@ public class SVGAndroidRenderer
                error("TextPath path reference '%s' not found", tpath.href);
                return false;
             }
-            SVGBase.Path  pathObj = (SVGBase.Path) ref;
-            Path          path = (new PathConverter(pathObj.d)).getPath();
-            if (pathObj.transform != null)
-               path.transform(pathObj.transform);
-            RectF     pathBounds = new RectF();
-            path.computeBounds(pathBounds, true);
-            bbox.union(pathBounds);
+            bbox.union(getTextPathGeometry((SVGBase.Path) ref).bounds);
             return false;
          }
          return true;
@@ -2030,10 +2993,8 @@ public class SVGAndroidRenderer
       {
          if (visible())
          {
-            android.graphics.Rect  rect = new android.graphics.Rect();
             // Get text bounding box (for offset 0)
-            state.fillPaint.getTextBounds(text, 0, text.length(), rect);
-            RectF  textbounds = new RectF(rect);
+            RectF  textbounds = new RectF(getTextRun(text, state.fillPaint).getBounds(text, state.fillPaint));
             // Adjust bounds to offset at text position
             textbounds.offset(x, y);
             // Merge with accumulated bounding box
@@ -2061,7 +3022,7 @@ public class SVGAndroidRenderer
          if (child instanceof TextContainer) {
             extractRawText((TextContainer) child, str);
          } else if (child instanceof TextSequence) {
-            str.append(textXMLSpaceTransform(((TextSequence) child).text, isFirstChild, !iter.hasNext() /*isLastChild*/));
+            str.append(getProcessedText((TextSequence) child, isFirstChild, !iter.hasNext() /*isLastChild*/));
          }
          isFirstChild = false;
       }
@@ -2070,6 +3031,26 @@ public class SVGAndroidRenderer
 
    //==============================================================================
 
+   /*
+    * Get the text of a TextSequence after xml:space processing. The result is cached on the TextSequence.
+    */
+   private String  getProcessedText(TextSequence obj, boolean isFirstChild, boolean isLastChild)
+   {
+      int       flags = (state.spacePreserve ? 4 : 0) | (isFirstChild ? 2 : 0) | (isLastChild ? 1 : 0);
+      String[]  processed = obj.processedText;
+      if (processed == null) {
+         processed = new String[8];
+         obj.processedText = processed;
+      }
+      String  text = processed[flags];
+      if (text == null) {
+         text = textXMLSpaceTransform(obj.text, isFirstChild, isLastChild);
+         processed[flags] = text;
+      }
+      return text;
+   }
+
+
    // Process the text string according to the xml:space rules
    private String  textXMLSpaceTransform(String text, boolean isFirstChild, boolean isLastChild)
    {
@@ -2145,21 +3126,6 @@ public class SVGAndroidRenderer
       // "If attribute 'preserveAspectRatio' is not specified, then the effect is as if a value of xMidYMid meet were specified."
       PreserveAspectRatio  positioning = (obj.preserveAspectRatio != null) ? obj.preserveAspectRatio : PreserveAspectRatio.LETTERBOX;
 
-      // Locate the referenced image
-      Bitmap  image = checkForImageDataURL(obj.href);
-      if (image == null)
-      {
-         if (externalFileResolver == null)
-            return;
-
-         image = externalFileResolver.resolveImage(obj.href);
-      }
-      if (image == null) {
-         error("Could not locate image '%s'", obj.href);
-         return;
-      }
-      Box  imageNaturalSize = new Box(0,  0,  image.getWidth(), image.getHeight());
-
       updateStyleForElement(state, obj);
 
       if (!display())
@@ -2167,6 +3133,9 @@ public class SVGAndroidRenderer
       if (!visible())
          return;
 
+      if (statistics != null)
+         statistics.elementsDrawn++;
+
       if (obj.transform != null) {
          canvas.concat(obj.transform);
       }
@@ -2181,6 +3150,17 @@ public class SVGAndroidRenderer
          setClipRect(state.viewPort.minX, state.viewPort.minY, state.viewPort.width, state.viewPort.height);
       }
 
+      // Locate the referenced image. We now know how big it will be drawn, so it can be decoded at a suitable size.
+      traceBegin("SVG image decode", obj);
+      LoadedImage  image = loadImage(obj.href, positioning);
+      traceEnd();
+      if (image == null)
+      {
+         if (externalFileResolver != null)
+            error("Could not locate image '%s'", obj.href);
+         return;
+      }
+
       obj.boundingBox = state.viewPort;
       updateParentBoundingBox(obj);
 
@@ -2193,10 +3173,16 @@ public class SVGAndroidRenderer
       canvas.save();
 
       // Local transform from image's natural dimensions to the specified SVG dimensions
-      canvas.concat(calculateViewBoxTransform(state.viewPort, imageNaturalSize, positioning));
+      canvas.concat(calculateViewBoxTransform(state.viewPort, image.naturalSize, positioning));
 
       Paint  bmPaint = new Paint((state.style.imageRendering == RenderQuality.optimizeSpeed) ? 0 : Paint.FILTER_BITMAP_FLAG);
-      canvas.drawBitmap(image, 0, 0, bmPaint);
+      if (image.region == null && image.bitmap.getWidth() == image.naturalSize.width && image.bitmap.getHeight() == image.naturalSize.height) {
+         canvas.drawBitmap(image.bitmap, 0, 0, bmPaint);
+      } else {
+         // A reduced size bitmap, or part of the image. Stretch it over the part of the image it covers.
+         RectF  dest = (image.region != null) ? new RectF(image.region) : image.naturalSize.toRectF();
+         canvas.drawBitmap(image.bitmap, null, dest, bmPaint);
+      }
 
       canvas.restore();
 
@@ -2208,25 +3194,164 @@ public class SVGAndroidRenderer
    //==============================================================================
 
 
+   /*
+    * A decoded <image>, and the part of the image it covers.
+    */
+   private static class  LoadedImage
+   {
+      final Bitmap                   bitmap;
+      final Box                      naturalSize;
+      final android.graphics.Rect    region;       // In the image's natural coordinates. Null means the whole image.
+
+      LoadedImage(Bitmap bitmap, Box naturalSize, android.graphics.Rect region)
+      {
+         this.bitmap = bitmap;
+         this.naturalSize = naturalSize;
+         this.region = region;
+      }
+   }
+
+
+   // Images smaller than this (in pixels) are always decoded whole
+   private static final int  REGION_DECODE_MIN_PIXELS = 1024 * 1024;
+   // Decoded regions are aligned to this grid, so that a small scroll can reuse the last region
+   private static final int  REGION_DECODE_GRID = 256;
+
+
+   /*
+    * Get the Bitmap for an image href, from the image cache if it has already been decoded.
+    * The image is decoded at the smallest size that will fill the viewport at the current scale.
+    */
+   private LoadedImage  loadImage(String href, PreserveAspectRatio positioning)
+   {
+      ImageCache  cache = (document != null) ? document.getImageCache() : null;
+
+      float  scale = getDeviceScale();
+      int    targetWidth = (int) Math.ceil(state.viewPort.width * scale);
+      int    targetHeight = (int) Math.ceil(state.viewPort.height * scale);
+
+      // A data URL that we can't decode is passed to the file resolver, in case it can do better
+      LoadedImage  image = null;
+      if (href.startsWith("data:"))
+         image = loadDataURLImage(href, cache, targetWidth, targetHeight, positioning);
+
+      if (image == null && externalFileResolver != null)
+      {
+         // Round the size up, so that small changes in scale don't cause a new request
+         int  neededWidth = targetWidth;
+         int  neededHeight = targetHeight;
+         targetWidth = roundUpToPowerOfTwo(targetWidth);
+         targetHeight = roundUpToPowerOfTwo(targetHeight);
+         ImageCache.Key  key = new ImageCache.Key(href, externalFileResolver, targetWidth, targetHeight, null);
+         ImageCache.Key  anySizeKey = new ImageCache.Key(href, externalFileResolver, ImageCache.ANY_SIZE, ImageCache.ANY_SIZE, null);
+         Bitmap  bitmap = (cache != null) ? cache.get(key) : null;
+         if (bitmap == null && cache != null) {
+            // A full size image loaded by prefetchExternalResources() will do
+            bitmap = cache.get(new ImageCache.Key(href, externalFileResolver, 0, 0, null));
+         }
+         if (bitmap == null && cache != null) {
+            // So will one loaded for a larger size. Resolvers that ignore the target size always return one of those.
+            bitmap = cache.get(anySizeKey);
+            if (bitmap != null && !isBigEnough(bitmap, neededWidth, neededHeight, positioning))
+               bitmap = null;
+         }
+         if (bitmap == null) {
+            if (statistics != null)
+               statistics.resolverCalls++;
+            bitmap = externalFileResolver.resolveImage(href, targetWidth, targetHeight);
+            if (bitmap != null && cache != null) {
+               // Keep just one copy of an image that is big enough for this size, and so for any smaller size
+               cache.put(isBigEnough(bitmap, neededWidth, neededHeight, positioning) ? anySizeKey : key, bitmap);
+            }
+         }
+         if (bitmap != null)
+            image = new LoadedImage(bitmap, new Box(0, 0, bitmap.getWidth(), bitmap.getHeight()), null);
+      }
+      return image;
+   }
+
+
+   /*
+    * Returns true if drawing the bitmap into a viewport of the given size (in device pixels) won't scale it up.
+    */
+   private static boolean  isBigEnough(Bitmap bitmap, int width, int height, PreserveAspectRatio positioning)
+   {
+      boolean  wideEnough = bitmap.getWidth() >= width;
+      boolean  tallEnough = bitmap.getHeight() >= height;
+      if (positioning.getAlignment() == PreserveAspectRatio.Alignment.none || positioning.getScale() == PreserveAspectRatio.Scale.slice)
+         return wideEnough && tallEnough;
+      // With "meet", the image is scaled until it fits in one dimension
+      return wideEnough || tallEnough;
+   }
+
+
    /*
     * Check for and decode an image encoded in a data URL.
     * We don't handle all permutations of data URLs. Only base64 ones.
     */
-   private Bitmap  checkForImageDataURL(String url)
+   private LoadedImage  loadDataURLImage(String url, ImageCache cache, int targetWidth, int targetHeight, PreserveAspectRatio positioning)
    {
-      if (!url.startsWith("data:"))
-         return null;
       if (url.length() < 14)
          return null;
 
       int  comma = url.indexOf(',');
       if (comma < 12) // "< 12"  test also covers not found (-1) case
          return null;
-      if (!";base64".equals(url.substring(comma-7, comma)))
+      if (!url.regionMatches(comma-7, ";base64", 0, 7))
          return null;
       try {
-         byte[]  imageData = Base64.decode(url.substring(comma+1), Base64.DEFAULT);  // throws IllegalArgumentException for bad data
-         return BitmapFactory.decodeByteArray(imageData, 0, imageData.length);
+         byte[]  imageData = null;
+
+         // Find out how big the image is, without decoding it
+         int[]  naturalSize = (cache != null) ? cache.getNaturalSize(url) : null;
+         if (naturalSize == null)
+         {
+            imageData = ImageCache.decodeBase64(url, comma+1);  // throws IllegalArgumentException for bad data
+            BitmapFactory.Options  bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(imageData, 0, imageData.length, bounds);
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+               error("Could not decode bad Data URL");
+               return null;
+            }
+            naturalSize = new int[] {bounds.outWidth, bounds.outHeight};
+            if (cache != null)
+               cache.putNaturalSize(url, naturalSize[0], naturalSize[1]);
+         }
+         int  naturalWidth = naturalSize[0];
+         int  naturalHeight = naturalSize[1];
+
+         int                    sampleSize = SVGExternalFileResolver.calculateSampleSize(naturalWidth, naturalHeight, targetWidth, targetHeight);
+         android.graphics.Rect  region = calculateDecodeRegion(naturalWidth, naturalHeight, sampleSize, positioning);
+
+         ImageCache.Key  key = new ImageCache.Key(url, null, naturalWidth / sampleSize, naturalHeight / sampleSize, region);
+         Bitmap  bitmap = (cache != null) ? cache.get(key) : null;
+         if (bitmap == null)
+         {
+            if (imageData == null)
+               imageData = ImageCache.decodeBase64(url, comma+1);
+            BitmapFactory.Options  options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            if (region != null) {
+               BitmapRegionDecoder  decoder = newRegionDecoder(imageData);
+               bitmap = decoder.decodeRegion(region, options);
+               decoder.recycle();
+            } else {
+               bitmap = BitmapFactory.decodeByteArray(imageData, 0, imageData.length, options);
+            }
+            if (bitmap == null)
+               return null;
+            if (cache != null)
+               cache.put(key, bitmap);
+         }
+
+         if (statistics != null) {
+            // Compared with decoding the whole image at full size (assuming ARGB_8888)
+            long  saved = (long) naturalWidth * naturalHeight * 4 - bitmap.getByteCount();
+            if (saved > 0)
+               statistics.imageBytesSaved += saved;
+         }
+         return new LoadedImage(bitmap, new Box(0, 0, naturalWidth, naturalHeight), region);
       } catch (Exception e) {
          Log.e(TAG, "Could not decode bad Data URL", e);
          return null;
@@ -2234,6 +3359,52 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * If most of a large image is clipped away, return the part that is visible, so that we
+    * only need to decode that part. Otherwise returns null.
+    */
+   private android.graphics.Rect  calculateDecodeRegion(int naturalWidth, int naturalHeight, int sampleSize, PreserveAspectRatio positioning)
+   {
+      if ((long) naturalWidth * naturalHeight < REGION_DECODE_MIN_PIXELS)
+         return null;
+
+      // Map the clip into the image's natural coordinates
+      android.graphics.Rect  clip = new android.graphics.Rect();
+      if (!canvas.getClipBounds(clip))
+         return null;
+      Matrix  imageTransform = calculateViewBoxTransform(state.viewPort, new Box(0, 0, naturalWidth, naturalHeight), positioning);
+      Matrix  inverse = new Matrix();
+      if (!imageTransform.invert(inverse))
+         return null;
+      RectF  visible = new RectF(clip);
+      inverse.mapRect(visible);
+
+      // Snap outwards to the grid
+      int  grid = REGION_DECODE_GRID * sampleSize;
+      int  left = Math.max(0, (int) Math.floor(visible.left / grid) * grid);
+      int  top = Math.max(0, (int) Math.floor(visible.top / grid) * grid);
+      int  right = Math.min(naturalWidth, (int) Math.ceil(visible.right / grid) * grid);
+      int  bottom = Math.min(naturalHeight, (int) Math.ceil(visible.bottom / grid) * grid);
+      if (left >= right || top >= bottom)
+         return null;
+
+      // Only worth it if at least half of the image is hidden
+      if ((long) (right - left) * (bottom - top) * 2 > (long) naturalWidth * naturalHeight)
+         return null;
+      return new android.graphics.Rect(left, top, right, bottom);
+   }
+
+
+   private static int  roundUpToPowerOfTwo(int value)
+   {
+      if (value <= 1)
+         return 1;
+      if (value > (1 << 30))
+         return value;
+      return Integer.highestOneBit(value - 1) << 1;
+   }
+
+
    private boolean  display()
    {
       if (state.style.display != null)
@@ -2337,6 +3508,38 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Returns the weight that results from applying a font-weight value to an inherited weight.
+    * Font weights are 0..1000
+    * Relative weight rules from CSS-Fonts-4: https://www.w3.org/TR/css-fonts-4/#relative-weights
+    */
+   static float  resolveFontWeight(float inheritedWeight, float fontWeight)
+   {
+      float fw = inheritedWeight;
+      if (fontWeight == Style.FONT_WEIGHT_LIGHTER)
+      {
+         if (fw >= 100f && fw < 550f)  // FIXME clamp instead of ignoring < 100
+            return 100f;
+         else if (fw >= 550f && fw < 750f)
+            return 400f;
+         else if (fw >= 750f)
+            return 700f;
+         return fw;
+      }
+      else if (fontWeight == Style.FONT_WEIGHT_BOLDER)
+      {
+         if (fw < 350f)
+            return 400f;
+         else if (fw >= 350f && fw < 550f)
+            return 700f;
+         else if (fw >= 550f && fw < 900f)
+            return 900f;
+         return fw;
+      }
+      return fontWeight;
+   }
+
+
    /*
     * Updates the global style state with the style defined by the current object.
     * Will also update the current paints etc where appropriate.
@@ -2514,28 +3717,7 @@ public class SVGAndroidRenderer
       {
          // Font weights are 0..1000
          // Relative weight rules from CSS-Fonts-4: https://www.w3.org/TR/css-fonts-4/#relative-weights
-         if (style.fontWeight == Style.FONT_WEIGHT_LIGHTER)
-         {
-            float fw = state.style.fontWeight;
-            if (fw >= 100f && fw < 550f)  // FIXME clamp instead of ignoring < 100
-               state.style.fontWeight = 100f;
-            else if (fw >= 550f && fw < 750f)
-               state.style.fontWeight = 400f;
-            else if (fw >= 750f)
-               state.style.fontWeight = 700f;
-         }
-         else if (style.fontWeight == Style.FONT_WEIGHT_BOLDER)
-         {
-            float fw = state.style.fontWeight;
-            if (fw < 350f)
-               state.style.fontWeight = 400f;
-            else if (fw >= 350f && fw < 550f)
-               state.style.fontWeight = 700f;
-            else if (fw >= 550f && fw < 900f)
-               state.style.fontWeight = 900f;
-         }
-         else
-            state.style.fontWeight = style.fontWeight;
+         state.style.fontWeight = resolveFontWeight(state.style.fontWeight, style.fontWeight);
       }
 
       if (isSpecified(style, Style.SPECIFIED_FONT_STYLE))
@@ -2784,6 +3966,24 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Returns true if fontName is one of the generic font families handled by checkGenericFont().
+    */
+   static boolean  isGenericFont(String fontName)
+   {
+      switch (fontName) {
+         case "serif":
+         case "sans-serif":
+         case "cursive":
+         case "fantasy":
+         case "monospace":
+            return true;
+         default:
+            return false;
+      }
+   }
+
+
    // Convert a float in range 0..1 to an int in range 0..255.
    private static int  clamp255(float val)
    {
@@ -2825,6 +4025,8 @@ public class SVGAndroidRenderer
       }
 
       canvas.clipRect(left, top, right, bottom);
+      if (statistics != null)
+         statistics.clipOperations++;
    }
 
 
@@ -2934,7 +4136,7 @@ public class SVGAndroidRenderer
     * we discovered that there are some arcs that fail due of a lack of precision. So we have switched back to doubles.
     */
 
-   private static void arcTo(float lastX, float lastY, float rx, float ry, float angle, boolean largeArcFlag, boolean sweepFlag, float x, float y, PathInterface pather)
+   static void arcTo(float lastX, float lastY, float rx, float ry, float angle, boolean largeArcFlag, boolean sweepFlag, float x, float y, PathInterface pather)
    {
       if (lastX == x && lastY == y) {
          // If the endpoints (x, y) and (x0, y0) are identical, then this
@@ -3131,7 +4333,7 @@ public class SVGAndroidRenderer
    //==============================================================================
 
 
-   private static class MarkerVector
+   static class MarkerVector
    {
       final float  x, y;
       float        dx = 0f, dy = 0f;
@@ -3149,6 +4351,15 @@ public class SVGAndroidRenderer
          }
       }
 
+      MarkerVector(MarkerVector copy)
+      {
+         this.x = copy.x;
+         this.y = copy.y;
+         this.dx = copy.dx;
+         this.dy = copy.dy;
+         this.isAmbiguous = copy.isAmbiguous;
+      }
+
       void add(float x, float y)
       {
          // In order to get accurate angles, we have to normalise
@@ -3346,6 +4557,58 @@ public class SVGAndroidRenderer
             error("Marker reference '%s' not found", state.style.markerEnd);
       }
 
+      List<MarkerVector>  markers = getMarkerPositions(obj);
+      if (markers == null)
+         return;
+
+      int  markerCount = markers.size();
+      if (markerCount == 0)
+         return;
+
+      traceBegin("SVG markers", obj);
+
+      // The style, layout and recording of a marker are the same at every vertex. So work them out once for each marker.
+      float  strokeWidth = state.style.strokeWidth.floatValue(dpi);
+      float  deviceScale = getDeviceScale();
+      ResolvedMarker  markerStart = null;
+      ResolvedMarker  markerMid = null;
+      ResolvedMarker  markerEnd = null;
+      if (_markerStart != null)
+         markerStart = resolveMarker(_markerStart, strokeWidth, deviceScale);
+      if (_markerMid != null && markers.size() > 2)
+         markerMid = (_markerMid == _markerStart) ? markerStart : resolveMarker(_markerMid, strokeWidth, deviceScale);
+      if (_markerEnd != null)
+         markerEnd = (_markerEnd == _markerStart) ? markerStart : (_markerEnd == _markerMid && markerMid != null) ? markerMid : resolveMarker(_markerEnd, strokeWidth, deviceScale);
+
+      // We don't want the markers to inherit themselves as markers, otherwise we get infinite recursion. 
+      state.style.markerStart = state.style.markerMid = state.style.markerEnd = null;
+
+      if (markerStart != null)
+         renderMarker(markerStart, markers.get(0));
+
+      if (markerMid != null)
+      {
+         for (int i=1; i<(markerCount-1); i++)
+            renderMarker(markerMid, markers.get(i));
+      }
+
+      if (markerEnd != null)
+         renderMarker(markerEnd, markers.get(markerCount - 1));
+
+      traceEnd();
+   }
+
+
+   /*
+    * Get the marker positions for an element.
+    * The positions of paths and polylines depend only on their geometry, so they are calculated
+    * once and cached on the element. A line's coordinates can be percentages, so they aren't cached.
+    */
+   private List<MarkerVector>  getMarkerPositions(GraphicsElement obj)
+   {
+      if (obj.markerPositions != null)
+         return obj.markerPositions;
+
       List<MarkerVector>  markers;
       if (obj instanceof SVGBase.Path)
          markers = (new MarkerPositionCalculator(((SVGBase.Path) obj).d)).getMarkers();
@@ -3355,36 +4618,39 @@ public class SVGAndroidRenderer
          markers = calculateMarkerPositions((PolyLine) obj);
 
       if (markers == null)
-         return;
+         return null;
+
+      realignMarkerMids(markers);
 
+      if (!(obj instanceof Line))
+         obj.markerPositions = markers;
+      return markers;
+   }
+
+
+   /*
+    * Resolve the direction of any ambiguous midpoint markers.
+    */
+   private void  realignMarkerMids(List<MarkerVector> markers)
+   {
       int  markerCount = markers.size();
-      if (markerCount == 0)
+      if (markerCount <= 2)
          return;
 
-      // We don't want the markers to inherit themselves as markers, otherwise we get infinite recursion. 
-      state.style.markerStart = state.style.markerMid = state.style.markerEnd = null;
-
-      if (_markerStart != null)
-         renderMarker(_markerStart, markers.get(0));
+      MarkerVector  lastPos = markers.get(0);
+      MarkerVector  thisPos = markers.get(1);
 
-      if (_markerMid != null && markers.size() > 2)
+      for (int i=1; i<(markerCount-1); i++)
       {
-         MarkerVector  lastPos = markers.get(0);
-         MarkerVector  thisPos = markers.get(1);
-
-         for (int i=1; i<(markerCount-1); i++)
-         {
-            MarkerVector  nextPos = markers.get(i + 1);
-            if (thisPos.isAmbiguous)
-               thisPos = realignMarkerMid(lastPos, thisPos, nextPos);
-            renderMarker(_markerMid, thisPos);
-            lastPos = thisPos;
-            thisPos = nextPos;
+         MarkerVector  nextPos = markers.get(i + 1);
+         if (thisPos.isAmbiguous) {
+            // Realign a copy, because the same vector may also be used for a start or end marker
+            thisPos = realignMarkerMid(lastPos, new MarkerVector(thisPos), nextPos);
+            markers.set(i, thisPos);
          }
+         lastPos = thisPos;
+         thisPos = nextPos;
       }
-
-      if (_markerEnd != null)
-         renderMarker(_markerEnd, markers.get(markerCount - 1));
    }
 
 
@@ -3424,39 +4690,81 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * Work out the parts of rendering a marker that don't depend on its position.
+    */
+   private ResolvedMarker  resolveMarker(Marker marker, float strokeWidth, float deviceScale)
+   {
+      float  unitsScale = marker.markerUnitsAreUser ? 1f : strokeWidth;
+
+      // "Properties inherit into the <marker> element from its ancestors; properties do not
+      // inherit from the element referencing the <marker> element." (sect 11.6.2)
+      RendererState  markerState = findInheritFromAncestorState(marker);
+
+      RendererState  savedState = state;
+      state = markerState;
+      MarkerLayout   layout = calculateMarkerLayout(marker);
+      // Record the content at the size it will be drawn, so that any bitmaps in it (eg. masks) are sharp
+      MarkerPicture  markerPicture = getMarkerPicture(marker, layout, unitsScale * deviceScale);
+      state = savedState;
+
+      return new ResolvedMarker(marker, markerState, unitsScale, layout, markerPicture);
+   }
+
+
    /*
     * Render the given marker type at the given position
     */
-   private void renderMarker(Marker marker, MarkerVector pos)
+   private void renderMarker(ResolvedMarker marker, MarkerVector pos)
    {
       float  angle = 0f;
-      float  unitsScale;
-
-      statePush();
 
       // Calculate vector angle
-      if (marker.orient != null)
+      if (marker.marker.orient != null)
       {
-         if (Float.isNaN(marker.orient))  // Indicates "auto"
+         if (Float.isNaN(marker.marker.orient))  // Indicates "auto"
          {
             if (pos.dx != 0 || pos.dy != 0) {
                angle = (float) Math.toDegrees( Math.atan2(pos.dy, pos.dx) );
             }
          } else {
-            angle = marker.orient;
+            angle = marker.marker.orient;
          }
       }
-      // Calculate units scale
-      unitsScale = marker.markerUnitsAreUser ? 1f : state.style.strokeWidth.floatValue(dpi);
-
-      // "Properties inherit into the <marker> element from its ancestors; properties do not
-      // inherit from the element referencing the <marker> element." (sect 11.6.2)
-      state = findInheritFromAncestorState(marker);
 
       Matrix m = new Matrix();
       m.preTranslate(pos.x, pos.y);
       m.preRotate(angle);
-      m.preScale(unitsScale, unitsScale);
+      m.preScale(marker.unitsScale, marker.unitsScale);
+
+      if (marker.picture != null)
+      {
+         // Replay the marker content that we recorded earlier
+         canvas.save();
+         canvas.concat(m);
+         canvas.translate(marker.picture.left, marker.picture.top);
+         canvas.scale(1f / marker.picture.scale, 1f / marker.picture.scale);
+         canvas.drawPicture(marker.picture.picture);
+         canvas.restore();
+      }
+      else
+      {
+         statePush();
+         state = new RendererState(marker.state);
+         canvas.concat(m);
+         renderMarkerContent(marker.marker, marker.layout);
+         statePop();
+      }
+   }
+
+
+   /*
+    * Calculate the position, scale and clip of the marker content, relative to the marker position.
+    */
+   private MarkerLayout  calculateMarkerLayout(Marker marker)
+   {
+      MarkerLayout  layout = new MarkerLayout();
+
       // Scale and/or translate the marker to fit in the marker viewPort
       float _refX = (marker.refX != null) ? marker.refX.floatValueX(this) : 0f;
       float _refY = (marker.refY != null) ? marker.refY.floatValueY(this) : 0f;
@@ -3482,8 +4790,8 @@ public class SVGAndroidRenderer
          }
 
          //m.preTranslate(viewPort.minX, viewPort.minY);
-         m.preTranslate(-_refX * xScale, -_refY * yScale);
-         canvas.concat(m);
+         layout.translateX = -_refX * xScale;
+         layout.translateY = -_refY * yScale;
 
          // Now we need to take account of alignment setting, because it affects the
          // size and position of the clip rectangle.
@@ -3525,34 +4833,200 @@ public class SVGAndroidRenderer
                break;
          }
 
-         if (!state.style.overflow) {
-            setClipRect(xOffset, yOffset, _markerWidth, _markerHeight);
-         }
+         layout.clip = new Box(xOffset, yOffset, _markerWidth, _markerHeight);
+         layout.scaleX = xScale;
+         layout.scaleY = yScale;
+      }
+      else
+      {
+         // No viewBox provided
+         layout.translateX = -_refX;
+         layout.translateY = -_refY;
+         layout.clip = new Box(0, 0, _markerWidth, _markerHeight);
+      }
+
+      if (state.style.overflow)
+         layout.clip = null;
+
+      return layout;
+   }
+
+
+   /*
+    * Render the children of a marker. The canvas should already be positioned at the marker position.
+    */
+   private void  renderMarkerContent(Marker marker, MarkerLayout layout)
+   {
+      canvas.translate(layout.translateX, layout.translateY);
+
+      if (layout.clip != null) {
+         setClipRect(layout.clip.minX, layout.clip.minY, layout.clip.width, layout.clip.height);
+      }
+
+      if (layout.scaleX != 1f || layout.scaleY != 1f)
+         canvas.scale(layout.scaleX, layout.scaleY);
+
+      boolean  compositing = pushLayer();
+
+      // Markers are not included in the bounding box of the element, so make the
+      // marker the render parent of its content.
+      renderChildren(marker, true);
+
+      if (compositing)
+         popLayer(marker);
+   }
+
+
+   /*
+    * Get a Picture containing the content of the given marker. The first time a marker is
+    * used, its content is recorded. Subsequent uses of that marker just replay that recording.
+    * Returns null if the marker content can't be recorded.
+    */
+   private MarkerPicture  getMarkerPicture(Marker marker, MarkerLayout layout, float scale)
+   {
+      // Without a clip, we can't be sure how big the marker is
+      if (layout.clip == null)
+         return null;
+      // Older versions of Android can't draw Pictures on hardware accelerated canvases
+      if (!SUPPORTS_HARDWARE_DRAW_PICTURE && canvas.isHardwareAccelerated())
+         return null;
+      // Display lists should contain the marker content, not an opaque Picture
+      if (recorder != null)
+         return null;
+
+      if (!(scale > 0f) || Float.isInfinite(scale))
+         return null;
+
+      MarkerCacheKey  key = new MarkerCacheKey(marker, getEffectiveViewPortInUserUnits(), scale);
+      if (markerCache == null) {
+         markerCache = new HashMap<>();
+      } else {
+         MarkerPicture  markerPicture = markerCache.get(key);
+         if (markerPicture != null)
+            return markerPicture;
+      }
+
+      // The area of the marker content relative to the marker position
+      float  left = layout.translateX + layout.clip.minX;
+      float  top = layout.translateY + layout.clip.minY;
+      int    width = (int) Math.ceil(layout.clip.width * scale);
+      int    height = (int) Math.ceil(layout.clip.height * scale);
+      if (width <= 0 || height <= 0)
+         return null;
+
+      Picture  picture = new Picture();
+      Canvas   pictureCanvas = picture.beginRecording(width, height);
+      pictureCanvas.scale(scale, scale);
+      pictureCanvas.translate(-left, -top);
+
+      Canvas  savedCanvas = canvas;
+      canvas = pictureCanvas;
+      statePush();
+      renderMarkerContent(marker, layout);
+      statePop();
+      canvas = savedCanvas;
+
+      picture.endRecording();
 
-         m.reset();
-         m.preScale(xScale, yScale);
-         canvas.concat(m);
-      }
-      else
+      MarkerPicture  markerPicture = new MarkerPicture(picture, left, top, scale);
+      markerCache.put(key, markerPicture);
+      return markerPicture;
+   }
+
+
+   /*
+    * Where a marker's content goes, relative to the marker position.
+    */
+   private static class  MarkerLayout
+   {
+      float  translateX;
+      float  translateY;
+      float  scaleX = 1f;
+      float  scaleY = 1f;
+      Box    clip;        // In translated, but unscaled, coordinates. Null if overflow is visible.
+   }
+
+
+   private static class  MarkerPicture
+   {
+      final Picture  picture;
+      final float    left;
+      final float    top;
+      final float    scale;   // The picture is this many times the size of the marker content
+
+      MarkerPicture(Picture picture, float left, float top, float scale)
       {
-         // No viewBox provided
+         this.picture = picture;
+         this.left = left;
+         this.top = top;
+         this.scale = scale;
+      }
+   }
 
-         m.preTranslate(-_refX, -_refY);
-         canvas.concat(m);
 
-         if (!state.style.overflow) {
-            setClipRect(0, 0, _markerWidth, _markerHeight);
-         }
+   /*
+    * A marker, along with the parts of rendering it that are the same at every vertex.
+    */
+   private static class  ResolvedMarker
+   {
+      final Marker         marker;
+      final RendererState  state;
+      final float          unitsScale;
+      final MarkerLayout   layout;
+      final MarkerPicture  picture;   // Null if the content has to be rendered at each vertex
+
+      ResolvedMarker(Marker marker, RendererState state, float unitsScale, MarkerLayout layout, MarkerPicture picture)
+      {
+         this.marker = marker;
+         this.state = state;
+         this.unitsScale = unitsScale;
+         this.layout = layout;
+         this.picture = picture;
       }
+   }
 
-      boolean  compositing = pushLayer();
 
-      renderChildren(marker, false);
+   /*
+    * Marker content can contain lengths that are percentages. So we need a different
+    * recording for each viewport. And for each scale, so that the recording is drawn at its natural size.
+    */
+   private static class  MarkerCacheKey
+   {
+      private final Marker  marker;
+      private final Box     viewPort;
+      private final float   scale;
+
+      MarkerCacheKey(Marker marker, Box viewPort, float scale)
+      {
+         this.marker = marker;
+         this.viewPort = (viewPort != null) ? new Box(viewPort) : null;
+         this.scale = scale;
+      }
 
-      if (compositing)
-         popLayer(marker);
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof MarkerCacheKey))
+            return false;
+         MarkerCacheKey  other = (MarkerCacheKey) o;
+         if (this.marker != other.marker || this.scale != other.scale)
+            return false;
+         if (this.viewPort == null || other.viewPort == null)
+            return this.viewPort == other.viewPort;
+         return this.viewPort.minX == other.viewPort.minX &&
+                this.viewPort.minY == other.viewPort.minY &&
+                this.viewPort.width == other.viewPort.width &&
+                this.viewPort.height == other.viewPort.height;
+      }
 
-      statePop();
+      @Override
+      public int  hashCode()
+      {
+         int  hash = 31 * System.identityHashCode(marker) + Float.floatToIntBits(scale);
+         if (viewPort != null)
+            hash = 31 * hash + Arrays.hashCode(new float[] {viewPort.minX, viewPort.minY, viewPort.width, viewPort.height});
+         return hash;
+      }
    }
 
 
@@ -3620,7 +5094,7 @@ public class SVGAndroidRenderer
     */
    private void  decodePaintReference(boolean isFill, Box boundingBox, PaintReference paintref)
    {
-      SvgObject  ref = document.resolveIRI(paintref.href);
+      SvgObject  ref = document.resolveIRI(paintref);
       if (ref == null)
       {
          error("%s reference '%s' not found", (isFill ? "Fill":"Stroke"), paintref.href);
@@ -3646,6 +5120,9 @@ public class SVGAndroidRenderer
 
    private void  makeLinearGradient(boolean isFill, Box boundingBox, SvgLinearGradient gradient)
    {
+      if (statistics != null)
+         statistics.gradientSetups++;
+
       if (gradient.href != null)
          fillInChainedGradientFields(gradient, gradient.href);
 
@@ -3756,6 +5233,9 @@ public class SVGAndroidRenderer
 
    private void  makeRadialGradient(boolean isFill, Box boundingBox, SvgRadialGradient gradient)
    {
+      if (statistics != null)
+         statistics.gradientSetups++;
+
       if (gradient.href != null)
          fillInChainedGradientFields(gradient, gradient.href);
 
@@ -4037,17 +5517,22 @@ public class SVGAndroidRenderer
       if (state.style.clipPath == null)
          return;
 
+      traceBegin("SVG clip path", (tracer != null) ? document.resolveIRI(state.style.clipPath) : null);
       if (SUPPORTS_PATH_OP)
       {
          // KitKat introduced Path.Op which allows us to do boolean operations on Paths
          Path  combinedPath = calculateClipPath(obj, boundingBox);
-         if (combinedPath != null)
-           canvas.clipPath(combinedPath);
+         if (combinedPath != null) {
+            canvas.clipPath(combinedPath);
+            if (statistics != null)
+               statistics.clipOperations++;
+         }
       }
       else
       {
          checkForClipPath_OldStyle(obj, boundingBox);
       }
+      traceEnd();
    }
 
 
@@ -4177,7 +5662,7 @@ public class SVGAndroidRenderer
          if (obj instanceof SVGBase.Path)
          {
             SVGBase.Path  pathElem = (SVGBase.Path) obj;
-            path = (new PathConverter(pathElem.d)).getPath();
+            path = buildPath(pathElem.d);
             if (obj.boundingBox == null)
                obj.boundingBox = calculatePathBounds(path);
          }
@@ -4259,6 +5744,8 @@ public class SVGAndroidRenderer
       // An empty clipping path will completely clip away the element (sect 14.3.5).
       if (clipPath.children.isEmpty()) {
          canvas.clipRect(0, 0, 0, 0);
+         if (statistics != null)
+            statistics.clipOperations++;
          return;
       }
 
@@ -4295,6 +5782,8 @@ public class SVGAndroidRenderer
          addObjectToClip(child, true, combinedPath, new Matrix());
       }
       canvas.clipPath(combinedPath);
+      if (statistics != null)
+         statistics.clipOperations++;
 
       clipStatePop();
    }
@@ -4372,7 +5861,7 @@ public class SVGAndroidRenderer
       if (obj.transform != null)
          combinedPathMatrix.preConcat(obj.transform);
 
-      Path  path = (new PathConverter(obj.d)).getPath();
+      Path  path = buildPath(obj.d);
 
       if (obj.boundingBox == null) {
          obj.boundingBox = calculatePathBounds(path);
@@ -4534,7 +6023,45 @@ public class SVGAndroidRenderer
    //==============================================================================
 
 
+   /*
+    * Convert a path definition to an Android Path.
+    */
+   private Path  buildPath(PathDefinition pathDef)
+   {
+      if (statistics == null)
+         return (new PathConverter(pathDef)).getPath();
+
+      long  startTime = System.nanoTime();
+      Path  path = (new PathConverter(pathDef)).getPath();
+      statistics.pathsBuilt++;
+      statistics.geometryTime += System.nanoTime() - startTime;
+      return path;
+   }
+
+
+   /*
+    * Get the Path for a simple shape. It is built the first time it is needed.
+    */
+   private Path  getShapePath(PrimitiveShape shape)
+   {
+      if (statistics == null || shape.path != null)
+         return shape.getPath();
+
+      long  startTime = System.nanoTime();
+      Path  path = shape.getPath();
+      statistics.pathsBuilt++;
+      statistics.geometryTime += System.nanoTime() - startTime;
+      return path;
+   }
+
+
    private Path  makePathAndBoundingBox(Line obj)
+   {
+      return getShapePath(makeShapeAndBoundingBox(obj));
+   }
+
+
+   private PrimitiveShape  makeShapeAndBoundingBox(Line obj)
    {
       float x1 = (obj.x1 == null) ? 0 : obj.x1.floatValueX(this);
       float y1 = (obj.y1 == null) ? 0 : obj.y1.floatValueY(this);
@@ -4545,14 +6072,17 @@ public class SVGAndroidRenderer
          obj.boundingBox = new Box(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2-x1), Math.abs(y2-y1));
       }
 
-      Path  p = new Path();
-      p.moveTo(x1, y1);
-      p.lineTo(x2, y2);
-      return p;
+      return new PrimitiveShape(PrimitiveShape.LINE, x1, y1, x2, y2, 0f, 0f);
    }
 
 
    private Path  makePathAndBoundingBox(Rect obj)
+   {
+      return getShapePath(makeShapeAndBoundingBox(obj));
+   }
+
+
+   private PrimitiveShape  makeShapeAndBoundingBox(Rect obj)
    {
       float x, y, w, h, rx, ry;
 
@@ -4578,109 +6108,195 @@ public class SVGAndroidRenderer
          obj.boundingBox = new Box(x, y, w, h);
       }
 
-      float  right = x + w;
-      float  bottom = y + h;
-
-      Path  p = new Path();
       if (rx == 0 || ry == 0)
-      {
-         // Simple rect
-         p.moveTo(x, y);
-         p.lineTo(right, y);
-         p.lineTo(right, bottom);
-         p.lineTo(x, bottom);
-         p.lineTo(x, y);
-      }
+         return new PrimitiveShape(PrimitiveShape.RECT, x, y, x + w, y + h, 0f, 0f);
       else
-      {
-         // Rounded rect
-         
-         // Bezier control point lengths for a 90 degree arc
-         float  cpx = rx * BEZIER_ARC_FACTOR;
-         float  cpy = ry * BEZIER_ARC_FACTOR;
-
-         p.moveTo(x, y+ry);
-         p.cubicTo(x, y+ry-cpy, x+rx-cpx, y, x+rx, y);
-         p.lineTo(right-rx, y);
-         p.cubicTo(right-rx+cpx, y, right, y+ry-cpy, right, y+ry);
-         p.lineTo(right, bottom-ry);
-         p.cubicTo(right, bottom-ry+cpy, right-rx+cpx, bottom, right-rx, bottom);
-         p.lineTo(x+rx, bottom);
-         p.cubicTo(x+rx-cpx, bottom, x, bottom-ry+cpy, x, bottom-ry);
-         p.lineTo(x, y+ry);
-      }
-      p.close();
-      return p;
+         return new PrimitiveShape(PrimitiveShape.ROUND_RECT, x, y, x + w, y + h, rx, ry);
    }
 
 
    private Path makePathAndBoundingBox(Circle obj)
+   {
+      return getShapePath(makeShapeAndBoundingBox(obj));
+   }
+
+
+   private PrimitiveShape  makeShapeAndBoundingBox(Circle obj)
    {
       float  cx = (obj.cx != null) ? obj.cx.floatValueX(this) : 0f;
       float  cy = (obj.cy != null) ? obj.cy.floatValueY(this) : 0f;
       float  r = obj.r.floatValue(this);
 
-      float  left = cx - r;
-      float  top = cy - r;
-      float  right = cx + r;
-      float  bottom = cy + r;
-
       if (obj.boundingBox == null) {
-         obj.boundingBox = new Box(left, top, r*2, r*2);
+         obj.boundingBox = new Box(cx - r, cy - r, r*2, r*2);
       }
 
-      float  cp = r * BEZIER_ARC_FACTOR;
-
-      Path  p = new Path();
-      p.moveTo(cx, top);
-      p.cubicTo(cx+cp, top, right, cy-cp, right, cy);
-      p.cubicTo(right, cy+cp, cx+cp, bottom, cx, bottom);
-      p.cubicTo(cx-cp, bottom, left, cy+cp, left, cy);
-      p.cubicTo(left, cy-cp, cx-cp, top, cx, top);
-      p.close();
-      return p;
+      return new PrimitiveShape(PrimitiveShape.CIRCLE, cx, cy, r, r);
    }
 
 
    private Path makePathAndBoundingBox(Ellipse obj)
+   {
+      return getShapePath(makeShapeAndBoundingBox(obj));
+   }
+
+
+   private PrimitiveShape  makeShapeAndBoundingBox(Ellipse obj)
    {
       float  cx = (obj.cx != null) ? obj.cx.floatValueX(this) : 0f;
       float  cy = (obj.cy != null) ? obj.cy.floatValueY(this) : 0f;
       float  rx = obj.rx.floatValueX(this);
       float  ry = obj.ry.floatValueY(this);
 
-      float  left = cx - rx;
-      float  top = cy - ry;
-      float  right = cx + rx;
-      float  bottom = cy + ry;
-
       if (obj.boundingBox == null) {
-         obj.boundingBox = new Box(left, top, rx*2, ry*2);
+         obj.boundingBox = new Box(cx - rx, cy - ry, rx*2, ry*2);
+      }
+
+      return new PrimitiveShape(PrimitiveShape.OVAL, cx, cy, rx, ry);
+   }
+
+
+   /*
+    * The geometry of a line, rect, circle or ellipse. These can be drawn with the Canvas primitive
+    * drawing methods, which are faster than drawPath(). The Path is only built if something needs it.
+    */
+   private static class PrimitiveShape
+   {
+      static final int  LINE = 0;
+      static final int  RECT = 1;
+      static final int  ROUND_RECT = 2;
+      static final int  CIRCLE = 3;
+      static final int  OVAL = 4;
+
+      final int    kind;
+      final float  left, top, right, bottom;   // For a line: x1, y1, x2, y2
+      final float  rx, ry;
+      final float  cx, cy;                     // Only used for circles and ovals
+      private Path  path = null;
+
+
+      PrimitiveShape(int kind, float left, float top, float right, float bottom, float rx, float ry)
+      {
+         this.kind = kind;
+         this.left = left;
+         this.top = top;
+         this.right = right;
+         this.bottom = bottom;
+         this.rx = rx;
+         this.ry = ry;
+         this.cx = (left + right) / 2f;
+         this.cy = (top + bottom) / 2f;
+      }
+
+
+      PrimitiveShape(int kind, float cx, float cy, float rx, float ry)
+      {
+         this.kind = kind;
+         this.left = cx - rx;
+         this.top = cy - ry;
+         this.right = cx + rx;
+         this.bottom = cy + ry;
+         this.rx = rx;
+         this.ry = ry;
+         this.cx = cx;
+         this.cy = cy;
+      }
+
+
+      void  draw(Canvas canvas, Paint paint)
+      {
+         switch (kind)
+         {
+            case LINE:
+               canvas.drawLine(left, top, right, bottom, paint);
+               break;
+            case RECT:
+               canvas.drawRect(left, top, right, bottom, paint);
+               break;
+            case ROUND_RECT:
+               canvas.drawRoundRect(new RectF(left, top, right, bottom), rx, ry, paint);
+               break;
+            case CIRCLE:
+               canvas.drawCircle(cx, cy, rx, paint);
+               break;
+            default:
+               canvas.drawOval(new RectF(left, top, right, bottom), paint);
+               break;
+         }
       }
 
-      float  cpx = rx * BEZIER_ARC_FACTOR;
-      float  cpy = ry * BEZIER_ARC_FACTOR;
 
-      Path  p = new Path();
-      p.moveTo(cx, top);
-      p.cubicTo(cx+cpx, top, right, cy-cpy, right, cy);
-      p.cubicTo(right, cy+cpy, cx+cpx, bottom, cx, bottom);
-      p.cubicTo(cx-cpx, bottom, left, cy+cpy, left, cy);
-      p.cubicTo(left, cy-cpy, cx-cpx, top, cx, top);
-      p.close();
-      return p;
+      Path  getPath()
+      {
+         if (path != null)
+            return path;
+
+         Path  p = new Path();
+         switch (kind)
+         {
+            case LINE:
+               p.moveTo(left, top);
+               p.lineTo(right, bottom);
+               break;
+
+            case RECT:
+               p.moveTo(left, top);
+               p.lineTo(right, top);
+               p.lineTo(right, bottom);
+               p.lineTo(left, bottom);
+               p.lineTo(left, top);
+               p.close();
+               break;
+
+            case ROUND_RECT:
+            {
+               // Bezier control point lengths for a 90 degree arc
+               float  cpx = rx * BEZIER_ARC_FACTOR;
+               float  cpy = ry * BEZIER_ARC_FACTOR;
+
+               p.moveTo(left, top+ry);
+               p.cubicTo(left, top+ry-cpy, left+rx-cpx, top, left+rx, top);
+               p.lineTo(right-rx, top);
+               p.cubicTo(right-rx+cpx, top, right, top+ry-cpy, right, top+ry);
+               p.lineTo(right, bottom-ry);
+               p.cubicTo(right, bottom-ry+cpy, right-rx+cpx, bottom, right-rx, bottom);
+               p.lineTo(left+rx, bottom);
+               p.cubicTo(left+rx-cpx, bottom, left, bottom-ry+cpy, left, bottom-ry);
+               p.lineTo(left, top+ry);
+               p.close();
+               break;
+            }
+
+            default:   // CIRCLE and OVAL
+            {
+               float  cpx = rx * BEZIER_ARC_FACTOR;
+               float  cpy = ry * BEZIER_ARC_FACTOR;
+
+               p.moveTo(cx, top);
+               p.cubicTo(cx+cpx, top, right, cy-cpy, right, cy);
+               p.cubicTo(right, cy+cpy, cx+cpx, bottom, cx, bottom);
+               p.cubicTo(cx-cpx, bottom, left, cy+cpy, left, cy);
+               p.cubicTo(left, cy-cpy, cx-cpx, top, cx, top);
+               p.close();
+               break;
+            }
+         }
+         path = p;
+         return path;
+      }
    }
 
 
    private Path makePathAndBoundingBox(PolyLine obj)
    {
-      Path  path = new Path();
-
       int  numPoints = (obj.points != null) ? obj.points.length : 0;
       // Odd number of points is an error
       if (numPoints % 2 != 0)
          return null;
 
+      long  startTime = (statistics != null) ? System.nanoTime() : 0;
+      Path  path = new Path();
+
       if (numPoints > 0)
       {
          int  i = 0;
@@ -4697,6 +6313,11 @@ public class SVGAndroidRenderer
             path.close();
       }
 
+      if (statistics != null) {
+         statistics.pathsBuilt++;
+         statistics.geometryTime += System.nanoTime() - startTime;
+      }
+
       if (obj.boundingBox == null) {
          obj.boundingBox = calculatePathBounds(path);
       }
@@ -4747,6 +6368,9 @@ public class SVGAndroidRenderer
     */
    private void  fillWithPattern(SvgElement obj, Path path, Pattern pattern)
    {
+      if (statistics != null)
+         statistics.patternSetups++;
+
       boolean      patternUnitsAreUser = (pattern.patternUnitsAreUser != null && pattern.patternUnitsAreUser);
       float        x, y, w, h;
       float        originX, originY;
@@ -4784,6 +6408,8 @@ public class SVGAndroidRenderer
       statePush();
       // Set path as the clip region
       canvas.clipPath(path);
+      if (statistics != null)
+         statistics.clipOperations++;
 
       // Set the style for the pattern (inherits from its own ancestors, not from callee's state)
       RendererState  baseState = new RendererState();
@@ -4864,7 +6490,7 @@ public class SVGAndroidRenderer
 
             // Render the pattern
             for (SvgObject child: pattern.children) {
-               render(child);
+               renderUnbatched(child);
             }
 
             // Pop the state
@@ -4938,37 +6564,230 @@ public class SVGAndroidRenderer
 
 
    /*
-    * Render the contents of a mask element.
+    * Composite the content in the current layer with the given mask.
+    * The mask is applied using Porter Duff mode DST_IN.
     */
-   private void  renderMask(Mask mask, SvgElement obj, Box originalObjBBox)
+   private void  applyMask(Mask mask, SvgElement obj, Box originalObjBBox)
    {
-      debug("Mask render");
+      if (statistics != null)
+         statistics.maskSetups++;
+      traceBegin("SVG mask", mask);
+
+      MaskLayer  maskLayer = getMaskLayer(mask, obj, originalObjBBox);
+
+      initialiseMaskPaints();
+
+      // Mask layers are in device space
+      canvas.save();
+      canvas.setMatrix(new Matrix());
+
+      float  canvasWidth = canvas.getWidth();
+      float  canvasHeight = canvas.getHeight();
+
+      if (maskLayer == null)
+      {
+         // Mask region is empty, or is not visible. So everything is masked out.
+         canvas.drawRect(0, 0, canvasWidth, canvasHeight, maskClearPaint);
+      }
+      else
+      {
+         float  left = maskLayer.left;
+         float  top = maskLayer.top;
+         float  right = left + maskLayer.alpha.getWidth();
+         float  bottom = top + maskLayer.alpha.getHeight();
+
+         canvas.drawBitmap(maskLayer.alpha, left, top, maskDstInPaint);
+
+         // Anything outside the mask region is masked out
+         if (top > 0)
+            canvas.drawRect(0, 0, canvasWidth, top, maskClearPaint);
+         if (bottom < canvasHeight)
+            canvas.drawRect(0, bottom, canvasWidth, canvasHeight, maskClearPaint);
+         if (left > 0)
+            canvas.drawRect(0, top, left, bottom, maskClearPaint);
+         if (right < canvasWidth)
+            canvas.drawRect(right, top, canvasWidth, bottom, maskClearPaint);
+      }
+
+      canvas.restore();
+      traceEnd();
+   }
+
+
+   /*
+    * Composite the content in the current layer with the given mask, without leaving vector space.
+    * Slower than applyMask(), because the mask content is rendered twice every time, into layers.
+    * Used when recording a Picture.
+    */
+   private void  applyLayerMask(Mask mask, SvgElement obj, Box originalObjBBox)
+   {
+      if (statistics != null)
+         statistics.maskSetups++;
+      traceBegin("SVG mask", mask);
+
+      initialiseMaskPaints();
+
+      // The final mask gets composited with the content using DST_IN. If nothing is drawn into it, everything is masked out.
+      canvasSaveLayer(canvas, null, maskDstInPaint);
+
+      Box  region = calculateMaskRegion(mask, originalObjBBox);
+      if (region != null)
+      {
+         canvas.clipRect(region.minX, region.minY, region.maxX(), region.maxY());
+
+         // Step 1: Apply a luminanceToAlpha conversion to the mask content
+         canvasSaveLayer(canvas, null, maskLuminancePaint);
+         renderMask(mask, obj, originalObjBBox);
+         canvas.restore();
+
+         // Step 2: Multiply the mask content's alpha into the alpha channel generated in step 1
+         canvasSaveLayer(canvas, null, maskDstInPaint);
+         renderMask(mask, obj, originalObjBBox);
+         canvas.restore();
+      }
+
+      canvas.restore();
+      traceEnd();
+   }
+
+
+   /*
+    * Get the alpha mask for the given mask element, in device space.
+    *
+    * The mask content is rendered once, then converted to an alpha mask in two steps:
+    * Step 1: Apply a luminanceToAlpha conversion to the mask content.
+    * Step 2: Multiply the mask content's alpha into the alpha channel generated in step 1.
+    *
+    * The result is cached, so that other elements that use the same mask, with the same
+    * transform and bounding box, can reuse it.
+    */
+   private MaskLayer  getMaskLayer(Mask mask, SvgElement obj, Box originalObjBBox)
+   {
+      Box  region = calculateMaskRegion(mask, originalObjBBox);
+      if (region == null)
+         return null;
+
+      boolean  maskContentUnitsAreUser = (mask.maskContentUnitsAreUser == null || mask.maskContentUnitsAreUser);
+      Matrix   matrix = canvas.getMatrix();
+
+      MaskCacheKey  key = new MaskCacheKey(mask, matrix, region, getEffectiveViewPortInUserUnits(),
+                                           maskContentUnitsAreUser ? null : originalObjBBox);
+      if (maskCache == null) {
+         maskCache = new HashMap<>();
+      } else if (maskCache.containsKey(key)) {
+         return maskCache.get(key);
+      }
 
-      boolean      maskUnitsAreUser = (mask.maskUnitsAreUser != null && mask.maskUnitsAreUser);
-      float        w, h;
+      MaskLayer  maskLayer = null;
+
+      // Work out which part of the canvas is covered by the mask region
+      RectF  bounds = new RectF(region.minX, region.minY, region.maxX(), region.maxY());
+      matrix.mapRect(bounds);
+      if (bounds.intersect(0, 0, canvas.getWidth(), canvas.getHeight()))
+      {
+         int  left = (int) Math.floor(bounds.left);
+         int  top = (int) Math.floor(bounds.top);
+         int  width = (int) Math.ceil(bounds.right) - left;
+         int  height = (int) Math.ceil(bounds.bottom) - top;
+
+         if (width > 0 && height > 0)
+         {
+            initialiseMaskPaints();
+
+            // Render the mask content
+            Bitmap  content = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas  contentCanvas = new Canvas(content);
+            matrix.postTranslate(-left, -top);
+            contentCanvas.setMatrix(matrix);
+            contentCanvas.clipRect(region.minX, region.minY, region.maxX(), region.maxY());
+
+            Canvas  savedCanvas = canvas;
+            canvas = contentCanvas;
+            renderMask(mask, obj, originalObjBBox);
+            canvas = savedCanvas;
+
+            // Steps 1 and 2
+            Bitmap  alpha = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            Canvas  alphaCanvas = new Canvas(alpha);
+            alphaCanvas.drawBitmap(content, 0, 0, maskLuminancePaint);
+            alphaCanvas.drawBitmap(content, 0, 0, maskDstInPaint);
+            content.recycle();
+
+            maskLayer = new MaskLayer(alpha, left, top);
+         }
+      }
+
+      maskCache.put(key, maskLayer);
+      return maskLayer;
+   }
+
+
+   /*
+    * Calculate the mask region (ie. the area defined by the x, y, width and height attributes) in user space.
+    * Returns null if the region is empty.
+    */
+   private Box  calculateMaskRegion(Mask mask, Box originalObjBBox)
+   {
+      boolean  maskUnitsAreUser = (mask.maskUnitsAreUser != null && mask.maskUnitsAreUser);
+      float    x, y, w, h;
 
       if (maskUnitsAreUser)
       {
-         w = (mask.width != null) ? mask.width.floatValueX(this): originalObjBBox.width;
-         h = (mask.height != null) ? mask.height.floatValueY(this): originalObjBBox.height;
-         //x = (mask.x != null) ? mask.x.floatValueX(this): (float)(obj.boundingBox.minX - 0.1 * obj.boundingBox.width);
-         //y = (mask.y != null) ? mask.y.floatValueY(this): (float)(obj.boundingBox.minY - 0.1 * obj.boundingBox.height);
+         x = (mask.x != null) ? mask.x.floatValueX(this): new Length(-10f, Unit.percent).floatValueX(this);
+         y = (mask.y != null) ? mask.y.floatValueY(this): new Length(-10f, Unit.percent).floatValueY(this);
+         w = (mask.width != null) ? mask.width.floatValueX(this): new Length(120f, Unit.percent).floatValueX(this);
+         h = (mask.height != null) ? mask.height.floatValueY(this): new Length(120f, Unit.percent).floatValueY(this);
       }
       else
       {
+         // An objectBoundingBox mask on an element with no bounding box masks out everything
+         if (originalObjBBox == null)
+            return null;
          // Convert objectBoundingBox space to user space
-         //x = (mask.x != null) ? mask.x.floatValue(this, 1f): -0.1f;
-         //y = (mask.y != null) ? mask.y.floatValue(this, 1f): -0.1f;
+         x = (mask.x != null) ? mask.x.floatValue(this, 1f): -0.1f;
+         y = (mask.y != null) ? mask.y.floatValue(this, 1f): -0.1f;
          w = (mask.width != null) ? mask.width.floatValue(this, 1f): 1.2f;
          h = (mask.height != null) ? mask.height.floatValue(this, 1f): 1.2f;
-         //x = originalObjBBox.minX + x * originalObjBBox.width;
-         //y = originalObjBBox.minY + y * originalObjBBox.height;
+         x = originalObjBBox.minX + x * originalObjBBox.width;
+         y = originalObjBBox.minY + y * originalObjBBox.height;
          w *= originalObjBBox.width;
          h *= originalObjBBox.height;
       }
-      if (w == 0 || h == 0)
+      if (w <= 0 || h <= 0)
+         return null;
+
+      return new Box(x, y, w, h);
+   }
+
+
+   private void  initialiseMaskPaints()
+   {
+      if (maskDstInPaint != null)
          return;
 
+      // ColorFilter that does the SVG luminanceToAlpha conversion
+      ColorMatrix  luminanceToAlpha = new ColorMatrix(new float[] {0,       0,       0,       0, 0,
+                                                                   0,       0,       0,       0, 0,
+                                                                   0,       0,       0,       0, 0,
+                                                                   SVGAndroidRenderer.LUMINANCE_TO_ALPHA_RED, SVGAndroidRenderer.LUMINANCE_TO_ALPHA_GREEN, SVGAndroidRenderer.LUMINANCE_TO_ALPHA_BLUE, 0, 0});
+      maskLuminancePaint = new Paint();
+      maskLuminancePaint.setColorFilter(new ColorMatrixColorFilter(luminanceToAlpha));
+
+      maskDstInPaint = new Paint();
+      maskDstInPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
+
+      maskClearPaint = new Paint();
+      maskClearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+   }
+
+
+   /*
+    * Render the contents of a mask element.
+    */
+   private void  renderMask(Mask mask, SvgElement obj, Box originalObjBBox)
+   {
+      debug("Mask render");
+
       // Push the state
       statePush();
 
@@ -4989,8 +6808,9 @@ public class SVGAndroidRenderer
          canvas.scale(originalObjBBox.width, originalObjBBox.height);
       }
 
-      // Render the mask
-      renderChildren(mask, false);
+      // Render the mask. The mask is made the render parent, so that its content doesn't
+      // contribute to the bounding box of the element being masked.
+      renderChildren(mask, true);
 
       // Restore the matrix so that, if this mask has a mask, it is not affected by the objectBoundingBox transform
       canvas.restore();
@@ -5003,4 +6823,70 @@ public class SVGAndroidRenderer
    }
 
 
+   /*
+    * A mask that has been rendered to an alpha bitmap, and its position on the canvas.
+    */
+   private static class  MaskLayer
+   {
+      final Bitmap  alpha;
+      final int     left;
+      final int     top;
+
+      MaskLayer(Bitmap alpha, int left, int top)
+      {
+         this.alpha = alpha;
+         this.left = left;
+         this.top = top;
+      }
+   }
+
+
+   /*
+    * The things that determine what a rendered mask looks like.
+    */
+   private static class  MaskCacheKey
+   {
+      private final Mask     mask;
+      private final float[]  values;
+      private final int      hash;
+
+      MaskCacheKey(Mask mask, Matrix matrix, Box region, Box viewPort, Box objBBox)
+      {
+         this.mask = mask;
+         this.values = new float[(objBBox != null) ? 21 : 17];
+         matrix.getValues(this.values);
+         setBox(9, region);
+         setBox(13, viewPort);
+         if (objBBox != null)
+            setBox(17, objBBox);
+         this.hash = 31 * System.identityHashCode(mask) + Arrays.hashCode(values);
+      }
+
+      private void  setBox(int offset, Box box)
+      {
+         if (box == null)
+            return;
+         values[offset] = box.minX;
+         values[offset + 1] = box.minY;
+         values[offset + 2] = box.width;
+         values[offset + 3] = box.height;
+      }
+
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof MaskCacheKey))
+            return false;
+         MaskCacheKey  other = (MaskCacheKey) o;
+         return this.mask == other.mask && Arrays.equals(this.values, other.values);
+      }
+
+      @Override
+      public int  hashCode()
+      {
+         return hash;
+      }
+   }
+
+
 }
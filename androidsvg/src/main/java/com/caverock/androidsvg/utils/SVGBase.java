@@ -23,12 +23,14 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Picture;
 import android.graphics.RectF;
+import android.graphics.Typeface;
 import android.util.Log;
 
 import com.caverock.androidsvg.PreserveAspectRatio;
 import com.caverock.androidsvg.RenderOptions;
 import com.caverock.androidsvg.SVGExternalFileResolver;
 import com.caverock.androidsvg.SVGParseException;
+import com.caverock.androidsvg.SVGTracer;
 import com.caverock.androidsvg.utils.CSSParser.Ruleset;
 
 import java.io.ByteArrayInputStream;
@@ -38,9 +40,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * AndroidSVG is a library for reading, parsing and rendering SVG documents on Android devices.
@@ -109,9 +114,35 @@ public class SVGBase
 
    // CSS rules
    private final Ruleset  cssRules = new Ruleset();
+   // Shared stylesheets attached with addStylesheet()
+   private final List<Ruleset>  stylesheets = new ArrayList<>();
 
-   // Map from id attribute to element
-   private final Map<String, SvgElementBase> idToElementMap = new HashMap<>();
+   // Indexes of the elements in the document. Built by the parser as elements are added to the tree.
+   private final Map<String, SvgElementBase>        idToElementMap = new HashMap<>();
+   private final Map<String, List<SvgElementBase>>  classToElementsMap = new HashMap<>();
+   private final Map<String, List<SvgElementBase>>  tagToElementsMap = new HashMap<>();
+
+   // Map from IRI reference (eg. "url(#foo)" contents) to the referenced object.
+   // Populated by linkReferences(), so that the renderer doesn't have to parse IRIs.
+   private final Map<String, SvgObject>  linkedReferences = new HashMap<>();
+   // The objects that the fill and stroke PaintReferences in the document's own elements and stylesheets
+   // resolve to. Populated by linkReferences(). PaintReferences from elsewhere (shared stylesheets, RenderOptions
+   // CSS) are resolved by href instead, so that this doesn't grow with every new RenderOptions.
+   private final Map<PaintReference, SvgObject>  linkedPaints = new IdentityHashMap<>();
+
+   // The fonts chosen by the renderer for each combination of font properties
+   final TypefaceCache  typefaceCache = new TypefaceCache();
+
+   // Fonts loaded by prefetchExternalResources(), keyed by ResourcePrefetcher.fontKey(). Null values are fonts that weren't found.
+   final Map<String, Typeface>  prefetchedFonts = Collections.synchronizedMap(new HashMap<String, Typeface>());
+
+   // The Bitmaps decoded for <image> elements. Not used if there is a shared image cache.
+   private final ImageCache  imageCache = new ImageCache(ImageCache.DEFAULT_MAX_BYTES);
+   // An image cache shared by all documents. Null unless turned on with setSharedImageCacheSize().
+   private static volatile ImageCache  sharedImageCache = null;
+
+   // Told about the phases of each parse and render. Never null.
+   private static volatile SVGTracer  tracer = SVGTracer.NONE;
 
 
    enum Unit
@@ -356,6 +387,85 @@ public class SVGBase
 
 
 
+   /**
+    * Load the external images and fonts used by this document, in the background, so that
+    * rendering it won't have to wait for them.
+    * <p>
+    * The document is scanned for the images and fonts it references.  They are then requested
+    * from the {@link SVGExternalFileResolver} in parallel, using the supplied {@code Executor}.
+    * The results are kept with the document, and used by later renders.  Images are kept in the
+    * document's image cache, so large images may be dropped again if they don't all fit.
+    * <p>
+    * External CSS stylesheets don't need prefetching, because they are loaded during parsing.
+    *
+    * @param executor the executor that will run the resolver requests.  For example a thread pool.
+    * @return a Future that completes when all the requests have finished.
+    * @throws IllegalArgumentException if executor is null
+    * @since 1.5
+    */
+   @SuppressWarnings("unused")
+   public Future<Void>  prefetchExternalResources(Executor executor)
+   {
+      if (executor == null)
+         throw new IllegalArgumentException("executor cannot be null");
+      return new ResourcePrefetcher(this).start(executor);
+   }
+
+
+   /**
+    * Turn on an image cache that is shared by all documents, and set its maximum size.
+    * <p>
+    * Normally, each document keeps its own cache of the images it has decoded.  A shared
+    * cache is useful when several documents use the same images, and puts a single limit on the
+    * memory used by them.  Pass 0 to go back to using a cache per document.
+    *
+    * @param maxBytes the maximum total size, in bytes, of the Bitmaps in the shared cache.
+    * @throws IllegalArgumentException if maxBytes is negative
+    * @since 1.5
+    */
+   @SuppressWarnings("unused")
+   public static void  setSharedImageCacheSize(int maxBytes)
+   {
+      if (maxBytes < 0)
+         throw new IllegalArgumentException("Invalid cache size");
+      sharedImageCache = (maxBytes > 0) ? new ImageCache(maxBytes) : null;
+   }
+
+
+   ImageCache  getImageCache()
+   {
+      ImageCache  shared = sharedImageCache;
+      return (shared != null) ? shared : imageCache;
+   }
+
+
+   /**
+    * Set the {@link SVGTracer} that will be told when each phase of parsing and rendering
+    * starts and finishes.
+    * <p>
+    * This applies to all documents, and to any parse or render that starts after it is called.
+    * Pass null to turn tracing off again.
+    *
+    * @param tracer the tracer to use, or null.
+    * @since 1.5
+    */
+   @SuppressWarnings("unused")
+   public static void  setTracer(SVGTracer tracer)
+   {
+      SVGBase.tracer = (tracer != null) ? tracer : SVGTracer.NONE;
+   }
+
+
+   /*
+    * Returns the current tracer if it is enabled, otherwise null.
+    */
+   static SVGTracer  getEnabledTracer()
+   {
+      SVGTracer  current = tracer;
+      return current.isEnabled() ? current : null;
+   }
+
+
    /**
     * Get the {@link SVGExternalFileResolver} in effect when this SVG was parsed..
     *
@@ -500,6 +610,7 @@ public class SVGBase
       }
 
       SVGAndroidRenderer  renderer = new SVGAndroidRenderer(canvas, this.renderDPI, externalFileResolver);
+      renderer.setRecordingPicture();
 
       renderer.renderDocument(this, renderOptions);
 
@@ -509,6 +620,42 @@ public class SVGBase
 
 
 
+   /*
+    * Render this document into a display list recorder.
+    */
+   void  renderToRecorder(DisplayListBase.Recorder recorder, RenderOptionsBase renderOptions)
+   {
+      if (renderOptions == null || renderOptions.viewPort == null) {
+         renderOptions = (renderOptions == null) ? new RenderOptionsBase() : new RenderOptionsBase(renderOptions);
+         renderOptions.viewPort(0f, 0f, (float) recorder.getWidth(), (float) recorder.getHeight());
+      }
+
+      SVGAndroidRenderer  renderer = new SVGAndroidRenderer(recorder, this.renderDPI, externalFileResolver);
+      renderer.setRecorder(recorder);
+
+      renderer.renderDocument(this, renderOptions);
+   }
+
+
+   /**
+    * Compiles this document into a display list: a flat list of the drawing operations needed
+    * to render it. The list can be replayed onto any Canvas with {@link DisplayListBase#draw(Canvas)},
+    * and it can be inspected and modified.
+    *
+    * @param widthInPixels the width of the area to render into
+    * @param heightInPixels the height of the area to render into
+    * @param renderOptions options that describe how to render this SVG, or null for the defaults.
+    * @return the display list
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public DisplayListBase  compile(int widthInPixels, int heightInPixels, RenderOptionsBase renderOptions)
+   {
+      return new DisplayListBase(this, widthInPixels, heightInPixels, renderOptions);
+   }
+
+
+
    /**
     * Renders this SVG document to a {@link Picture} using the specified view defined in the document.
     * <p>
@@ -534,6 +681,7 @@ public class SVGBase
       Canvas   canvas = picture.beginRecording(widthInPixels, heightInPixels);
 
       SVGAndroidRenderer  renderer = new SVGAndroidRenderer(canvas, this.renderDPI, externalFileResolver);
+      renderer.setRecordingPicture();
 
       renderer.renderDocument(this, renderOptions);
 
@@ -606,6 +754,44 @@ public class SVGBase
    }
 
 
+   /**
+    * Resolves everything about a render that depends only on this document and the given
+    * {@code RenderOptions}, so that it can be done once rather than on every render.
+    *
+    * @param renderOptions options that describe how to render this SVG, or null for the defaults.
+    * @return a plan that can be passed to {@link #renderToCanvas(Canvas, RenderPlanBase)} any number of times.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public RenderPlanBase  prepare(RenderOptionsBase renderOptions)
+   {
+      return new RenderPlanBase(this, renderOptions);
+   }
+
+
+   /**
+    * Renders this SVG document to a Canvas object using a plan created by {@link #prepare(RenderOptionsBase)}.
+    *
+    * @param canvas the canvas to which the document should be rendered.
+    * @param renderPlan the plan to render with. If it has no viewPort, the whole canvas is used.
+    * @throws IllegalArgumentException if the plan was prepared for a different document.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public void  renderToCanvas(Canvas canvas, RenderPlanBase renderPlan)
+   {
+      if (renderPlan.document != this)
+         throw new IllegalArgumentException("RenderPlan was prepared for a different document");
+
+      Box  viewPort = (renderPlan.viewPort != null) ? renderPlan.viewPort
+                                                    : new Box(0f, 0f, (float) canvas.getWidth(), (float) canvas.getHeight());
+
+      SVGAndroidRenderer  renderer = new SVGAndroidRenderer(canvas, this.renderDPI, externalFileResolver);
+
+      renderer.renderDocument(renderPlan, viewPort);
+   }
+
+
    /**
     * Renders this SVG document to a Canvas using the specified view defined in the document.
     * <p>
@@ -719,10 +905,10 @@ public class SVGBase
       if (this.rootElement == null)
          throw new IllegalArgumentException("SVG document is empty");
 
-      List<SvgObject>  viewElems = getElementsByTagName(View.NODE_NAME);
+      List<SvgElementBase>  viewElems = getElementsByTagName(View.NODE_NAME);
 
       Set<String>  viewIds = new HashSet<>(viewElems.size());
-      for (SvgObject elem: viewElems)
+      for (SvgElementBase elem: viewElems)
       {
          View  view = (View) elem;
          if (view.id != null)
@@ -734,6 +920,76 @@ public class SVGBase
    }
 
 
+   /**
+    * Returns whether this document contains an element with the given id.
+    *
+    * @param id the id to look for
+    * @return true if an element with that id exists.
+    * @throws IllegalArgumentException if there is no current SVG document loaded.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public boolean  hasElementWithId(String id)
+   {
+      if (this.rootElement == null)
+         throw new IllegalArgumentException("SVG document is empty");
+
+      return getElementById(id) != null;
+   }
+
+
+   /**
+    * Returns the ids of all the elements in this document that have the given class name.
+    * <p>
+    * Elements without an id attribute are not included.
+    *
+    * @param className the class name to look for
+    * @return the list of id strings, in document order.
+    * @throws IllegalArgumentException if there is no current SVG document loaded.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public List<String>  getElementIdsByClassName(String className)
+   {
+      if (this.rootElement == null)
+         throw new IllegalArgumentException("SVG document is empty");
+
+      return getIds(getElementsByClassName(className));
+   }
+
+
+   /**
+    * Returns the ids of all the elements in this document with the given tag name.
+    * <p>
+    * Elements without an id attribute are not included.
+    *
+    * @param tagName the element name to look for. For example "rect".
+    * @return the list of id strings, in document order.
+    * @throws IllegalArgumentException if there is no current SVG document loaded.
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public List<String>  getElementIdsByTagName(String tagName)
+   {
+      if (this.rootElement == null)
+         throw new IllegalArgumentException("SVG document is empty");
+
+      return getIds(getElementsByTagName(tagName));
+   }
+
+
+   private static List<String>  getIds(List<SvgElementBase> elements)
+   {
+      List<String>  ids = new ArrayList<>(elements.size());
+      for (SvgElementBase elem: elements)
+      {
+         if (elem.id != null)
+            ids.add(elem.id);
+      }
+      return ids;
+   }
+
+
    /**
     * Returns the width of the document as specified in the SVG file.
     * <p>
@@ -995,6 +1251,54 @@ public class SVGBase
    void setRootElement(SVGBase.Svg rootElement)
    {
       this.rootElement = rootElement;
+      idToElementMap.clear();
+      classToElementsMap.clear();
+      tagToElementsMap.clear();
+      indexElement(rootElement);
+      invalidateLinks();
+   }
+
+
+   /*
+    * Add an element to the id, class and tag indexes, and record its position amongst its siblings.
+    * Called by the parser after the element has been added to the tree. Elements must be added in document order.
+    */
+   void  indexElement(SvgElementBase obj)
+   {
+      if (obj.parent != null)
+      {
+         SvgElementBase  parent = (SvgElementBase) obj.parent;
+         String          nodeName = obj.getNodeName();
+         int             ofTypeCount = parent.getChildElementCount(nodeName);
+         obj.siblingIndex = parent.childElementCount++;
+         obj.siblingOfTypeIndex = ofTypeCount;
+         if (parent.childElementTypeCounts == null)
+            parent.childElementTypeCounts = new HashMap<>();
+         parent.childElementTypeCounts.put(nodeName, ofTypeCount + 1);
+      }
+
+      // If there are duplicate ids, the first one in the document wins
+      if (obj.id != null && !idToElementMap.containsKey(obj.id))
+         idToElementMap.put(obj.id, obj);
+
+      if (obj.classNames != null) {
+         for (String className: obj.classNames) {
+            addToIndex(classToElementsMap, className, obj);
+         }
+      }
+
+      addToIndex(tagToElementsMap, obj.getNodeName(), obj);
+   }
+
+
+   private static void  addToIndex(Map<String, List<SvgElementBase>> index, String key, SvgElementBase obj)
+   {
+      List<SvgElementBase>  list = index.get(key);
+      if (list == null) {
+         list = new ArrayList<>();
+         index.put(key, list);
+      }
+      list.add(obj);
    }
 
 
@@ -1003,6 +1307,36 @@ public class SVGBase
       if (iri == null)
          return null;
 
+      SvgObject  linked = linkedReferences.get(iri);
+      if (linked == null && !linkedReferences.containsKey(iri)) {
+         linked = parseAndResolveIRI(iri);
+         linkedReferences.put(iri, linked);
+      }
+      return linked;
+   }
+
+
+   /*
+    * Resolve a fill or stroke reference. References from the document itself were resolved by linkReferences().
+    * Others, such as those in RenderOptions CSS, are looked up by their href.
+    */
+   SvgObject  resolveIRI(PaintReference paint)
+   {
+      SvgObject  linked = linkedPaints.get(paint);
+      if (linked == null && !linkedPaints.containsKey(paint))
+         return resolveIRI(paint.href);
+      return linked;
+   }
+
+
+   private void  linkPaint(PaintReference paint)
+   {
+      linkedPaints.put(paint, resolveIRI(paint.href));
+   }
+
+
+   private SvgObject  parseAndResolveIRI(String iri)
+   {
       iri = cssQuotedString(iri);
       if (iri.length() > 1 && iri.startsWith("#"))
       {
@@ -1012,6 +1346,75 @@ public class SVGBase
    }
 
 
+   /*
+    * Resolve all the references between elements in the document, so that the work
+    * doesn't have to be done during rendering. Called by the parser once the document is complete.
+    */
+   void  linkReferences()
+   {
+      invalidateLinks();
+      if (rootElement == null)
+         return;
+      linkReferences(rootElement);
+      for (CSSParser.Rule rule: cssRules.getRules()) {
+         linkReferences(rule.style);
+      }
+   }
+
+
+   private void  linkReferences(SvgObject obj)
+   {
+      if (obj instanceof SvgElementBase) {
+         SvgElementBase  elem = (SvgElementBase) obj;
+         linkReferences(elem.baseStyle);
+         linkReferences(elem.style);
+      }
+
+      if (obj instanceof Use)
+         resolveIRI(((Use) obj).href);
+      else if (obj instanceof TRef)
+         resolveIRI(((TRef) obj).href);
+      else if (obj instanceof TextPath)
+         resolveIRI(((TextPath) obj).href);
+      else if (obj instanceof GradientElement)
+         resolveIRI(((GradientElement) obj).href);
+      else if (obj instanceof Pattern)
+         resolveIRI(((Pattern) obj).href);
+
+      if (obj instanceof SvgContainer) {
+         for (SvgObject child: ((SvgContainer) obj).getChildren()) {
+            linkReferences(child);
+         }
+      }
+   }
+
+
+   private void  linkReferences(Style style)
+   {
+      if (style == null)
+         return;
+      if (style.fill instanceof PaintReference)
+         linkPaint((PaintReference) style.fill);
+      if (style.stroke instanceof PaintReference)
+         linkPaint((PaintReference) style.stroke);
+      resolveIRI(style.clipPath);
+      resolveIRI(style.mask);
+      resolveIRI(style.markerStart);
+      resolveIRI(style.markerMid);
+      resolveIRI(style.markerEnd);
+   }
+
+
+   /*
+    * Forget all resolved references. For when the element ids in the document may have changed.
+    */
+   void  invalidateLinks()
+   {
+      linkedReferences.clear();
+      linkedPaints.clear();
+   }
+
+
    private String  cssQuotedString(String str)
    {
       if (str.startsWith("\"") && str.endsWith("\""))
@@ -1068,21 +1471,49 @@ public class SVGBase
    }
 
 
-   List<CSSParser.Rule>  getCSSRules()
+   Ruleset  getCSSRuleset()
    {
-      return this.cssRules.getRules();
+      return this.cssRules;
    }
 
 
-   boolean  hasCSSRules()
+   List<Ruleset>  getStylesheets()
+   {
+      return this.stylesheets;
+   }
+
+
+   /**
+    * Attaches a stylesheet to this document. Its rules will be applied whenever the document is
+    * rendered, in addition to the rules in the document itself.
+    * <p>
+    * The stylesheet is referenced, not copied. So the same stylesheet can be attached to any number of documents
+    * at very little cost. Stylesheet rules take precedence over document rules of the same specificity.
+    *
+    * @param stylesheet the stylesheet to attach
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public void  addStylesheet(CSSBase stylesheet)
    {
-      return !this.cssRules.isEmpty();
+      if (stylesheet == null || stylesheet.cssRuleset == null)
+         return;
+      this.stylesheets.add(stylesheet.cssRuleset);
    }
 
 
-   void  clearRenderCSSRules()
+   /**
+    * Detaches a stylesheet that was previously attached with {@link #addStylesheet(CSSBase)}.
+    *
+    * @param stylesheet the stylesheet to detach
+    * @since 1.5
+    */
+   @SuppressWarnings({"WeakerAccess", "unused"})
+   public void  removeStylesheet(CSSBase stylesheet)
    {
-      this.cssRules.removeFromSource(CSSParser.Source.RenderOptions);
+      if (stylesheet == null)
+         return;
+      this.stylesheets.remove(stylesheet.cssRuleset);
    }
 
 
@@ -1383,6 +1814,23 @@ public class SVGBase
       Style         style = null;       // style expressed in a 'style' attribute (eg. style="fill:black")
       List<String>  classNames = null;  // contents of the 'class' attribute
 
+      CSSParser.AncestorFilter  ancestorFilter = null;  // Cached by CSSParser. Only used for containers.
+
+      // Position of this element amongst its sibling elements, and amongst its siblings of the same type.
+      // Maintained by SVGBase.indexElement(), and used for structural pseudo classes like :nth-child().
+      int  siblingIndex = 0;
+      int  siblingOfTypeIndex = 0;
+
+      // Number of child elements, in total and of each type. Only used for containers.
+      int                   childElementCount = 0;
+      Map<String, Integer>  childElementTypeCounts = null;
+
+      int  getChildElementCount(String nodeName)
+      {
+         Integer  count = (childElementTypeCounts != null) ? childElementTypeCounts.get(nodeName) : null;
+         return (count != null) ? count : 0;
+      }
+
       public String  toString()
       {
          return this.getNodeName();
@@ -1554,6 +2002,8 @@ public class SVGBase
    {
       Matrix  transform;
 
+      List<SVGAndroidRenderer.MarkerVector>  markerPositions = null;  // Cached by the renderer
+
       @Override
       public void setTransform(Matrix transform) { this.transform = transform; }
    }
@@ -1587,6 +2037,8 @@ public class SVGBase
       PathDefinition  d;
       Float           pathLength;
 
+      SVGAndroidRenderer.TextPathGeometry  textPathGeometry = null;   // Cached by the renderer, if this path is used by a <textPath>
+
       @Override
       String  getNodeName() { return "path"; }
    }
@@ -1672,6 +2124,8 @@ public class SVGBase
 
    public static abstract class  TextContainer extends SvgConditionalContainer
    {
+      TextLayoutCache  textLayout = null;   // Cached by the renderer
+
       @Override
       public void  addChild(SvgObject elem) throws SVGParseException
       {
@@ -1720,6 +2174,8 @@ public class SVGBase
    {
       String  text;
 
+      String[]  processedText = null;   // Cached by the renderer. The text after xml:space processing, indexed by the processing flags.
+
       private TextRoot   textRoot;
       
       public TextSequence(String text)
@@ -1994,6 +2450,13 @@ public class SVGBase
       private static final byte  ARCTO   = 4;   // 4-7
       private static final byte  CLOSE   = 8;
 
+      // Paths with fewer commands than this are not worth simplifying
+      private static final int  MIN_SIMPLIFY_COMMANDS = 32;
+      private static final int  MAX_SIMPLIFIED_VARIANTS = 4;
+
+      // Simplified versions of this path, keyed by the binary exponent of their tolerance
+      private Map<Integer, PathDefinition>  simplifiedVariants = null;
+
 
       PathDefinition()
       {
@@ -2002,6 +2465,36 @@ public class SVGBase
       }
 
 
+      /*
+       * Returns a version of this path with fewer vertices, which is no more than 'maxError' away from it.
+       * Tolerances are rounded down to a power of two, so that the results can be cached and reused
+       * across renders at similar scales. If simplifying doesn't help, this path is returned.
+       */
+      PathDefinition  simplified(float maxError)
+      {
+         if (commandsLength < MIN_SIMPLIFY_COMMANDS || !(maxError > 0f) || Float.isInfinite(maxError))
+            return this;
+
+         int  bucket = Math.getExponent(maxError);
+         synchronized (this)
+         {
+            if (simplifiedVariants == null)
+               simplifiedVariants = new HashMap<>();
+            PathDefinition  result = simplifiedVariants.get(bucket);
+            if (result == null)
+            {
+               result = PathSimplifier.simplify(this, Math.scalb(1f, bucket));
+               if (result.commandsLength >= commandsLength)
+                  result = this;
+               if (simplifiedVariants.size() == MAX_SIMPLIFIED_VARIANTS)
+                  simplifiedVariants.clear();
+               simplifiedVariants.put(bucket, result);
+            }
+            return result;
+         }
+      }
+
+
       boolean  isEmpty()
       {
          return commandsLength == 0;
@@ -2135,63 +2628,21 @@ public class SVGBase
    {
       if (id == null || id.length() == 0)
          return null;
-      if (id.equals(rootElement.id))
-         return rootElement;
-
-      if (idToElementMap.containsKey(id))
-         return idToElementMap.get(id);
-
-      // Search the object tree for a node with id property that matches 'id'
-      SvgElementBase  result = getElementById(rootElement, id);
-      idToElementMap.put(id, result);
-      return result;
+      return idToElementMap.get(id);
    }
 
 
-   private SvgElementBase  getElementById(SvgContainer obj, String id)
+   List<SvgElementBase>  getElementsByClassName(String className)
    {
-      SvgElementBase  elem = (SvgElementBase) obj;
-      if (id.equals(elem.id))
-         return elem;
-      for (SvgObject child: obj.getChildren())
-      {
-         if (!(child instanceof SvgElementBase))
-            continue;
-         SvgElementBase  childElem = (SvgElementBase) child;
-         if (id.equals(childElem.id))
-            return childElem;
-         if (child instanceof SvgContainer)
-         {
-            SvgElementBase  found = getElementById((SvgContainer) child, id);
-            if (found != null)
-               return found;
-         }
-      }
-      return null;
+      List<SvgElementBase>  result = classToElementsMap.get(className);
+      return (result != null) ? result : Collections.<SvgElementBase>emptyList();
    }
 
 
-   private List<SvgObject>  getElementsByTagName(String nodeName)
+   List<SvgElementBase>  getElementsByTagName(String nodeName)
    {
-      List<SvgObject>  result = new ArrayList<>();
-
-       // Search the object tree for nodes with the give element class
-      getElementsByTagName(result, rootElement, nodeName);
-      return result;
-   }
-
-
-   private void  getElementsByTagName(List<SvgObject> result, SvgObject obj, String nodeName)
-   {
-
-      if (obj.getNodeName().equals(nodeName))
-         result.add(obj);
-
-      if (obj instanceof SvgContainer)
-      {
-         for (SvgObject child: ((SvgContainer) obj).getChildren())
-            getElementsByTagName(result, child, nodeName);
-      }
+      List<SvgElementBase>  result = tagToElementsMap.get(nodeName);
+      return (result != null) ? result : Collections.<SvgElementBase>emptyList();
    }
 
 
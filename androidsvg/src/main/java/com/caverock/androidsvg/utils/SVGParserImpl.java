@@ -24,6 +24,7 @@ import com.caverock.androidsvg.BuildConfig;
 import com.caverock.androidsvg.PreserveAspectRatio;
 import com.caverock.androidsvg.SVGExternalFileResolver;
 import com.caverock.androidsvg.SVGParseException;
+import com.caverock.androidsvg.SVGTracer;
 import com.caverock.androidsvg.utils.CSSParser.MediaType;
 import com.caverock.androidsvg.utils.SVGBase.Box;
 import com.caverock.androidsvg.utils.SVGBase.CSSClipRect;
@@ -112,6 +113,10 @@ class SVGParserImpl implements SVGParser
    private boolean                  enableInternalEntities = true;
    private SVGExternalFileResolver  externalFileResolver = null;
 
+   // Only set if tracing is enabled
+   private SVGTracer  tracer = null;
+   private int        traceDepth = 0;   // Number of sections that have been begun but not ended
+
    // For handling elements we don't support
    private boolean   ignoring = false;
    private int       ignoreDepth;
@@ -601,6 +606,9 @@ class SVGParserImpl implements SVGParser
 
    public SVGBase parseStream(InputStream is) throws SVGParseException
    {
+      tracer = SVGBase.getEnabledTracer();
+      traceBegin("SVG parse");
+
       // Transparently handle zipped files (.svgz)
       if (!is.markSupported()) {
          // We need a a buffered stream so we can use mark() and reset()
@@ -667,6 +675,9 @@ class SVGParserImpl implements SVGParser
          } catch (IOException e) {
             Log.e(TAG, "Exception thrown closing input stream");
          }
+         // End the parse section, and any others left open by an exception
+         while (traceDepth > 0)
+            traceEnd();
       }
    }
 
@@ -756,6 +767,7 @@ class SVGParserImpl implements SVGParser
 
    private void parseUsingXmlPullParser(InputStream is) throws SVGParseException
    {
+      traceBegin("SVG XML");
       try
       {
          XmlPullParser         parser = Xml.newPullParser();
@@ -814,7 +826,7 @@ class SVGParserImpl implements SVGParser
             eventType = parser.nextToken();
          }
          endDocument();
-
+         traceEnd();
       }
       catch (XmlPullParserException e)
       {
@@ -834,6 +846,7 @@ class SVGParserImpl implements SVGParser
 
    private void parseUsingSAX(InputStream is) throws SVGParseException
    {
+      traceBegin("SVG XML");
       try
       {
          // Invoke the SAX XML parser on the input.
@@ -853,6 +866,7 @@ class SVGParserImpl implements SVGParser
          xr.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
 
          xr.parse(new InputSource(is));
+         traceEnd();
       }
       catch (ParserConfigurationException e)
       {
@@ -948,6 +962,7 @@ class SVGParserImpl implements SVGParser
 
       String tag = (localName.length() > 0) ? localName : qName;
 
+      traceBegin("SVG attributes");
       SVGElem  elem = SVGElem.fromString(tag);
       switch (elem)
       {
@@ -1019,6 +1034,7 @@ class SVGParserImpl implements SVGParser
             ignoreDepth = 1;
             break;
       }
+      traceEnd();
    }
 
 
@@ -1120,7 +1136,9 @@ class SVGParserImpl implements SVGParser
          case style:
             if (styleElementContents != null) {
                inStyleElement = false;
+               traceBegin("SVG style element");
                parseCSSStyleSheet(styleElementContents.toString());
+               traceEnd();
                styleElementContents.setLength(0);
                return;
             }
@@ -1162,8 +1180,24 @@ class SVGParserImpl implements SVGParser
    }
 
 
+   /*
+    * Add an element to the current container, and to the document's element indexes.
+    */
+   private void  addToCurrentElement(SvgElementBase obj) throws SVGParseException
+   {
+      currentElement.addChild(obj);
+
+      // Some containers (eg. <stop>) discard their children. Only index elements that made it into the tree.
+      List<SvgObject>  siblings = currentElement.getChildren();
+      if (!siblings.isEmpty() && siblings.get(siblings.size() - 1) == obj)
+         svgDocument.indexElement(obj);
+   }
+
+
    private void  endDocument()
    {
+      svgDocument.linkReferences();
+
       // Dump document
       if (BuildConfig.DEBUG)
          dumpNode(svgDocument.getRootElement(), "");
@@ -1186,9 +1220,12 @@ class SVGParserImpl implements SVGParser
          attr = attributes.get(XML_STYLESHEET_ATTR_HREF);
          if (attr != null)
          {
+            traceBegin("SVG xml-stylesheet");
             String  css = externalFileResolver.resolveCSSStyleSheet(attr);
-            if (css == null)
+            if (css == null) {
+               traceEnd();
                return;
+            }
 
             String  mediaAttr = attributes.get(XML_STYLESHEET_ATTR_MEDIA);
             if (mediaAttr != null && !XML_STYLESHEET_ATTR_MEDIA_ALL.equals(mediaAttr.trim())) {
@@ -1196,6 +1233,7 @@ class SVGParserImpl implements SVGParser
             }
 
             parseCSSStyleSheet(css);
+            traceEnd();
          }
 
       }
@@ -1265,7 +1303,7 @@ class SVGParserImpl implements SVGParser
       if (currentElement == null) {
          svgDocument.setRootElement(obj);
       } else {
-         currentElement.addChild(obj);
+         addToCurrentElement(obj);
       }
       currentElement = obj;
    }
@@ -1321,7 +1359,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -1342,7 +1380,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesCore(obj, attributes);
       parseAttributesStyle(obj, attributes);
       parseAttributesTransform(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -1365,7 +1403,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesA(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -1407,7 +1445,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesUse(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -1464,7 +1502,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesImage(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -1524,7 +1562,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesPath(obj, attributes);
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1568,7 +1606,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesRect(obj, attributes);
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1630,7 +1668,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesCircle(obj, attributes);
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1677,7 +1715,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesEllipse(obj, attributes);
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1729,7 +1767,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesLine(obj, attributes);
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1777,7 +1815,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesPolyLine(obj, attributes, "polyline");
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1834,7 +1872,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesPolyLine(obj, attributes, "polygon"); // reuse of polyline "points" parser
-      currentElement.addChild(obj);     
+      addToCurrentElement(obj);
    }
 
 
@@ -1856,7 +1894,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesTextPosition(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -1906,7 +1944,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesTextPosition(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
       if (obj.parent instanceof TextRoot)
          obj.setTextRoot((TextRoot) obj.parent);
@@ -1934,7 +1972,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesTRef(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       if (obj.parent instanceof TextRoot)
          obj.setTextRoot((TextRoot) obj.parent);
       else
@@ -1978,7 +2016,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2031,7 +2069,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesViewBox(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2054,7 +2092,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesConditional(obj, attributes);
       parseAttributesViewBox(obj, attributes);
       parseAttributesMarker(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2122,7 +2160,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesGradient(obj, attributes);
       parseAttributesLinearGradient(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2210,7 +2248,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesGradient(obj, attributes);
       parseAttributesRadialGradient(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2269,7 +2307,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesCore(obj, attributes);
       parseAttributesStyle(obj, attributes);
       parseAttributesStop(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2332,7 +2370,7 @@ class SVGParserImpl implements SVGParser
       obj.parent = currentElement;
       parseAttributesCore(obj, attributes);
       parseAttributesStyle(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2355,7 +2393,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesTransform(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesClipPath(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2401,7 +2439,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesTextPath(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
       if (obj.parent instanceof TextRoot)
          obj.setTextRoot((TextRoot) obj.parent);
@@ -2449,7 +2487,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesConditional(obj, attributes);
       parseAttributesViewBox(obj, attributes);
       parseAttributesPattern(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2525,7 +2563,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesCore(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesViewBox(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -2547,7 +2585,7 @@ class SVGParserImpl implements SVGParser
       parseAttributesStyle(obj, attributes);
       parseAttributesConditional(obj, attributes);
       parseAttributesMask(obj, attributes);
-      currentElement.addChild(obj);
+      addToCurrentElement(obj);
       currentElement = obj;
    }
 
@@ -4026,8 +4064,33 @@ class SVGParserImpl implements SVGParser
 
    private void  parseCSSStyleSheet(String sheet)
    {
+      traceBegin("SVG CSS");
       CSSParser  cssp = new CSSParser(MediaType.screen, CSSParser.Source.Document, externalFileResolver);
       svgDocument.addCSSRules(cssp.parse(sheet));
+      traceEnd();
+   }
+
+
+   //=========================================================================
+   // Tracing
+   //=========================================================================
+
+
+   private void  traceBegin(String name)
+   {
+      if (tracer == null)
+         return;
+      tracer.beginSection(name);
+      traceDepth++;
+   }
+
+
+   private void  traceEnd()
+   {
+      if (tracer == null)
+         return;
+      tracer.endSection();
+      traceDepth--;
    }
 
 }
@@ -0,0 +1,177 @@
+/*
+   Copyright 2014 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The measurements of the runs of text in a text container (a &lt;text&gt;, &lt;tspan&gt; etc).
+ *
+ * The renderer measures each run several times per render: for the text-anchor offset,
+ * for the bounding box and to position the next run. With this, each run is measured once
+ * for each font it gets drawn with.  Runs are keyed by their text and the font state of the
+ * Paint, so a change to either just means a new entry.
+ */
+
+class TextLayoutCache
+{
+   // Old entries are thrown away when there are more than this. For example after lots of style changes.
+   private static final int  MAX_RUNS = 32;
+
+   private final Map<RunKey, Run>  runs = new HashMap<>();
+
+
+   /*
+    * The text of a run, and the Paint settings that affect its shaping.
+    */
+   private static class RunKey
+   {
+      private final String    text;
+      private final Typeface  typeface;
+      private final float     textSize;
+      private final float     textScaleX;
+      private final float     letterSpacing;
+      private final float     wordSpacing;
+      private final String    fontFeatureSettings;
+      private final String    fontVariationSettings;
+      private final int       hash;
+
+      RunKey(String text, Paint paint)
+      {
+         this.text = text;
+         this.typeface = paint.getTypeface();
+         this.textSize = paint.getTextSize();
+         this.textScaleX = paint.getTextScaleX();
+         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            this.letterSpacing = paint.getLetterSpacing();
+            this.fontFeatureSettings = paint.getFontFeatureSettings();
+         } else {
+            this.letterSpacing = 0f;
+            this.fontFeatureSettings = null;
+         }
+         this.fontVariationSettings = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) ? paint.getFontVariationSettings() : null;
+         this.wordSpacing = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) ? paint.getWordSpacing() : 0f;
+
+         int  h = text.hashCode();
+         h = 31 * h + ((typeface == null) ? 0 : typeface.hashCode());
+         h = 31 * h + Float.floatToIntBits(textSize);
+         h = 31 * h + Float.floatToIntBits(textScaleX);
+         h = 31 * h + Float.floatToIntBits(letterSpacing);
+         h = 31 * h + Float.floatToIntBits(wordSpacing);
+         h = 31 * h + ((fontFeatureSettings == null) ? 0 : fontFeatureSettings.hashCode());
+         this.hash = 31 * h + ((fontVariationSettings == null) ? 0 : fontVariationSettings.hashCode());
+      }
+
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof RunKey))
+            return false;
+         RunKey  other = (RunKey) o;
+         return hash == other.hash &&
+                text.equals(other.text) &&
+                equal(typeface, other.typeface) &&
+                textSize == other.textSize &&
+                textScaleX == other.textScaleX &&
+                letterSpacing == other.letterSpacing &&
+                wordSpacing == other.wordSpacing &&
+                equal(fontFeatureSettings, other.fontFeatureSettings) &&
+                equal(fontVariationSettings, other.fontVariationSettings);
+      }
+
+      @Override
+      public int  hashCode()
+      {
+         return hash;
+      }
+
+      private static boolean  equal(Object a, Object b)
+      {
+         return (a == null) ? (b == null) : a.equals(b);
+      }
+   }
+
+
+   /*
+    * The measurements of one run of text.
+    */
+   static class Run
+   {
+      final float[]  advances;   // The advance of each character
+      final float    width;      // The sum of the advances
+      private Rect   bounds = null;
+
+      Run(float[] advances)
+      {
+         this.advances = advances;
+         float  total = 0;
+         for (float advance: advances)
+            total += advance;
+         this.width = total;
+      }
+
+      /*
+       * The bounds of the text when drawn at (0,0). Only worked out if asked for.
+       */
+      synchronized Rect  getBounds(String text, Paint paint)
+      {
+         if (bounds == null) {
+            bounds = new Rect();
+            paint.getTextBounds(text, 0, text.length(), bounds);
+         }
+         return bounds;
+      }
+   }
+
+
+   /*
+    * Get the measurements of some text drawn with the given Paint.
+    */
+   synchronized Run  getRun(String text, Paint paint)
+   {
+      RunKey  key = new RunKey(text, paint);
+      Run     run = runs.get(key);
+      if (run == null)
+      {
+         run = measure(text, paint);
+         if (runs.size() == MAX_RUNS)
+            runs.clear();
+         runs.put(key, run);
+      }
+      return run;
+   }
+
+
+   /*
+    * Use getTextWidths() rather than measureText(). In the case of very small font sizes,
+    * Paint.measureText() returns a result that is too large, because it rounds up
+    * (Math.ceil()) the total width before returning.
+    */
+   static Run  measure(String text, Paint paint)
+   {
+      float[]  advances = new float[text.length()];
+      paint.getTextWidths(text, advances);
+      return new Run(advances);
+   }
+
+}
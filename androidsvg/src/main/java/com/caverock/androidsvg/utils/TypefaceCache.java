@@ -0,0 +1,147 @@
+/*
+   Copyright 2014 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg.utils;
+
+import android.graphics.Typeface;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the Typeface, and the font settings strings, that the renderer chose for each
+ * combination of font properties.  Resolving a font can mean calling out to the
+ * SVGExternalFileResolver, which doesn't cache Typefaces itself.
+ *
+ * There is one cache per document, because each document can have its own file resolver.
+ */
+
+class TypefaceCache
+{
+   private static final int  MAX_ENTRIES = 64;
+
+   private final Map<Key, Entry>  entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean  removeEldestEntry(Map.Entry<Key, Entry> eldest)
+      {
+         return size() > MAX_ENTRIES;
+      }
+   };
+
+
+   /*
+    * The font properties that the choice of Typeface and settings depends on.
+    * The settings objects are copied, because the renderer modifies its own.
+    */
+   static class Key
+   {
+      private final List<String>              fontFamily;
+      private final Float                     fontWeight;
+      private final Style.FontStyle           fontStyle;
+      private final Float                     fontWidth;
+      private final CSSFontVariationSettings  variationSet;
+      private final CSSFontVariationSettings  variationSettings;
+      private final CSSFontFeatureSettings    featureSet;
+      private final int                       hash;
+
+      Key(Style style, CSSFontVariationSettings variationSet, CSSFontFeatureSettings featureSet)
+      {
+         this.fontFamily = style.fontFamily;
+         this.fontWeight = style.fontWeight;
+         this.fontStyle = style.fontStyle;
+         this.fontWidth = style.fontWidth;
+         this.variationSet = new CSSFontVariationSettings(variationSet);
+         this.variationSettings = style.fontVariationSettings;
+         this.featureSet = new CSSFontFeatureSettings(featureSet);
+
+         int  h = (fontFamily == null) ? 0 : fontFamily.hashCode();
+         h = 31 * h + ((fontWeight == null) ? 0 : fontWeight.hashCode());
+         h = 31 * h + ((fontStyle == null) ? 0 : fontStyle.hashCode());
+         h = 31 * h + ((fontWidth == null) ? 0 : fontWidth.hashCode());
+         h = 31 * h + this.variationSet.hashCode();
+         h = 31 * h + ((variationSettings == null) ? 0 : variationSettings.hashCode());
+         this.hash = 31 * h + this.featureSet.hashCode();
+      }
+
+      @Override
+      public boolean  equals(Object o)
+      {
+         if (!(o instanceof Key))
+            return false;
+         Key  other = (Key) o;
+         return hash == other.hash &&
+                equal(fontFamily, other.fontFamily) &&
+                equal(fontWeight, other.fontWeight) &&
+                fontStyle == other.fontStyle &&
+                equal(fontWidth, other.fontWidth) &&
+                variationSet.equals(other.variationSet) &&
+                equal(variationSettings, other.variationSettings) &&
+                featureSet.equals(other.featureSet);
+      }
+
+      @Override
+      public int  hashCode()
+      {
+         return hash;
+      }
+
+      private static boolean  equal(Object a, Object b)
+      {
+         return (a == null) ? (b == null) : a.equals(b);
+      }
+   }
+
+
+   /*
+    * The result of choosing a font.
+    */
+   static class Entry
+   {
+      final Typeface                  typeface;
+      final CSSFontVariationSettings  variationSet;            // The renderer's variation settings after the font was chosen
+      final String                    variationSettingsString; // null if the platform doesn't support variation settings
+      final String                    featureSettingsString;   // null if the platform doesn't support feature settings
+
+      Entry(Typeface typeface, CSSFontVariationSettings variationSet, String variationSettingsString, String featureSettingsString)
+      {
+         this.typeface = typeface;
+         this.variationSet = new CSSFontVariationSettings(variationSet);
+         this.variationSettingsString = variationSettingsString;
+         this.featureSettingsString = featureSettingsString;
+      }
+   }
+
+
+   synchronized Entry  get(Key key)
+   {
+      return entries.get(key);
+   }
+
+
+   synchronized void  put(Key key, Entry entry)
+   {
+      entries.put(key, entry);
+   }
+
+
+   synchronized void  clear()
+   {
+      entries.clear();
+   }
+
+}
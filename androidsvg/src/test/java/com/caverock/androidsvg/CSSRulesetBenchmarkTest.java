@@ -0,0 +1,103 @@
+/*
+   Copyright 2017 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings for loading large stylesheets, and for attaching them to a document with RenderOptions.
+ * The timings aren't checked, because they depend on the machine running the tests.  So this isn't
+ * run with the other tests.  Remove the @Ignore and uncomment the println to see them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class CSSRulesetBenchmarkTest
+{
+   private static final int  NUM_RULES = 10000;
+   private static final int  NUM_RENDERS = 20;
+
+
+   @Ignore("Benchmark")
+   @Test
+   public void largeStylesheet() throws SVGParseException
+   {
+      String  sheet = makeStylesheet(NUM_RULES);
+
+      long  start = System.nanoTime();
+      CSS   css = CSS.getFromString(sheet);
+      long  parseTime = System.nanoTime() - start;
+
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect id=\"target\" class=\"c5\" width=\"10\" height=\"10\"/>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      RenderOptions  renderOptions = RenderOptions.create().css(css);
+
+      MockCanvas  mock = null;
+      start = System.nanoTime();
+      for (int i = 0; i < NUM_RENDERS; i++)
+      {
+         Canvas  canvas = new Canvas(newBM);
+         svg.renderToCanvas(canvas, renderOptions);
+         mock = (MockCanvas) Shadow.extract(canvas);
+      }
+      long  renderTime = System.nanoTime() - start;
+
+      //System.out.println(String.format(Locale.US, "%d rules: parse %.1fms, render with RenderOptions CSS %.2fms/render",
+      //                                 NUM_RULES, parseTime / 1e6, renderTime / 1e6 / NUM_RENDERS));
+
+      // The id rule has the highest specificity, so it should win, even though the class rules came later
+      List<String>  ops = mock.getOperations();
+      int  drawOp = 0;
+      while (!ops.get(drawOp).startsWith("drawRect"))
+         drawOp++;
+      assertEquals("#ff00ff00", mock.paintProp(drawOp, "color"));
+   }
+
+
+   // Make a stylesheet with rules of mixed specificity, so that insertions happen all through the ruleset
+   private static String  makeStylesheet(int numRules)
+   {
+      StringBuilder  sb = new StringBuilder();
+      sb.append("#target { fill: #0f0; }\n");
+      for (int i = 0; i < numRules; i++)
+      {
+         switch (i % 3)
+         {
+            case 0:  sb.append(".c").append(i % 100).append(" { fill: #00f; }\n"); break;
+            case 1:  sb.append("rect { fill: #f00; }\n"); break;
+            default: sb.append("g .c").append(i).append(" rect { fill: #ff0; }\n"); break;
+         }
+      }
+      return sb.toString();
+   }
+
+}
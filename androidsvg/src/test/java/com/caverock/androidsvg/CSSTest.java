@@ -25,6 +25,8 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadow.api.Shadow;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 @RunWith(RobolectricTestRunner.class)
@@ -128,4 +130,105 @@ public class CSSTest
       assertEquals("#ff00ff00", mock.paintProp(3, "color"));
    }
 
+
+   @Test
+   public void descendantSelectors() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <style>" +
+                     "    .theme .legend rect {fill:#0f0}" +
+                     "    .legend .x {fill:#f00}" +
+                     "    #missing rect {fill:#f00}" +
+                     "  </style>" +
+                     "  <g class=\"theme\">" +
+                     "    <g class=\"legend\">" +
+                     "      <rect width=\"10\" height=\"10\"/>" +
+                     "    </g>" +
+                     "  </g>" +
+                     "  <rect class=\"x\" width=\"10\" height=\"10\"/>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      MockCanvas    mock = ((MockCanvas) Shadow.extract(canvas));
+      List<String> ops = mock.getOperations();
+
+      int  first = -1, second = -1;
+      for (int i = 0; i < ops.size(); i++) {
+         if (ops.get(i).startsWith("drawRect")) {
+            if (first < 0) first = i; else second = i;
+         }
+      }
+      assertEquals("#ff00ff00", mock.paintProp(first, "color"));
+      assertEquals("#ff000000", mock.paintProp(second, "color"));
+   }
+
+
+   @Test
+   public void sharedStylesheet() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <style>" +
+                     "    .icon {fill:#f00}" +
+                     "  </style>" +
+                     "  <rect class=\"icon\" width=\"10\" height=\"10\"/>" +
+                     "</svg>";
+      CSS  theme = CSS.getFromString(".icon {fill:#0f0}");
+
+      SVG  svg1 = SVG.getFromString(test);
+      SVG  svg2 = SVG.getFromString(test);
+      svg1.addStylesheet(theme);
+      svg2.addStylesheet(theme);
+
+      // Stylesheet rules win over document rules of the same specificity
+      assertEquals("#ff00ff00", renderAndGetFill(svg1));
+      assertEquals("#ff00ff00", renderAndGetFill(svg2));
+
+      svg2.removeStylesheet(theme);
+      assertEquals("#ffff0000", renderAndGetFill(svg2));
+      assertEquals("#ff00ff00", renderAndGetFill(svg1));
+   }
+
+
+   /*
+    * A paint reference in a shared stylesheet resolves to the element in the document being rendered.
+    */
+   @Test
+   public void sharedStylesheetPaintReference() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <solidColor id=\"c\" solid-color=\"%s\"/>" +
+                     "  <rect class=\"icon\" width=\"10\" height=\"10\"/>" +
+                     "</svg>";
+      CSS  theme = CSS.getFromString(".icon {fill:url(#c) #00f}");
+
+      SVG  svg1 = SVG.getFromString(String.format(test, "#0f0"));
+      SVG  svg2 = SVG.getFromString(String.format(test, "#f00"));
+      svg1.addStylesheet(theme);
+      svg2.addStylesheet(theme);
+
+      assertEquals("#ff00ff00", renderAndGetFill(svg1));
+      assertEquals("#ffff0000", renderAndGetFill(svg2));
+      assertEquals("#ff00ff00", renderAndGetFill(svg1));
+   }
+
+
+   private String  renderAndGetFill(SVG svg)
+   {
+      Bitmap newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      MockCanvas    mock = ((MockCanvas) Shadow.extract(canvas));
+      List<String> ops = mock.getOperations();
+      for (int i = 0; i < ops.size(); i++) {
+         if (ops.get(i).startsWith("drawRect"))
+            return mock.paintProp(i, "color");
+      }
+      return null;
+   }
+
 }
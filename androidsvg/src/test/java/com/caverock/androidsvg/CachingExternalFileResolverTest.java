@@ -0,0 +1,137 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE)
+public class CachingExternalFileResolverTest
+{
+   private static class CountingResolver extends SVGExternalFileResolver
+   {
+      final List<String>  requests = new ArrayList<>();
+
+      @Override
+      public Typeface  resolveFont(String fontFamily, float fontWeight, String fontStyle, float fontStretch)
+      {
+         requests.add("font " + fontFamily);
+         return "Missing".equals(fontFamily) ? null : Typeface.DEFAULT;
+      }
+
+      // 10x10 ARGB_8888 = 400 bytes
+      @Override
+      public Bitmap  resolveImage(String filename)
+      {
+         requests.add("image " + filename);
+         return Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+      }
+
+      @Override
+      public String  resolveCSSStyleSheet(String url)
+      {
+         requests.add("css " + url);
+         return "rect { fill: red; }";
+      }
+   }
+
+
+   @Test
+   public void cachedHitsAndMisses()
+   {
+      CountingResolver             inner = new CountingResolver();
+      CachingExternalFileResolver  resolver = new CachingExternalFileResolver(inner);
+
+      assertSame(Typeface.DEFAULT, resolver.resolveFont("Custom", 400, "normal", 100));
+      assertSame(Typeface.DEFAULT, resolver.resolveFont("Custom", 400, "normal", 100));
+      // Misses are remembered too
+      assertNull(resolver.resolveFont("Missing", 400, "normal", 100));
+      assertNull(resolver.resolveFont("Missing", 400, "normal", 100));
+
+      Bitmap  bm = resolver.resolveImage("a.png");
+      assertSame(bm, resolver.resolveImage("a.png"));
+      assertEquals("rect { fill: red; }", resolver.resolveCSSStyleSheet("a.css"));
+      assertEquals("rect { fill: red; }", resolver.resolveCSSStyleSheet("a.css"));
+
+      assertEquals(4, inner.requests.size());
+      assertEquals(2, resolver.getTypefaceCache().getHitCount());
+      assertEquals(2, resolver.getTypefaceCache().getMissCount());
+      assertEquals(2, resolver.getTypefaceCache().getEntryCount());
+      assertEquals(1, resolver.getBitmapCache().getHitCount());
+      assertEquals(400, resolver.getBitmapCache().getSize());
+      assertEquals(1, resolver.getStyleSheetCache().getHitCount());
+   }
+
+
+   /*
+    * The wrapped resolver ignores the target size, so each size isn't cached separately.
+    */
+   @Test
+   public void sizeIgnored()
+   {
+      CountingResolver             inner = new CountingResolver();
+      CachingExternalFileResolver  resolver = new CachingExternalFileResolver(inner);
+
+      Bitmap  bm = resolver.resolveImage("a.png", 16, 16);
+      assertSame(bm, resolver.resolveImage("a.png", 32, 32));
+      assertSame(bm, resolver.resolveImage("a.png"));
+
+      assertEquals(1, inner.requests.size());
+      assertEquals(400, resolver.getBitmapCache().getSize());
+   }
+
+
+   @Test
+   public void eviction()
+   {
+      CountingResolver             inner = new CountingResolver();
+      CachingExternalFileResolver  resolver = new CachingExternalFileResolver(inner, 2, 1000, 1000);
+
+      // Only two bitmaps fit
+      resolver.resolveImage("a.png");
+      resolver.resolveImage("b.png");
+      resolver.resolveImage("c.png");
+      assertEquals(1, resolver.getBitmapCache().getEvictionCount());
+      assertEquals(800, resolver.getBitmapCache().getSize());
+
+      inner.requests.clear();
+      resolver.resolveImage("a.png");   // evicted
+      resolver.resolveImage("c.png");
+      assertEquals(1, inner.requests.size());
+
+      // Only two entries allowed
+      resolver.resolveFont("One", 400, "normal", 100);
+      resolver.resolveFont("Two", 400, "normal", 100);
+      resolver.resolveFont("Three", 400, "normal", 100);
+      assertEquals(2, resolver.getTypefaceCache().getEntryCount());
+      assertEquals(1, resolver.getTypefaceCache().getEvictionCount());
+   }
+
+}
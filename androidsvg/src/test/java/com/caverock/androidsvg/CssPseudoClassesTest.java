@@ -1337,4 +1337,35 @@ public class CssPseudoClassesTest
 
 
 
+   /*
+    * Text content nodes are not elements, and should not count as siblings.
+    */
+   @Test
+   public void firstChildAfterText() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <text>abc<tspan>def</tspan><tspan>ghi</tspan></text>" +
+                     "  <style>" +
+                     "    tspan:first-child { fill: #0f0; }" +
+                     "  </style>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      MockCanvas    mock = ((MockCanvas) Shadow.extract(canvas));
+      List<String>  ops = mock.getOperations();
+
+      for (int i = 0; i < ops.size(); i++) {
+         if (ops.get(i).startsWith("drawText('def'"))
+            assertEquals("#ff00ff00", mock.paintProp(i, "color"));
+         else if (ops.get(i).startsWith("drawText('ghi'"))
+            assertEquals("#ff000000", mock.paintProp(i, "color"));
+      }
+   }
+
+
+
 }
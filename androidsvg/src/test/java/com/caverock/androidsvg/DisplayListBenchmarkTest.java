@@ -0,0 +1,108 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.Locale;
+
+/**
+ * Timings for replaying a compiled display list, compared with rendering the document each time.
+ * The timings aren't checked, because they depend on the machine running the tests.  So this isn't
+ * run with the other tests.  Remove the @Ignore and uncomment the println to see them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class DisplayListBenchmarkTest
+{
+   private static final int  NUM_ELEMENTS = 2000;
+   private static final int  NUM_RENDERS = 20;
+
+
+   @Ignore("Benchmark")
+   @Test
+   public void replayVersusRender() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(makeDocument(NUM_ELEMENTS));
+      Bitmap  newBM = Bitmap.createBitmap(500, 500, Bitmap.Config.ARGB_8888);
+
+      MockCanvas  rendered = null;
+      long  start = System.nanoTime();
+      for (int i = 0; i < NUM_RENDERS; i++)
+      {
+         Canvas  canvas = new Canvas(newBM);
+         svg.renderToCanvas(canvas);
+         rendered = Shadow.extract(canvas);
+      }
+      long  renderTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      DisplayList  list = svg.compile(500, 500, null);
+      long  compileTime = System.nanoTime() - start;
+
+      MockCanvas  replayed = null;
+      start = System.nanoTime();
+      for (int i = 0; i < NUM_RENDERS; i++)
+      {
+         Canvas  canvas = new Canvas(newBM);
+         list.draw(canvas);
+         replayed = Shadow.extract(canvas);
+      }
+      long  replayTime = System.nanoTime() - start;
+
+      //System.out.println(String.format(Locale.US, "%d elements: render %.2fms/render, compile %.2fms, replay %.2fms/render",
+      //                                 NUM_ELEMENTS, renderTime / 1e6 / NUM_RENDERS, compileTime / 1e6, replayTime / 1e6 / NUM_RENDERS));
+
+      // The replay adds an outer save() and restore()
+      assertEquals(rendered.getOperations().size() + 2, replayed.getOperations().size());
+   }
+
+
+   // Make a document with a mix of styled shapes in nested groups
+   private static String  makeDocument(int numElements)
+   {
+      StringBuilder  sb = new StringBuilder();
+      sb.append("<svg width=\"500\" height=\"500\">\n");
+      sb.append("<style>.a { fill: #00f; } g rect { stroke: #000; }</style>\n");
+      for (int i = 0; i < numElements; i++)
+      {
+         if (i % 10 == 0)
+            sb.append("<g transform=\"translate(").append(i % 50).append(",0)\">\n");
+         switch (i % 3)
+         {
+            case 0:  sb.append("<rect x=\"").append(i % 500).append("\" y=\"10\" width=\"5\" height=\"5\"/>\n"); break;
+            case 1:  sb.append("<circle class=\"a\" cx=\"").append(i % 500).append("\" cy=\"50\" r=\"3\"/>\n"); break;
+            default: sb.append("<path d=\"M ").append(i % 500).append(" 100 l 5 5 l -5 5 z\" fill=\"red\"/>\n"); break;
+         }
+         if (i % 10 == 9)
+            sb.append("</g>\n");
+      }
+      sb.append("</svg>");
+      return sb.toString();
+   }
+
+}
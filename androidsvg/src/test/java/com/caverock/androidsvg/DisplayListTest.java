@@ -0,0 +1,186 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class DisplayListTest
+{
+   private static final String  TEST = "<svg width=\"100\" height=\"100\">" +
+                                       "  <g id=\"group\" transform=\"translate(10,10)\">" +
+                                       "    <rect width=\"10\" height=\"10\" fill=\"red\"/>" +
+                                       "    <circle id=\"dot\" cx=\"50\" cy=\"50\" r=\"5\" fill=\"blue\" opacity=\"0.5\"/>" +
+                                       "  </g>" +
+                                       "  <text x=\"10\" y=\"90\">Hello</text>" +
+                                       "</svg>";
+
+
+   /*
+    * Replaying a display list should make the same Canvas calls as rendering the document.
+    */
+   @Test
+   public void replayMatchesRender() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+
+      Canvas  directCanvas = newCanvas();
+      svg.renderToCanvas(directCanvas);
+      MockCanvas  direct = Shadow.extract(directCanvas);
+
+      DisplayList  list = svg.compile(100, 100, null);
+      Canvas  replayCanvas = newCanvas();
+      list.draw(replayCanvas);
+      MockCanvas  replay = Shadow.extract(replayCanvas);
+
+      // The replay is wrapped in a save() and restore()
+      List<String>  ops = replay.getOperations();
+      assertEquals("save()", ops.get(0));
+      assertEquals("restore()", ops.get(ops.size() - 1));
+      assertEquals(direct.getOperations(), ops.subList(1, ops.size() - 1));
+   }
+
+
+   /*
+    * Operations that set the matrix have to be replayed relative to the canvas matrix at the
+    * start of the replay, not the matrix after the viewBox transform has been applied.
+    */
+   @Test
+   public void replaySetMatrixUnderViewBox() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\" viewBox=\"0 0 50 50\">" +
+                     "  <rect x=\"5\" y=\"5\" width=\"20\" height=\"20\" fill=\"none\" stroke=\"black\" vector-effect=\"non-scaling-stroke\"/>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      Canvas  directCanvas = newCanvas();
+      svg.renderToCanvas(directCanvas);
+      MockCanvas  direct = Shadow.extract(directCanvas);
+
+      DisplayList  list = svg.compile(100, 100, null);
+      Canvas  replayCanvas = newCanvas();
+      list.draw(replayCanvas);
+      MockCanvas  replay = Shadow.extract(replayCanvas);
+
+      List<String>  ops = replay.getOperations();
+      assertTrue(direct.getOperations().toString(), direct.getOperations().toString().contains("setMatrix("));
+      assertEquals(direct.getOperations(), ops.subList(1, ops.size() - 1));
+   }
+
+
+   /*
+    * Images are kept in the display list, including ones that were decoded at a reduced size.
+    */
+   @Test
+   public void replayImage() throws SVGParseException
+   {
+      // A 64x64 PNG, drawn at 8x8
+      String  test = "<svg width=\"100\" height=\"100\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+                     "  <image xlink:href=\"data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAEAAAABACAIAAAAlC+aJAAAAS0lEQVR42u3PQQkAAAgAsetfWiP4FgYrsKZeS0BAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEDgsqnc8OJg6Ln3AAAAAElFTkSuQmCC\" width=\"8\" height=\"8\"/>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      Canvas  directCanvas = newCanvas();
+      svg.renderToCanvas(directCanvas);
+      MockCanvas  direct = Shadow.extract(directCanvas);
+
+      DisplayList  list = svg.compile(100, 100, null);
+      Canvas  replayCanvas = newCanvas();
+      list.draw(replayCanvas);
+      MockCanvas  replay = Shadow.extract(replayCanvas);
+
+      List<String>  ops = replay.getOperations();
+      int  bitmapCount = 0;
+      for (String op: ops) {
+         if (op.startsWith("drawBitmap("))
+            bitmapCount++;
+      }
+      assertEquals(1, bitmapCount);
+      assertEquals(direct.getOperations(), ops.subList(1, ops.size() - 1));
+   }
+
+
+   @Test
+   public void inspect() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      DisplayList  list = svg.compile(100, 100, null);
+
+      int  drawCount = 0;
+      for (int i = 0; i < list.getOperationCount(); i++)
+      {
+         int  type = list.getOperationType(i);
+         if (type != DisplayList.OP_DRAW_RECT && type != DisplayList.OP_DRAW_CIRCLE && type != DisplayList.OP_DRAW_TEXT)
+            continue;
+         switch (drawCount++)
+         {
+            case 0:  assertEquals("group", list.getElementId(i)); break;
+            case 1:  assertEquals("dot", list.getElementId(i)); break;
+            default: assertNull(list.getElementId(i)); break;
+         }
+      }
+      assertEquals(3, drawCount);
+   }
+
+
+   @Test
+   public void recolour() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      DisplayList  list = svg.compile(100, 100, null);
+
+      assertEquals(1, list.setFillColor("dot", 0x00ff00));
+      assertEquals(2, list.setFillColor("group", 0xffff00));
+
+      Canvas  canvas = newCanvas();
+      list.draw(canvas);
+      MockCanvas  mock = Shadow.extract(canvas);
+
+      List<String>  ops = mock.getOperations();
+      int  drawCount = 0;
+      for (int i = 0; i < ops.size(); i++)
+      {
+         if (!ops.get(i).startsWith("drawRect") && !ops.get(i).startsWith("drawCircle"))
+            continue;
+         // The opacity of the circle is kept
+         assertEquals((drawCount++ == 0) ? "#ffffff00" : "#80ffff00", mock.paintProp(i, "color"));
+      }
+      assertEquals(2, drawCount);
+   }
+
+
+   private static Canvas  newCanvas()
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      return new Canvas(newBM);
+   }
+
+}
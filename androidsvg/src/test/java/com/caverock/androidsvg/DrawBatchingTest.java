@@ -0,0 +1,208 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class DrawBatchingTest
+{
+   @Test
+   public void siblingsBatched() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <rect x=\"20\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <path d=\"M 40 0 h 10 v 10 z\" fill=\"red\"/>" +
+                     "</svg>";
+      RenderStatistics  stats = new RenderStatistics();
+      List<String>  draws = renderDraws(test, RenderOptions.create().batchDraws(true).statistics(stats));
+
+      assertEquals(1, draws.size());
+      assertEquals("drawPath('M 0 0 L 10 0 L 10 10 L 0 10 L 0 0 Z M 20 0 L 30 0 L 30 10 L 20 10 L 20 0 Z M 40 0 L 50 0 L 50 10 Z'", draws.get(0).substring(0, draws.get(0).indexOf("',") + 2));
+      assertEquals(3, stats.getBatchedShapes());
+      assertEquals(1, stats.getBatchDraws());
+      assertEquals(3f, stats.getBatchRatio(), 0f);
+   }
+
+
+   @Test
+   public void notBatchedByDefault() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <rect x=\"20\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "</svg>";
+      assertEquals(2, renderDraws(test, RenderOptions.create()).size());
+   }
+
+
+   /*
+    * Overlapping shapes, different fills and strokes each prevent batching.
+    */
+   @Test
+   public void incompatibleShapes() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <rect x=\"5\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <rect x=\"20\" width=\"10\" height=\"10\" fill=\"blue\"/>" +
+                     "  <rect x=\"40\" width=\"10\" height=\"10\" fill=\"blue\" stroke=\"black\"/>" +
+                     "</svg>";
+      RenderStatistics  stats = new RenderStatistics();
+      List<String>  draws = renderDraws(test, RenderOptions.create().batchDraws(true).statistics(stats));
+
+      assertEquals(5, draws.size());   // The last rect has a fill and a stroke
+      assertEquals(3, stats.getBatchedShapes());
+      assertEquals(3, stats.getBatchDraws());
+   }
+
+
+   /*
+    * A batch must be drawn before any element that follows it, to keep the painting order.
+    */
+   @Test
+   public void paintingOrder() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <g><rect x=\"20\" width=\"10\" height=\"10\" fill=\"blue\"/></g>" +
+                     "  <rect x=\"40\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "</svg>";
+      List<String>  draws = renderDraws(test, RenderOptions.create().batchDraws(true));
+
+      assertEquals(3, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawRect(0, 0, 10, 10"));
+      assertEquals(true, draws.get(1).startsWith("drawRect(20, 0, 30, 10"));
+      assertEquals(true, draws.get(2).startsWith("drawRect(40, 0, 50, 10"));
+   }
+
+
+   /*
+    * Shapes less than a device pixel apart share anti-aliased edge pixels, so aren't batched.
+    */
+   @Test
+   public void nearlyTouching() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\" viewBox=\"0 0 50 50\">" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <rect x=\"10.25\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <rect x=\"21\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "</svg>";
+      RenderStatistics  stats = new RenderStatistics();
+      List<String>  draws = renderDraws(test, RenderOptions.create().batchDraws(true).statistics(stats));
+
+      // 0.25 apart is half a pixel at this scale. 0.75 apart is one and a half.
+      assertEquals(2, draws.size());
+      assertEquals(2, stats.getBatchDraws());
+   }
+
+
+   /*
+    * The element referenced by a <use> is drawn under the use's transform, not batched with its siblings.
+    */
+   @Test
+   public void use() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <defs><rect id=\"r\" width=\"10\" height=\"10\" fill=\"red\"/></defs>" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <use href=\"#r\" x=\"50\"/>" +
+                     "  <rect x=\"20\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "</svg>";
+      List<String>  ops = renderOps(test, RenderOptions.create().batchDraws(true));
+
+      assertEquals(3, filterDraws(ops).size());
+      assertEquals(true, nextDrawIsBeforeRestore(ops, "translate(50, 0)"));
+   }
+
+
+   /*
+    * The chosen child of a <switch> is drawn under the switch's transform, not batched with its siblings.
+    */
+   @Test
+   public void switchChild() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect x=\"0\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  <switch transform=\"translate(50)\"><rect width=\"10\" height=\"10\" fill=\"red\"/></switch>" +
+                     "  <rect x=\"20\" width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "</svg>";
+      List<String>  ops = renderOps(test, RenderOptions.create().batchDraws(true));
+
+      assertEquals(3, filterDraws(ops).size());
+      assertEquals(true, nextDrawIsBeforeRestore(ops, "concat(Matrix(1 0 0 1 50 0))"));
+   }
+
+
+   // Returns true if the first draw after the given op comes before the next restore()
+   private static boolean  nextDrawIsBeforeRestore(List<String> ops, String op)
+   {
+      int  start = ops.indexOf(op);
+      if (start < 0)
+         return false;
+      for (int i = start + 1; i < ops.size(); i++) {
+         if (ops.get(i).startsWith("draw"))
+            return true;
+         if (ops.get(i).equals("restore()"))
+            return false;
+      }
+      return false;
+   }
+
+
+   private List<String>  renderDraws(String test, RenderOptions renderOptions) throws SVGParseException
+   {
+      return filterDraws(renderOps(test, renderOptions));
+   }
+
+
+   private List<String>  renderOps(String test, RenderOptions renderOptions) throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas, renderOptions);
+      return ((MockCanvas) Shadow.extract(canvas)).getOperations();
+   }
+
+
+   private static List<String>  filterDraws(List<String> ops)
+   {
+      List<String>  draws = new ArrayList<>();
+      for (String op: ops) {
+         if (op.startsWith("draw"))
+            draws.add(op);
+      }
+      return draws;
+   }
+
+}
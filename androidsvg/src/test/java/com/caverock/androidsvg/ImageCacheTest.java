@@ -0,0 +1,206 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class ImageCacheTest
+{
+   // Returns a 10x10 ARGB_8888 bitmap (400 bytes) for every image
+   private static class CountingResolver extends SVGExternalFileResolver
+   {
+      final List<String>  requests = new ArrayList<>();
+      final List<Bitmap>  bitmaps = new ArrayList<>();
+
+      @Override
+      public Bitmap  resolveImage(String filename)
+      {
+         requests.add(filename);
+         Bitmap  bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+         bitmaps.add(bitmap);
+         return bitmap;
+      }
+   }
+
+
+   private static final String  TWO_IMAGES = "<svg width=\"100\" height=\"100\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+                                             "  <image xlink:href=\"a.png\" width=\"10\" height=\"10\"/>" +
+                                             "  <image xlink:href=\"b.png\" x=\"20\" width=\"10\" height=\"10\"/>" +
+                                             "  <image xlink:href=\"a.png\" x=\"40\" width=\"10\" height=\"10\"/>" +
+                                             "</svg>";
+
+
+   /*
+    * The resolver should only be asked once for each image in a document.
+    */
+   @Test
+   public void resolvedOnce() throws SVGParseException
+   {
+      CountingResolver  resolver = new CountingResolver();
+      SVG  svg = parse(TWO_IMAGES, resolver);
+
+      List<String>  first = renderDraws(svg);
+      List<String>  second = renderDraws(svg);
+
+      assertEquals(2, resolver.requests.size());
+      assertEquals(3, first.size());
+      assertEquals(first, second);
+   }
+
+
+   /*
+    * A data URL is only decoded on the first render. Later renders draw the same Bitmap.
+    */
+   @Test
+   public void dataURLDecodedOnce() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+                     "  <image xlink:href=\"data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR4\n" +
+                     "    2mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==\" width=\"10\" height=\"10\"/>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      List<String>  first = renderDraws(svg);
+      List<String>  second = renderDraws(svg);
+
+      assertEquals(1, first.size());
+      assertEquals(true, first.get(0).startsWith("drawBitmap("));
+      assertEquals(first, second);
+   }
+
+
+   /*
+    * The shared cache is used by all documents, and is limited by the size of the Bitmaps.
+    */
+   @Test
+   public void sharedCache() throws SVGParseException
+   {
+      CountingResolver  resolver = new CountingResolver();
+      SVG  svg1 = parse(TWO_IMAGES, resolver);
+      SVG  svg2 = parse(TWO_IMAGES, resolver);
+
+      SVG.setSharedImageCacheSize(1000);
+      try {
+         renderDraws(svg1);
+         renderDraws(svg2);
+         assertEquals(2, resolver.requests.size());
+
+         // Only one image fits, so a and b keep evicting each other
+         SVG.setSharedImageCacheSize(500);
+         resolver.requests.clear();
+         renderDraws(svg1);
+         assertEquals(3, resolver.requests.size());
+      } finally {
+         SVG.setSharedImageCacheSize(0);
+      }
+   }
+
+
+   /*
+    * Bitmaps that the app recycles are fetched again, and don't use up any of the cache.
+    */
+   @Test
+   public void recycledBitmaps() throws SVGParseException
+   {
+      CountingResolver  resolver = new CountingResolver();
+      SVG  svg = parse(TWO_IMAGES, resolver);
+
+      SVG.setSharedImageCacheSize(1000);
+      try {
+         renderDraws(svg);
+         for (Bitmap bitmap: resolver.bitmaps)
+            bitmap.recycle();
+
+         resolver.requests.clear();
+         renderDraws(svg);
+         assertEquals(2, resolver.requests.size());
+
+         // Both new Bitmaps still fit
+         resolver.requests.clear();
+         renderDraws(svg);
+         assertEquals(0, resolver.requests.size());
+      } finally {
+         SVG.setSharedImageCacheSize(0);
+      }
+   }
+
+
+   /*
+    * A resolver that ignores the target size returns a full size image. That is good enough for
+    * any smaller scale, so it isn't asked again when the document is zoomed out.
+    */
+   @Test
+   public void resolvedOnceAtSmallerScales() throws SVGParseException
+   {
+      CountingResolver  resolver = new CountingResolver();
+      SVG  svg = parse(TWO_IMAGES, resolver);
+
+      renderDraws(svg, 1f);
+      renderDraws(svg, 0.5f);
+      renderDraws(svg, 0.25f);
+
+      assertEquals(2, resolver.requests.size());
+   }
+
+
+   private static SVG  parse(String test, SVGExternalFileResolver resolver) throws SVGParseException
+   {
+      SVG.registerExternalFileResolver(resolver);
+      try {
+         return SVG.getFromString(test);
+      } finally {
+         SVG.deregisterExternalFileResolver();
+      }
+   }
+
+
+   private static List<String>  renderDraws(SVG svg)
+   {
+      return renderDraws(svg, 1f);
+   }
+
+
+   private static List<String>  renderDraws(SVG svg, float scale)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      canvas.scale(scale, scale);
+      svg.renderToCanvas(canvas);
+
+      List<String>  draws = new ArrayList<>();
+      for (String op: ((MockCanvas) Shadow.extract(canvas)).getOperations()) {
+         if (op.startsWith("draw"))
+            draws.add(op);
+      }
+      return draws;
+   }
+
+}
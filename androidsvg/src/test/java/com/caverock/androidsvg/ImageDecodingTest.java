@@ -0,0 +1,89 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class ImageDecodingTest
+{
+   private static class SizeRecordingResolver extends SVGExternalFileResolver
+   {
+      final List<String>  requests = new ArrayList<>();
+
+      @Override
+      public Bitmap  resolveImage(String filename, int targetWidth, int targetHeight)
+      {
+         requests.add(filename + " " + targetWidth + "x" + targetHeight);
+         return Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+      }
+   }
+
+
+   /*
+    * The resolver is told the device size of the image, rounded up to a power of two.
+    */
+   @Test
+   public void targetSize() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\" viewBox=\"0 0 25 25\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+                     "  <image xlink:href=\"a.png\" width=\"10\" height=\"10\"/>" +
+                     "  <image xlink:href=\"b.png\" width=\"6\" height=\"3\"/>" +
+                     "</svg>";
+      SizeRecordingResolver  resolver = new SizeRecordingResolver();
+      SVG  svg;
+      SVG.registerExternalFileResolver(resolver);
+      try {
+         svg = SVG.getFromString(test);
+      } finally {
+         SVG.deregisterExternalFileResolver();
+      }
+
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      svg.renderToCanvas(new Canvas(newBM));
+
+      assertEquals(2, resolver.requests.size());
+      assertEquals("a.png 64x64", resolver.requests.get(0));
+      assertEquals("b.png 32x16", resolver.requests.get(1));
+   }
+
+
+   @Test
+   public void sampleSize()
+   {
+      assertEquals(1, SVGExternalFileResolver.calculateSampleSize(1000, 1000, 0, 0));
+      assertEquals(1, SVGExternalFileResolver.calculateSampleSize(1000, 1000, 1000, 1000));
+      assertEquals(1, SVGExternalFileResolver.calculateSampleSize(1000, 1000, 501, 501));
+      assertEquals(2, SVGExternalFileResolver.calculateSampleSize(1000, 1000, 500, 500));
+      // The image must still cover the target in both dimensions
+      assertEquals(4, SVGExternalFileResolver.calculateSampleSize(4000, 3000, 500, 400));
+      assertEquals(8, SVGExternalFileResolver.calculateSampleSize(4000, 3000, 500, 375));
+   }
+
+}
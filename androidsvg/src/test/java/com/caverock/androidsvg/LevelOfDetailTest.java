@@ -0,0 +1,120 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class LevelOfDetailTest
+{
+   // Drawn at 1/10 scale. The small rect and the group end up under 2 pixels wide.
+   private static final String  TEST = "<svg width=\"100\" height=\"100\" viewBox=\"0 0 1000 1000\">" +
+                                       "  <rect width=\"5\" height=\"5\" fill=\"red\"/>" +
+                                       "  <rect x=\"100\" y=\"100\" width=\"200\" height=\"200\" fill=\"blue\"/>" +
+                                       "  <g fill=\"green\">" +
+                                       "    <circle cx=\"500\" cy=\"500\" r=\"2\"/>" +
+                                       "    <circle cx=\"505\" cy=\"500\" r=\"2\"/>" +
+                                       "    <circle cx=\"510\" cy=\"500\" r=\"2\"/>" +
+                                       "  </g>" +
+                                       "</svg>";
+
+
+   @Test
+   public void culled() throws SVGParseException
+   {
+      SVG               svg = SVG.getFromString(TEST);
+      RenderStatistics  stats = new RenderStatistics();
+      RenderOptions     opts = RenderOptions.create().lodThreshold(2f).statistics(stats);
+
+      // The bounds aren't known until the first render
+      assertEquals(5, render(svg, opts).size());
+      assertEquals(0, stats.getCulledElements());
+
+      List<String>  draws = render(svg, opts);
+      assertEquals(1, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawRect(100, 100, 300, 300, "));
+      assertEquals(2, stats.getCulledElements());
+
+      // Culling is off by default
+      assertEquals(5, render(svg, null).size());
+   }
+
+
+   @Test
+   public void placeholders() throws SVGParseException
+   {
+      SVG            svg = SVG.getFromString(TEST);
+      RenderOptions  opts = RenderOptions.create().lodThreshold(2f).lodPlaceholders(true);
+
+      render(svg, opts);
+      List<String>  draws = render(svg, opts);
+
+      assertEquals(3, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawRect(0, 0, 5, 5, Paint(color:#ffff0000;"));
+      assertEquals(true, draws.get(1).startsWith("drawRect(100, 100, 300, 300, "));
+      assertEquals(true, draws.get(2).startsWith("drawRect(498, 498, 512, 502, Paint(color:#ff008000;"));
+   }
+
+
+   /*
+    * A line's placeholder is its stroke colour. It has a fill, but lines are never filled.
+    */
+   @Test
+   public void linePlaceholder() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\" viewBox=\"0 0 1000 1000\">" +
+                     "  <line x2=\"5\" y2=\"5\" stroke=\"red\"/>" +
+                     "</svg>";
+      SVG            svg = SVG.getFromString(test);
+      RenderOptions  opts = RenderOptions.create().lodThreshold(2f).lodPlaceholders(true);
+
+      render(svg, opts);
+      List<String>  draws = render(svg, opts);
+
+      assertEquals(1, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawRect(0, 0, 5, 5, Paint(color:#ffff0000;"));
+   }
+
+
+   private List<String>  render(SVG svg, RenderOptions renderOptions)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas, renderOptions);
+
+      List<String>  draws = new ArrayList<>();
+      for (String op: ((MockCanvas) Shadow.extract(canvas)).getOperations()) {
+         if (op.startsWith("draw"))
+            draws.add(op);
+      }
+      return draws;
+   }
+
+}
@@ -0,0 +1,93 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class, MockPicture.class})
+public class MarkerTest
+{
+   // Scaled by 2 by the viewBox, and by another 2 by the stroke width
+   private static final String  TEST = "<svg width=\"100\" height=\"100\" viewBox=\"0 0 50 50\">" +
+                                       "  <marker id=\"m\" markerWidth=\"4\" markerHeight=\"4\">" +
+                                       "    <circle cx=\"2\" cy=\"2\" r=\"2\"/>" +
+                                       "  </marker>" +
+                                       "  <polyline points=\"0,0 10,0 20,0 30,0 40,0\" stroke=\"black\" stroke-width=\"2\"" +
+                                       "            marker-start=\"url(#m)\" marker-mid=\"url(#m)\" marker-end=\"url(#m)\"/>" +
+                                       "</svg>";
+
+
+   /*
+    * Every vertex replays the same recording of the marker content.
+    */
+   @Test
+   public void markerRecordedOnce() throws SVGParseException
+   {
+      MockCanvas  mock = render(TEST);
+
+      assertEquals(5L, countOps(mock, "drawPicture"));
+      assertEquals(0L, countOps(mock, "drawCircle"));
+   }
+
+
+   /*
+    * The marker content is recorded at the size it is drawn, and scaled down again on playback.
+    */
+   @Test
+   public void markerRecordedAtDrawnSize() throws SVGParseException
+   {
+      MockCanvas  mock = render(TEST);
+
+      List<String>  ops = mock.getOperations();
+      for (int i = 0; i < ops.size(); i++) {
+         if (ops.get(i).startsWith("drawPicture"))
+            assertEquals("scale(0.25, 0.25)", ops.get(i - 1));
+      }
+   }
+
+
+   private MockCanvas  render(String test) throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      return (MockCanvas) Shadow.extract(canvas);
+   }
+
+
+   private long  countOps(MockCanvas canvas, String prefix)
+   {
+      List<String> ops = canvas.getOperations();
+      return ops.stream().filter(op -> op.startsWith(prefix)).count();
+   }
+
+}
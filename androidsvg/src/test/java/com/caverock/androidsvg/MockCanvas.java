@@ -21,6 +21,7 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Picture;
 import android.graphics.Rect;
 import android.graphics.RectF;
 
@@ -64,6 +65,10 @@ public class MockCanvas
    public static final int ALL_SAVE_FLAG = 0x1F;
 
 
+   public void  __constructor__()
+   {
+   }
+
    public void  __constructor__(Bitmap bitmap)
    {
       this.bitmap = bitmap;
@@ -112,18 +117,60 @@ public class MockCanvas
       this.operations.add(String.format(Locale.US, "drawBitmap(%s, %s, %s, %s)", bm, num(left), num(top), paintToStr(paint)));
    }
 
+   @Implementation
+   public void  drawBitmap(Bitmap bm, Rect src, RectF dst, Paint paint)
+   {
+      this.operations.add(String.format(Locale.US, "drawBitmap(%s, %s, %s, %s, %s, %s, %s)", bm, src, num(dst.left), num(dst.top), num(dst.right), num(dst.bottom), paintToStr(paint)));
+   }
+
+   @Implementation
+   public void  drawCircle(float cx, float cy, float radius, Paint paint)
+   {
+      this.operations.add(String.format(Locale.US, "drawCircle(%s, %s, %s, %s)", num(cx), num(cy), num(radius), paintToStr(paint)));
+   }
+
    @Implementation
    public void  drawColor(int color)
    {
       this.operations.add(String.format(Locale.US, "drawColor(#%06x)", color));
    }
 
+   @Implementation
+   public void  drawLine(float startX, float startY, float stopX, float stopY, Paint paint)
+   {
+      this.operations.add(String.format(Locale.US, "drawLine(%s, %s, %s, %s, %s)", num(startX), num(startY), num(stopX), num(stopY), paintToStr(paint)));
+   }
+
+   @Implementation
+   public void  drawOval(RectF oval, Paint paint)
+   {
+      this.operations.add(String.format(Locale.US, "drawOval(%s, %s, %s, %s, %s)", num(oval.left), num(oval.top), num(oval.right), num(oval.bottom), paintToStr(paint)));
+   }
+
    @Implementation
    public void  drawPath(Path path, Paint paint)
    {
       this.operations.add(String.format(Locale.US, "drawPath('%s', %s)", ((MockPath) Shadow.extract(path)).getPathDescription(), paintToStr(paint)));
    }
 
+   @Implementation
+   public void  drawPicture(Picture picture)
+   {
+      this.operations.add("drawPicture()");
+   }
+
+   @Implementation
+   public void  drawRect(float left, float top, float right, float bottom, Paint paint)
+   {
+      this.operations.add(String.format(Locale.US, "drawRect(%s, %s, %s, %s, %s)", num(left), num(top), num(right), num(bottom), paintToStr(paint)));
+   }
+
+   @Implementation
+   public void  drawRoundRect(RectF rect, float rx, float ry, Paint paint)
+   {
+      this.operations.add(String.format(Locale.US, "drawRoundRect(%s, %s, %s, %s, %s, %s, %s)", num(rect.left), num(rect.top), num(rect.right), num(rect.bottom), num(rx), num(ry), paintToStr(paint)));
+   }
+
    @Implementation
    public void  drawText(String text, float x, float y, Paint paint)
    {
@@ -136,6 +183,21 @@ public class MockCanvas
       this.operations.add(String.format(Locale.US, "drawTextOnPath('%s', '%s', %s, %s, %s)", text, ((MockPath) Shadow.extract(path)).getPathDescription(), num(hOffset), num(vOffset), paintToStr(paint)));
    }
 
+   // The clip isn't tracked, so this is the whole bitmap. In local coordinates, like the real method.
+   @Implementation
+   public boolean  getClipBounds(Rect bounds)
+   {
+      if (this.bitmap == null)
+         return false;
+      Matrix  inverse = new Matrix();
+      if (!this.matrix.invert(inverse))
+         return false;
+      RectF  r = new RectF(0, 0, this.bitmap.getWidth(), this.bitmap.getHeight());
+      inverse.mapRect(r);
+      r.roundOut(bounds);
+      return true;
+   }
+
    @Implementation
    public int  getHeight()
    {
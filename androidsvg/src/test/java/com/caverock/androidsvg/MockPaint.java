@@ -43,6 +43,13 @@ public class MockPaint
    private static final String FONTVARIATION = "fontVariation";
 
    private LinkedHashMap<String, String> settings = new LinkedHashMap<>();
+   private int  alpha = 255;
+   private int  flags = 0;
+   private float  wordSpacing = 0f;
+   private int  color = 0xff000000;
+   private float  textSize = 0f;
+
+   static int  textWidthsCalls = 0;   // Number of times text has been measured
 
    @Implementation
    public void __constructor__()
@@ -53,13 +60,17 @@ public class MockPaint
    public void __constructor__(Paint paint)
    {
       this.settings.putAll(((MockPaint) Shadow.extract(paint)).settings);
+      this.alpha = ((MockPaint) Shadow.extract(paint)).alpha;
+      this.color = ((MockPaint) Shadow.extract(paint)).color;
+      this.textSize = ((MockPaint) Shadow.extract(paint)).textSize;
+      this.flags = ((MockPaint) Shadow.extract(paint)).flags;
+      this.wordSpacing = ((MockPaint) Shadow.extract(paint)).wordSpacing;
    }
 
    @Implementation
    public void __constructor__(int flags)
    {
-      if (flags != 0)
-         settings.put(FLAGS, "f:" + genFlagsVal(flags));
+      setFlags(flags);
    }
 
    @Implementation
@@ -67,6 +78,13 @@ public class MockPaint
    {
       settings.remove(ALPHA);
       settings.put(ALPHA, "a:" + alpha);
+      this.alpha = alpha;
+   }
+
+   @Implementation
+   public int getAlpha()
+   {
+      return this.alpha;
    }
 
 
@@ -75,6 +93,14 @@ public class MockPaint
    {
       settings.remove(COLOR);
       settings.put(COLOR, "color:#" + String.format("%08x", color));
+      this.alpha = (color >>> 24);
+      this.color = color;
+   }
+
+   @Implementation
+   public int getColor()
+   {
+      return (this.color & 0xffffff) | (this.alpha << 24);
    }
 
    @Implementation
@@ -83,6 +109,13 @@ public class MockPaint
       settings.remove(FLAGS);
       if (flags != 0)
          settings.put(FLAGS, "f:" + genFlagsVal(flags));
+      this.flags = flags;
+   }
+
+   @Implementation
+   public int getFlags()
+   {
+      return this.flags;
    }
 
    @Implementation
@@ -147,6 +180,35 @@ public class MockPaint
    {
       settings.remove(TEXTSIZE);
       settings.put(TEXTSIZE, "ts:" + num(textSize));
+      this.textSize = textSize;
+   }
+
+   @Implementation
+   public float getTextSize()
+   {
+      return textSize;
+   }
+
+   @Implementation
+   public void setWordSpacing(float wordSpacing)
+   {
+      this.wordSpacing = wordSpacing;
+   }
+
+   @Implementation
+   public float getWordSpacing()
+   {
+      return wordSpacing;
+   }
+
+   // Every character is half an em wide. Spaces also get the word spacing.
+   @Implementation
+   public int getTextWidths(String text, float[] widths)
+   {
+      textWidthsCalls++;
+      for (int i = 0; i < text.length(); i++)
+         widths[i] = textSize / 2 + ((text.charAt(i) == ' ') ? wordSpacing : 0);
+      return text.length();
    }
 
    @Implementation
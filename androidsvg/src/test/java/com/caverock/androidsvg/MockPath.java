@@ -29,6 +29,14 @@ public class MockPath
       path.clear();
    }
 
+   @Implementation
+   public void __constructor__(Path src)
+   {
+      MockPath  mockSrc = ((MockPath) Shadow.extract(src));
+      path = new ArrayList<>(mockSrc.path);
+      transforms = (mockSrc.transforms == null) ? null : new ArrayList<>(mockSrc.transforms);
+   }
+
    @Implementation
    public void moveTo(float x, float y)
    {
@@ -82,6 +90,13 @@ public class MockPath
    }
 
 
+   @Implementation
+   public void  addPath(Path src)
+   {
+      path.addAll(((MockPath) Shadow.extract(src)).path);
+   }
+
+
    @Implementation
    public void  transform(Matrix matrix)
    {
@@ -90,6 +105,16 @@ public class MockPath
       this.transforms.add(matrix);
    }
 
+   @Implementation
+   public void  transform(Matrix matrix, Path dst)
+   {
+      MockPath  mockDst = ((MockPath) Shadow.extract(dst));
+      mockDst.path.clear();
+      mockDst.path.addAll(this.path);
+      mockDst.transforms = (this.transforms == null) ? null : new ArrayList<>(this.transforms);
+      mockDst.transform(matrix);
+   }
+
 
 
    String  getPathDescription()
@@ -0,0 +1,106 @@
+/*
+   Copyright 2017 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class OpacityTest
+{
+
+   /*
+    * A shape with only a fill should have its opacity applied to the fill paint
+    * rather than to a separate layer.
+    */
+   @Test
+   public void opacityFoldedIntoFill() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect width=\"10\" height=\"10\" fill=\"red\" opacity=\"0.5\"/>" +
+                     "</svg>";
+      MockCanvas  mock = render(test);
+
+      // Only the layer for the root <svg> should be present
+      assertEquals(1L, countLayers(mock));
+      assertEquals("128", mock.paintProp(3, "a"));
+   }
+
+
+   /*
+    * The opacity of a group with a single child should be passed down to the child.
+    */
+   @Test
+   public void groupOpacityFoldedIntoChild() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <g opacity=\"0.5\">" +
+                     "    <rect width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  </g>" +
+                     "</svg>";
+      MockCanvas  mock = render(test);
+
+      assertEquals(1L, countLayers(mock));
+      assertEquals("128", mock.paintProp(4, "a"));
+   }
+
+
+   /*
+    * When the fill and stroke overlap, we still need a layer.
+    */
+   @Test
+   public void opacityNotFoldedForFillAndStroke() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect width=\"10\" height=\"10\" fill=\"red\" stroke=\"blue\" opacity=\"0.5\"/>" +
+                     "</svg>";
+      MockCanvas  mock = render(test);
+
+      assertEquals(2L, countLayers(mock));
+   }
+
+
+   private MockCanvas  render(String test) throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      return (MockCanvas) Shadow.extract(canvas);
+   }
+
+
+   private long  countLayers(MockCanvas canvas)
+   {
+      List<String> ops = canvas.getOperations();
+      return ops.stream().filter(op -> op.startsWith("saveLayer")).count();
+   }
+
+}
@@ -175,7 +175,7 @@ public class ParseTest
       MockCanvas    mock = Shadow.extract(bmcanvas);
       List<String>  ops = mock.getOperations();
       //System.out.println(String.join(",", ops));
-      assertEquals("drawPath('M 0 0 L 10 0 L 10 10 L 0 10 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(4));
+      assertEquals("drawRect(0, 0, 10, 10, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(4));
    }
 
 
@@ -198,7 +198,7 @@ public class ParseTest
       MockCanvas    mock = Shadow.extract(bmcanvas);
       List<String>  ops = mock.getOperations();
       //System.out.println(String.join(",", ops));
-      assertEquals("drawPath('M 0 0 L 10 0 L 10 10 L 0 10 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(4));
+      assertEquals("drawRect(0, 0, 10, 10, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(4));
    }
 
 
@@ -246,6 +246,34 @@ public class ParseTest
    }
 
 
+   @Test
+   public void elementIndexes() throws SVGParseException
+   {
+      String  test = "<svg xmlns=\"http://www.w3.org/2000/svg\" id=\"root\">" +
+                     "  <rect id=\"r1\" class=\"a b\"/>" +
+                     "  <g id=\"g1\" class=\"b\">" +
+                     "    <rect id=\"r2\" class=\"a\"/>" +
+                     "    <rect class=\"a\"/>" +
+                     "  </g>" +
+                     "  <linearGradient>" +
+                     "    <stop id=\"s1\"><rect id=\"ignored\"/></stop>" +
+                     "  </linearGradient>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      assertTrue(svg.hasElementWithId("root"));
+      assertTrue(svg.hasElementWithId("r2"));
+      assertTrue(svg.hasElementWithId("s1"));
+      Assert.assertFalse(svg.hasElementWithId("ignored"));
+      Assert.assertFalse(svg.hasElementWithId("missing"));
+
+      assertEquals(List.of("r1", "r2"), svg.getElementIdsByClassName("a"));
+      assertEquals(List.of("r1", "g1"), svg.getElementIdsByClassName("b"));
+      assertEquals(List.of(), svg.getElementIdsByClassName("c"));
+      assertEquals(List.of("r1", "r2"), svg.getElementIdsByTagName("rect"));
+   }
+
+
    /**
     * Issue 199
     * Semi-thread safe parsing properties (enableInternalEntities and externalFileResolver)
@@ -0,0 +1,101 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class PathSimplificationTest
+{
+   @Test
+   public void collinearPointsRemoved() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(makeZigZag(0f));
+
+      assertEquals("M 0 0 L 100 0", getPathDescription(svg, RenderOptions.create().simplifyPaths(0.5f)));
+      // Off by default
+      assertEquals(true, getPathDescription(svg, null).startsWith("M 0 0 L 1 0 L 2 0 "));
+   }
+
+
+   /*
+    * Deviations larger than the allowed error must be kept.
+    */
+   @Test
+   public void maxError() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(makeZigZag(1f));
+
+      // A zigzag of height 1 is within an error of 2, but not 0.25
+      assertEquals("M 0 0 L 100 0", getPathDescription(svg, RenderOptions.create().simplifyPaths(2f)));
+      assertEquals(true, getPathDescription(svg, RenderOptions.create().simplifyPaths(0.25f)).startsWith("M 0 0 L 1 1 L 2 0 "));
+   }
+
+
+   @Test
+   public void curvesFlattened() throws SVGParseException
+   {
+      StringBuilder  sb = new StringBuilder("<svg width=\"100\" height=\"100\"><path d=\"M 0 0");
+      for (int i = 0; i < 50; i++)
+         sb.append(" c 0.5 0.5 1.5 0.5 2 0");
+      sb.append("\" fill=\"none\" stroke=\"black\"/></svg>");
+      SVG  svg = SVG.getFromString(sb.toString());
+
+      // The bumps are only 0.375 high, so they disappear with an error of 1
+      assertEquals("M 0 0 L 100 0", getPathDescription(svg, RenderOptions.create().simplifyPaths(1f)));
+   }
+
+
+   private static String  makeZigZag(float height)
+   {
+      StringBuilder  sb = new StringBuilder("<svg width=\"100\" height=\"100\"><path d=\"M 0 0");
+      for (int i = 1; i <= 100; i++)
+         sb.append(" L ").append(i).append(' ').append((i % 2 == 1) ? height : 0f);
+      sb.append("\" fill=\"none\" stroke=\"black\"/></svg>");
+      return sb.toString();
+   }
+
+
+   private static String  getPathDescription(SVG svg, RenderOptions renderOptions)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas, renderOptions);
+
+      List<String>  draws = new ArrayList<>();
+      for (String op: ((MockCanvas) Shadow.extract(canvas)).getOperations()) {
+         if (op.startsWith("drawPath('"))
+            draws.add(op);
+      }
+      assertEquals(1, draws.size());
+      return draws.get(0).substring("drawPath('".length(), draws.get(0).indexOf("',"));
+   }
+
+}
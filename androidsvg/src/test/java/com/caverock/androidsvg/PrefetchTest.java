@@ -0,0 +1,123 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class PrefetchTest
+{
+   private static class CountingResolver extends SVGExternalFileResolver
+   {
+      final List<String>  requests = Collections.synchronizedList(new ArrayList<String>());
+
+      @Override
+      public Typeface  resolveFont(String fontFamily, float fontWeight, String fontStyle, float fontStretch)
+      {
+         requests.add("font " + fontFamily + " " + fontWeight + " " + fontStyle);
+         return "Missing".equals(fontFamily) ? null : Typeface.DEFAULT;
+      }
+
+      @Override
+      public Bitmap  resolveImage(String filename)
+      {
+         requests.add("image " + filename);
+         return Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+      }
+   }
+
+
+   private static final String  TEST = "<svg width=\"100\" height=\"100\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+                                       "  <style>.heavy { font-weight: bolder }</style>" +
+                                       "  <image xlink:href=\"a.png\" width=\"10\" height=\"10\"/>" +
+                                       "  <g font-family=\"Missing, Custom, serif\">" +
+                                       "    <text x=\"10\" y=\"20\">One</text>" +
+                                       "    <text x=\"10\" y=\"40\" class=\"heavy\" font-style=\"italic\">Two</text>" +
+                                       "  </g>" +
+                                       "  <image xlink:href=\"b.png\" x=\"20\" width=\"10\" height=\"10\"/>" +
+                                       "</svg>";
+
+
+   /*
+    * After prefetching, rendering shouldn't need to call the resolver.
+    */
+   @Test
+   public void prefetch() throws Exception
+   {
+      CountingResolver  resolver = new CountingResolver();
+      SVG  svg = parse(resolver);
+
+      ExecutorService  pool = Executors.newFixedThreadPool(4);
+      try {
+         Future<Void>  future = svg.prefetchExternalResources(pool);
+         future.get(10, TimeUnit.SECONDS);
+         assertTrue(future.isDone());
+      } finally {
+         pool.shutdown();
+      }
+
+      List<String>  prefetched = new ArrayList<>(resolver.requests);
+      Collections.sort(prefetched);
+      assertEquals("[font Custom 400.0 normal, font Custom 700.0 italic, font Missing 400.0 normal, font Missing 700.0 italic, image a.png, image b.png]",
+                   prefetched.toString());
+
+      resolver.requests.clear();
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      svg.renderToCanvas(new Canvas(newBM));
+      assertEquals(0, resolver.requests.size());
+   }
+
+
+   @Test
+   public void nothingToFetch() throws Exception
+   {
+      SVG  svg = SVG.getFromString("<svg width=\"100\" height=\"100\"><rect width=\"10\" height=\"10\"/></svg>");
+      Future<Void>  future = svg.prefetchExternalResources(Runnable::run);
+      assertTrue(future.isDone());
+   }
+
+
+   private static SVG  parse(SVGExternalFileResolver resolver) throws SVGParseException
+   {
+      SVG.registerExternalFileResolver(resolver);
+      try {
+         return SVG.getFromString(TEST);
+      } finally {
+         SVG.deregisterExternalFileResolver();
+      }
+   }
+
+}
@@ -0,0 +1,93 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class PrimitiveShapeTest
+{
+   @Test
+   public void primitives() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect x=\"10\" y=\"20\" width=\"30\" height=\"40\"/>" +
+                     "  <rect width=\"30\" height=\"40\" rx=\"5\"/>" +
+                     "  <circle cx=\"50\" cy=\"50\" r=\"10\"/>" +
+                     "  <ellipse cx=\"50\" cy=\"50\" rx=\"10\" ry=\"20\"/>" +
+                     "  <line x1=\"0\" y1=\"0\" x2=\"100\" y2=\"50\" stroke=\"black\"/>" +
+                     "</svg>";
+      List<String>  draws = renderDraws(test);
+
+      assertEquals(5, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawRect(10, 20, 40, 60, "));
+      assertEquals(true, draws.get(1).startsWith("drawRoundRect(0, 0, 30, 40, 5, 5, "));
+      assertEquals(true, draws.get(2).startsWith("drawCircle(50, 50, 10, "));
+      assertEquals(true, draws.get(3).startsWith("drawOval(40, 30, 60, 70, "));
+      assertEquals(true, draws.get(4).startsWith("drawLine(0, 0, 100, 50, "));
+   }
+
+
+   /*
+    * Dashes and non-scaling strokes still need the shape's Path.
+    */
+   @Test
+   public void strokesNeedingPath() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <circle cx=\"50\" cy=\"50\" r=\"10\" stroke=\"black\" stroke-dasharray=\"2\"/>" +
+                     "  <rect width=\"30\" height=\"40\" fill=\"none\" stroke=\"black\" vector-effect=\"non-scaling-stroke\"/>" +
+                     "</svg>";
+      List<String>  draws = renderDraws(test);
+
+      assertEquals(3, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawCircle(50, 50, 10, "));   // The fill
+      assertEquals(true, draws.get(1).startsWith("drawPath('M 50 40 C "));
+      assertEquals(true, draws.get(2).startsWith("drawPath('M 0 0 L 30 0 L 30 40 L 0 40 L 0 0 Z'"));
+   }
+
+
+   private List<String>  renderDraws(String test) throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      List<String>  draws = new ArrayList<>();
+      for (String op: ((MockCanvas) Shadow.extract(canvas)).getOperations()) {
+         if (op.startsWith("draw"))
+            draws.add(op);
+      }
+      return draws;
+   }
+
+}
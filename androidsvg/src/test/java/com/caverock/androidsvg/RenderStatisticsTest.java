@@ -0,0 +1,131 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class RenderStatisticsTest
+{
+   private static final String  TEST = "<svg width=\"100\" height=\"100\">" +
+                                       "  <defs>" +
+                                       "    <linearGradient id=\"g\"><stop offset=\"0\" stop-color=\"red\"/><stop offset=\"1\" stop-color=\"blue\"/></linearGradient>" +
+                                       "    <clipPath id=\"c\"><rect width=\"50\" height=\"50\"/></clipPath>" +
+                                       "  </defs>" +
+                                       "  <g opacity=\"0.5\">" +
+                                       "    <rect width=\"10\" height=\"10\" fill=\"url(#g)\"/>" +
+                                       "    <rect x=\"5\" width=\"10\" height=\"10\" fill=\"red\" stroke=\"black\"/>" +
+                                       "  </g>" +
+                                       "  <path d=\"M 0 0 L 10 10\" stroke=\"black\" clip-path=\"url(#c)\"/>" +
+                                       "  <rect width=\"10\" height=\"10\" visibility=\"hidden\"/>" +
+                                       "  <text x=\"10\" y=\"50\">Hello</text>" +
+                                       "</svg>";
+
+
+   @Test
+   public void counts() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      RenderStatistics  stats = new RenderStatistics();
+      render(svg, RenderOptions.create().statistics(stats));
+
+      assertEquals(4, stats.getElementsDrawn());
+      assertTrue(stats.getElementsVisited() >= 7);
+      assertTrue(stats.getStatePushes() >= stats.getElementsVisited());
+      assertEquals(2, stats.getSaveLayerCount());          // The root layer and the group opacity
+      assertEquals(20000, stats.getLayerPixelArea());
+      assertEquals(1, stats.getGradientSetups());
+      assertEquals(0, stats.getPatternSetups());
+      assertEquals(0, stats.getMaskSetups());
+      assertTrue(stats.getPathsBuilt() >= 1);
+      assertTrue(stats.getClipOperations() >= 1);
+      assertTrue(stats.getTextSpansMeasured() >= 1);
+      assertEquals(0, stats.getResolverCalls());
+   }
+
+
+   @Test
+   public void timings() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      RenderStatistics  stats = new RenderStatistics();
+      render(svg, RenderOptions.create().statistics(stats));
+
+      assertTrue(stats.getTotalTimeNanos() > 0);
+      assertTrue(stats.getSetupTimeNanos() > 0);
+      assertTrue(stats.getCascadeTimeNanos() > 0);
+      assertEquals(stats.getTotalTimeNanos(),
+                   stats.getSetupTimeNanos() + stats.getCascadeTimeNanos() + stats.getGeometryTimeNanos() + stats.getDrawTimeNanos());
+   }
+
+
+   /*
+    * The counts are reset at the start of each render.
+    */
+   @Test
+   public void reset() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      RenderStatistics  stats = new RenderStatistics();
+      render(svg, RenderOptions.create().statistics(stats));
+      int  visited = stats.getElementsVisited();
+      int  pushes = stats.getStatePushes();
+
+      render(svg, RenderOptions.create().statistics(stats));
+      assertEquals(visited, stats.getElementsVisited());
+      assertEquals(pushes, stats.getStatePushes());
+      assertEquals(4, stats.getElementsDrawn());
+   }
+
+
+   /*
+    * Elements that have neither a fill nor a stroke draw nothing, so aren't counted.
+    */
+   @Test
+   public void unpaintedNotCounted() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <rect width=\"10\" height=\"10\" fill=\"none\"/>" +
+                     "  <path d=\"M 0 0 L 10 10 Z\" fill=\"none\"/>" +
+                     "  <line x2=\"10\" y2=\"10\"/>" +
+                     "  <circle r=\"5\"/>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+      RenderStatistics  stats = new RenderStatistics();
+      render(svg, RenderOptions.create().statistics(stats));
+
+      assertEquals(1, stats.getElementsDrawn());
+   }
+
+
+   private static void  render(SVG svg, RenderOptions renderOptions)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      svg.renderToCanvas(new Canvas(newBM), renderOptions);
+   }
+
+}
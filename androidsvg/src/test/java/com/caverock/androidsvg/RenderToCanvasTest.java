@@ -51,7 +51,7 @@ public class RenderToCanvasTest
       List<String>  ops = ((MockCanvas) Shadow.extract(bmcanvas1)).getOperations();
       //System.out.println(String.join(",", ops));
       assertEquals("concat(Matrix(1 0 0 1 0 50))", ops.get(1));
-      assertEquals("drawPath('M 0 0 L 200 0 L 200 100 L 0 100 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
    }
 
 
@@ -70,7 +70,7 @@ public class RenderToCanvasTest
       List<String>  ops = ((MockCanvas) Shadow.extract(bmcanvas2)).getOperations();
       //System.out.println(String.join(",", ops));
       assertEquals("concat(Matrix(0.5 0 0 0.5 50 75))", ops.get(1));
-      assertEquals("drawPath('M 0 0 L 200 0 L 200 100 L 0 100 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
    }
 
 
@@ -137,7 +137,7 @@ public class RenderToCanvasTest
       List<String>  ops = ((MockCanvas) Shadow.extract(bmcanvas2)).getOperations();
       //System.out.println(String.join(",", ops));
       assertEquals("concat(Matrix(0.5 0 0 0.5 100 100))", ops.get(1));
-      assertEquals("drawPath('M 0 0 L 200 0 L 200 100 L 0 100 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
    }
 
 
@@ -194,4 +194,49 @@ public class RenderToCanvasTest
    }
 
 
+   //--------------------------------------------------------------------------
+
+
+   @Test
+   public void renderToCanvasWithPlan() throws SVGParseException
+   {
+      String  test = "<svg viewBox=\"0 0 200 100\">\n" +
+                     "  <rect width=\"200\" height=\"100\" fill=\"green\"/>\n" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      RenderOptions  opts = RenderOptions.create().css("rect { fill: blue; }");
+
+      Bitmap bm1 = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+      Canvas bmcanvas1 = new Canvas(bm1);
+      svg.renderToCanvas(bmcanvas1, opts);
+      List<String>  expected = ((MockCanvas) Shadow.extract(bmcanvas1)).getOperations();
+
+      RenderPlan  plan = svg.prepare(opts);
+
+      // A plan can be used for any number of renders, and gives the same result as the RenderOptions
+      for (int i = 0; i < 2; i++)
+      {
+         Bitmap bm2 = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+         Canvas bmcanvas2 = new Canvas(bm2);
+         svg.renderToCanvas(bmcanvas2, plan);
+
+         List<String>  ops = ((MockCanvas) Shadow.extract(bmcanvas2)).getOperations();
+         assertEquals(expected, ops);
+         assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff0000ff; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      }
+   }
+
+
+   @Test(expected = IllegalArgumentException.class)
+   public void renderPlanForOtherDocument() throws SVGParseException
+   {
+      SVG  svg1 = SVG.getFromString("<svg/>");
+      SVG  svg2 = SVG.getFromString("<svg/>");
+
+      Bitmap bm = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+      svg2.renderToCanvas(new Canvas(bm), svg1.prepare(null));
+   }
+
+
 }
@@ -49,7 +49,7 @@ public class RenderToPictureTest
       assertEquals(512, picture.getWidth());
       assertEquals(512, picture.getHeight());
       assertEquals("concat(Matrix(2.56 0 0 2.56 0 128))", ops.get(1));
-      assertEquals("drawPath('M 0 0 L 200 0 L 200 100 L 0 100 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
    }
 
 
@@ -99,7 +99,34 @@ public class RenderToPictureTest
       assertEquals(400, picture.getWidth());
       assertEquals(400, picture.getHeight());
       assertEquals("concat(Matrix(2 0 0 2 0 100))", ops.get(1));
-      assertEquals("drawPath('M 0 0 L 200 0 L 200 100 L 0 100 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+   }
+
+
+   /*
+    * Masks in a Picture are drawn with layers, so that they are still sharp when the Picture is scaled.
+    */
+   @Test
+   public void renderToPictureMask() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">\n" +
+                     "  <mask id=\"m\"><rect width=\"50\" height=\"50\" fill=\"white\"/></mask>\n" +
+                     "  <rect width=\"100\" height=\"100\" fill=\"green\" mask=\"url(#m)\"/>\n" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      Picture picture = svg.renderToPicture();
+
+      List<String>  ops = ((MockPicture) Shadow.extract(picture)).getOperations();
+      //System.out.println(String.join(",", ops));
+      int  maskDraws = 0;
+      for (String op: ops) {
+         assertEquals(false, op.startsWith("drawBitmap("));
+         if (op.startsWith("drawRect(0, 0, 50, 50, Paint(color:#ffffffff;"))
+            maskDraws++;
+      }
+      // The mask content is drawn once for its luminance and once for its alpha
+      assertEquals(2, maskDraws);
    }
 
 
@@ -141,7 +168,7 @@ public class RenderToPictureTest
       assertEquals(400, picture.getWidth());
       assertEquals(400, picture.getHeight());
       assertEquals("concat(Matrix(1 0 0 1 100 200))", ops.get(1));
-      assertEquals("drawPath('M 0 0 L 200 0 L 200 100 L 0 100 L 0 0 Z', Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
+      assertEquals("drawRect(0, 0, 200, 100, Paint(color:#ff008000; f:ANTI_ALIAS|LINEAR_TEXT|SUBPIXEL_TEXT; h:OFF; s:FILL; tf:android.graphics.Typeface@0; ts:16))", ops.get(3));
    }
 
 
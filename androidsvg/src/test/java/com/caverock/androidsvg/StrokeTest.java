@@ -56,7 +56,7 @@ public class StrokeTest
 
       MockCanvas    mock = (MockCanvas) Shadow.extract(canvas);
 
-      assertEquals(1L, countPathsDrawn(mock));
+      assertEquals(1L, countShapesDrawn(mock));
    }
 
 
@@ -79,14 +79,14 @@ public class StrokeTest
 
       MockCanvas    mock = (MockCanvas) Shadow.extract(canvas);
 
-      assertEquals(0, countPathsDrawn(mock));
+      assertEquals(0, countShapesDrawn(mock));
    }
 
 
-   private long countPathsDrawn(MockCanvas canvas) {
+   private long countShapesDrawn(MockCanvas canvas) {
       List<String> ops = canvas.getOperations();
       System.out.println(String.join(",", ops));
-      return ops.stream().filter(op -> op.startsWith("drawPath(")).count();
+      return ops.stream().filter(op -> op.startsWith("drawPath(") || op.startsWith("drawCircle(")).count();
    }
 
 
@@ -0,0 +1,121 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class TextLayoutCacheTest
+{
+   /*
+    * Anchored text is measured for the anchor offset, the bounding box and for drawing.
+    * Each run should only be measured once, however many times the document is rendered.
+    */
+   @Test
+   public void measuredOnce() throws SVGParseException
+   {
+      String  test = "<svg width=\"200\" height=\"100\">" +
+                     "  <text x=\"100\" y=\"50\" font-size=\"10\" text-anchor=\"middle\">Hello <tspan font-size=\"20\">world</tspan></text>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      MockPaint.textWidthsCalls = 0;
+      List<String>  draws = renderDraws(svg);
+      assertEquals(2, MockPaint.textWidthsCalls);
+
+      // "Hello " is 6 * 5 wide, and "world" is 5 * 10. So the text starts 80 / 2 left of the anchor.
+      assertEquals(2, draws.size());
+      assertEquals(true, draws.get(0).startsWith("drawText('Hello ', 60, 50, "));
+      assertEquals(true, draws.get(1).startsWith("drawText('world', 90, 50, "));
+
+      assertEquals(draws, renderDraws(svg));
+      assertEquals(2, MockPaint.textWidthsCalls);
+   }
+
+
+   /*
+    * A style change gives different measurements.
+    */
+   @Test
+   public void fontChange() throws SVGParseException
+   {
+      String  test = "<svg width=\"200\" height=\"100\">" +
+                     "  <text x=\"100\" y=\"50\" font-size=\"10\" text-anchor=\"end\">Hello</text>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      assertEquals(true, renderDraws(svg).get(0).startsWith("drawText('Hello', 75, 50, "));
+
+      RenderOptions  opts = RenderOptions.create().css("text { font-size: 20px; }");
+      assertEquals(true, renderDraws(svg, opts).get(0).startsWith("drawText('Hello', 50, 50, "));
+   }
+
+
+   /*
+    * Word spacing changes the advances, so text measured with one word spacing isn't reused for another.
+    */
+   @Test
+   @Config(sdk=Build.VERSION_CODES.Q)
+   public void wordSpacingChange() throws SVGParseException
+   {
+      String  test = "<svg width=\"200\" height=\"100\">" +
+                     "  <text x=\"100\" y=\"50\" font-size=\"10\" text-anchor=\"end\">a b</text>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      assertEquals(true, renderDraws(svg).get(0).startsWith("drawText('a b', 85, 50, "));
+
+      RenderOptions  opts = RenderOptions.create().css("text { word-spacing: 10px; }");
+      assertEquals(true, renderDraws(svg, opts).get(0).startsWith("drawText('a b', 75, 50, "));
+   }
+
+
+   private static List<String>  renderDraws(SVG svg)
+   {
+      return renderDraws(svg, null);
+   }
+
+
+   private static List<String>  renderDraws(SVG svg, RenderOptions renderOptions)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas, renderOptions);
+
+      List<String>  draws = new ArrayList<>();
+      for (String op: ((MockCanvas) Shadow.extract(canvas)).getOperations()) {
+         if (op.startsWith("draw"))
+            draws.add(op);
+      }
+      return draws;
+   }
+
+}
@@ -0,0 +1,75 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class TextPathTest
+{
+   /*
+    * The textPath geometry is cached on the path element. Later renders, and other
+    * textPaths that use the same path, must get the same (transformed once) path.
+    */
+   @Test
+   public void cachedGeometry() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <defs><path id=\"p\" d=\"M 0 50 L 100 50\" transform=\"translate(0,10)\"/></defs>" +
+                     "  <text font-size=\"10\"><textPath href=\"#p\">AB</textPath></text>" +
+                     "  <text font-size=\"10\"><textPath href=\"#p\">CD</textPath></text>" +
+                     "</svg>";
+      SVG  svg = SVG.getFromString(test);
+
+      List<String>  first = renderDraws(svg);
+      List<String>  second = renderDraws(svg);
+
+      assertEquals(2, first.size());
+      assertEquals(first, second);
+      assertEquals(true, first.get(0).startsWith("drawTextOnPath('AB', 'M 0 50 L 100 50 \u00d7 [1, 0, 0, 1, 0, 10]', 0, 0"));
+      assertEquals(true, first.get(1).startsWith("drawTextOnPath('CD', 'M 0 50 L 100 50 \u00d7 [1, 0, 0, 1, 0, 10]', 0, 0"));
+   }
+
+
+   private List<String>  renderDraws(SVG svg)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      List<String>  draws = new ArrayList<>();
+      for (String op: ((MockCanvas) Shadow.extract(canvas)).getOperations()) {
+         if (op.startsWith("draw"))
+            draws.add(op);
+      }
+      return draws;
+   }
+
+}
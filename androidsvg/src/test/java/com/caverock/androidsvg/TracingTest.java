@@ -0,0 +1,159 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class TracingTest
+{
+   private static final String  TEST = "<svg width=\"100\" height=\"100\">" +
+                                       "  <style>rect { stroke: none; }</style>" +
+                                       "  <defs>" +
+                                       "    <clipPath id=\"c\"><rect width=\"50\" height=\"50\"/></clipPath>" +
+                                       "    <mask id=\"m\"><rect width=\"50\" height=\"50\" fill=\"white\"/></mask>" +
+                                       "    <pattern id=\"p\" width=\"10\" height=\"10\" patternUnits=\"userSpaceOnUse\"><rect width=\"5\" height=\"5\"/></pattern>" +
+                                       "    <marker id=\"dot\" markerWidth=\"4\" markerHeight=\"4\"><circle cx=\"2\" cy=\"2\" r=\"2\"/></marker>" +
+                                       "  </defs>" +
+                                       "  <rect id=\"clipped\" width=\"80\" height=\"80\" clip-path=\"url(#c)\"/>" +
+                                       "  <rect id=\"masked\" width=\"80\" height=\"80\" mask=\"url(#m)\"/>" +
+                                       "  <rect id=\"patterned\" width=\"80\" height=\"80\" fill=\"url(#p)\"/>" +
+                                       "  <path id=\"line\" d=\"M 0 0 L 50 50\" stroke=\"black\" marker-end=\"url(#dot)\"/>" +
+                                       "  <text id=\"t\" x=\"10\" y=\"50\">Hello</text>" +
+                                       "</svg>";
+
+
+   /*
+    * Records each section as "depth:name".
+    */
+   private static class  RecordingTracer extends SVGTracer.Timer
+   {
+      final List<String>  sections = new ArrayList<>();
+
+      RecordingTracer(boolean includeElementIds)
+      {
+         super(includeElementIds);
+      }
+
+      @Override
+      protected void  onSection(String name, long startTime, long duration, int depth)
+      {
+         assertTrue(duration >= 0);
+         sections.add(depth + ":" + name);
+      }
+   }
+
+
+   @After
+   public void tearDown()
+   {
+      SVG.setTracer(null);
+   }
+
+
+   @Test
+   public void parse() throws SVGParseException
+   {
+      RecordingTracer  tracer = new RecordingTracer(false);
+      SVG.setTracer(tracer);
+      SVG.getFromString(TEST);
+
+      assertTrue(tracer.sections.contains("2:SVG attributes"));
+      assertTrue(tracer.sections.contains("2:SVG style element"));
+      assertTrue(tracer.sections.contains("3:SVG CSS"));
+      assertTrue(tracer.sections.contains("1:SVG XML"));
+      // The outermost section ends last
+      assertEquals("0:SVG parse", tracer.sections.get(tracer.sections.size() - 1));
+   }
+
+
+   @Test
+   public void render() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      RecordingTracer  tracer = new RecordingTracer(true);
+      SVG.setTracer(tracer);
+      render(svg);
+
+      assertTrue(tracer.sections.contains("1:SVG clip path #c"));
+      assertTrue(tracer.sections.contains("1:SVG mask #m"));
+      assertTrue(tracer.sections.contains("1:SVG pattern #p"));
+      assertTrue(tracer.sections.contains("1:SVG markers #line"));
+      assertTrue(tracer.sections.contains("1:SVG text #t"));
+      assertEquals("0:SVG render", tracer.sections.get(tracer.sections.size() - 1));
+   }
+
+
+   @Test
+   public void noElementIds() throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(TEST);
+      RecordingTracer  tracer = new RecordingTracer(false);
+      SVG.setTracer(tracer);
+      render(svg);
+
+      assertTrue(tracer.sections.contains("1:SVG mask"));
+      for (String section: tracer.sections)
+         assertFalse(section, section.contains("#"));
+   }
+
+
+   @Test
+   public void disabled() throws SVGParseException
+   {
+      RecordingTracer  tracer = new RecordingTracer(true) {
+         @Override
+         public boolean  isEnabled()
+         {
+            return false;
+         }
+      };
+      SVG.setTracer(tracer);
+      render(SVG.getFromString(TEST));
+      assertTrue(tracer.sections.isEmpty());
+
+      // Turning tracing off
+      tracer = new RecordingTracer(true);
+      SVG.setTracer(tracer);
+      SVG.setTracer(null);
+      render(SVG.getFromString(TEST));
+      assertTrue(tracer.sections.isEmpty());
+   }
+
+
+   private static void  render(SVG svg)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      svg.renderToCanvas(new Canvas(newBM));
+   }
+
+}
@@ -0,0 +1,86 @@
+/*
+   Copyright 2018 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class})
+public class TypefaceCacheTest
+{
+   private static class CountingResolver extends SVGExternalFileResolver
+   {
+      final List<String>  requests = new ArrayList<>();
+
+      @Override
+      public Typeface  resolveFont(String fontFamily, float fontWeight, String fontStyle, float fontStretch)
+      {
+         requests.add(fontFamily + " " + fontWeight + " " + fontStyle);
+         return null;
+      }
+   }
+
+
+   /*
+    * The resolver should only be asked once for each combination of font properties.
+    */
+   @Test
+   public void resolvedOnce() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\" font-family=\"Custom\">" +
+                     "  <text x=\"10\" y=\"20\">One <tspan>two</tspan></text>" +
+                     "  <text x=\"10\" y=\"40\">Three</text>" +
+                     "  <text x=\"10\" y=\"60\" font-weight=\"bold\">Four</text>" +
+                     "</svg>";
+
+      CountingResolver  resolver = new CountingResolver();
+      SVG  svg;
+      SVG.registerExternalFileResolver(resolver);
+      try {
+         svg = SVG.getFromString(test);
+      } finally {
+         SVG.deregisterExternalFileResolver();
+      }
+
+      render(svg);
+      render(svg);
+
+      assertEquals(2, resolver.requests.size());
+      assertEquals("Custom 400.0 normal", resolver.requests.get(0));
+      assertEquals("Custom 700.0 normal", resolver.requests.get(1));
+   }
+
+
+   private static void  render(SVG svg)
+   {
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      svg.renderToCanvas(new Canvas(newBM));
+   }
+
+}
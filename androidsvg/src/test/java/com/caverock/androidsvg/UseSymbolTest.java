@@ -0,0 +1,96 @@
+/*
+   Copyright 2017 Paul LeBeau, Cave Rock Software Ltd.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package com.caverock.androidsvg;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest=Config.NONE, shadows={MockCanvas.class, MockPath.class, MockPaint.class, MockPicture.class})
+public class UseSymbolTest
+{
+
+   /*
+    * Repeated references to a symbol should replay a recording of it.
+    */
+   @Test
+   public void symbolInstanced() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <symbol id=\"s\" viewBox=\"0 0 10 10\">" +
+                     "    <rect width=\"10\" height=\"10\" fill=\"red\"/>" +
+                     "  </symbol>" +
+                     "  <use href=\"#s\" width=\"20\" height=\"20\"/>" +
+                     "  <use href=\"#s\" x=\"30\" width=\"20\" height=\"20\"/>" +
+                     "  <use href=\"#s\" x=\"60\" width=\"20\" height=\"20\"/>" +
+                     "</svg>";
+      MockCanvas  mock = render(test);
+
+      assertEquals(3L, countOps(mock, "drawPicture"));
+      assertEquals(0L, countOps(mock, "drawRect"));
+   }
+
+
+   /*
+    * A style attribute on the <use> makes its context unique, so the symbol is rendered directly.
+    */
+   @Test
+   public void styledUseNotInstanced() throws SVGParseException
+   {
+      String  test = "<svg width=\"100\" height=\"100\">" +
+                     "  <symbol id=\"s\" viewBox=\"0 0 10 10\">" +
+                     "    <rect width=\"10\" height=\"10\"/>" +
+                     "  </symbol>" +
+                     "  <use href=\"#s\" width=\"20\" height=\"20\" fill=\"red\"/>" +
+                     "  <use href=\"#s\" x=\"30\" width=\"20\" height=\"20\" fill=\"blue\"/>" +
+                     "</svg>";
+      MockCanvas  mock = render(test);
+
+      assertEquals(0L, countOps(mock, "drawPicture"));
+      assertEquals(2L, countOps(mock, "drawRect"));
+   }
+
+
+   private MockCanvas  render(String test) throws SVGParseException
+   {
+      SVG  svg = SVG.getFromString(test);
+
+      Bitmap  newBM = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+      Canvas  canvas = new Canvas(newBM);
+      svg.renderToCanvas(canvas);
+
+      return (MockCanvas) Shadow.extract(canvas);
+   }
+
+
+   private long  countOps(MockCanvas canvas, String prefix)
+   {
+      List<String> ops = canvas.getOperations();
+      return ops.stream().filter(op -> op.startsWith(prefix)).count();
+   }
+
+}